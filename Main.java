@@ -1,12 +1,81 @@
+import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 
 public class Main {
 
@@ -14,37 +83,65 @@ public class Main {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
 
+    // Markers for "no value" in epoch-day and minute-of-day fields
+    static final int NO_DAY = Integer.MIN_VALUE;
+    static final int NO_MINUTE = -1;
+
     public static void main(String[] args) {
         try {
-            System.out.println("=".repeat(100));
-            System.out.println("👶🤰 MOM & BABY CARE TRACKER - COMPREHENSIVE ANALYSIS 👶🤰");
-            System.out.println("=".repeat(100));
-            System.out.println();
-
-            // Load profiles
-            BabyProfile babyProfile = loadBabyProfile();
-            MamaProfile mamaProfile = loadMamaProfile();
-
-            // Display profiles
-            displayBabyProfile(babyProfile);
-            displayMamaProfile(mamaProfile);
-
-            // Load and analyze baby data
-            System.out.println("\n" + "=".repeat(100));
-            System.out.println("📊 BABY DATA ANALYSIS");
-            System.out.println("=".repeat(100));
-            analyzeBabyData(babyProfile);
-
-            // Load and analyze mama data
-            System.out.println("\n" + "=".repeat(100));
-            System.out.println("📊 MAMA DATA ANALYSIS");
-            System.out.println("=".repeat(100));
-            analyzeMamaData(mamaProfile);
-
-            System.out.println("\n" + "=".repeat(100));
-            System.out.println("✅ ANALYSIS COMPLETE! ALL SYSTEMS CHECKED.");
-            System.out.println("=".repeat(100));
+            if (args.length > 0 && args[0].equals("--bench-csv")) {
+                benchmarkCsvTokenizer(args.length > 1 ? Integer.parseInt(args[1]) : 200_000);
+                return;
+            }
+            if (args.length > 1 && args[0].equals("--load-test")) {
+                runLoadTest(URI.create(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 10_000,
+                        args.length > 3 ? Integer.parseInt(args[3]) : 16,
+                        args.length > 4 ? Integer.parseInt(args[4]) : 0);
+                return;
+            }
+            if (args.length > 1 && args[0].equals("--generate")) {
+                generateLogs(Paths.get(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 1,
+                        args.length > 3 ? Integer.parseInt(args[3]) : 2,
+                        args.length > 4 ? Long.parseLong(args[4]) : 42,
+                        args.length > 5 ? Double.parseDouble(args[5]) : 1,
+                        args.length > 6 ? LocalDate.parse(args[6]) : LocalDate.now());
+                return;
+            }
+            if (args.length > 0 && args[0].equals("--build-snapshot")) {
+                buildSnapshots();
+                return;
+            }
+
+            ScanOptions options = new ScanOptions(Arrays.asList(args));
+            if (args.length > 0 && args[0].equals("--serve")) {
+                int bind = Arrays.asList(args).indexOf("--bind");
+                InetAddress address = bind > 0 && bind + 1 < args.length
+                        ? InetAddress.getByName(args[bind + 1]) : InetAddress.getLoopbackAddress();
+                runServer(Paths.get(""), address, args.length > 1 && !args[1].startsWith("--")
+                        ? Integer.parseInt(args[1]) : 8080, options);
+                return;
+            }
+            if (args.length > 0 && args[0].equals("--watch")) {
+                runWatch(Paths.get(args.length > 1 && !args[1].startsWith("--") ? args[1] : ""), options);
+                return;
+            }
+            if (args.length > 1 && args[0].equals("--batch")) {
+                runBatch(Paths.get(args[1]), args.length > 2 && !args[2].startsWith("--")
+                        ? Integer.parseInt(args[2]) : 64, options);
+                return;
+            }
+
+            ReportSink report = options.report.open(new FileOutputStream(FileDescriptor.out), System.err);
+            try {
+                analyzeFamily(Paths.get(""), options, report);
+            } finally {
+                report.flush();
+            }
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RejectedRowException e) {
+            System.err.println("❌ Rejected row in strict mode: " + e.getMessage());
         } catch (IOException e) {
             System.err.println("❌ Error reading files: " + e.getMessage());
             System.err.println("\nPlease make sure the following files exist:");
@@ -57,942 +154,7786 @@ public class Main {
     }
 
 
-    static class BabyProfile {
-        String name;
-        LocalDate birthDate;
-        double birthWeight;
-        double birthHeight;
-        double birthHeadCircumference;
-        String bloodType;
-        String gender;
-        String notes;
+    // Command line switches that change how the event logs are read and reported
+    static class ScanOptions {
+        // --parallel counts the event logs in chunks across all cores
+        final boolean parallel;
+        // --incremental resumes from <log>.checkpoint and only parses rows appended since
+        final boolean incremental;
+        // --snapshot reads <log>.snap (written by --build-snapshot) while it matches the log.
+        // The snapshot keeps the rows in file order, so sorted scans read the CSV instead.
+        final boolean snapshot;
+        // --rejected-rows writes the rows an analyzer couldn't use to <log>.rejected.csv
+        final boolean rejectedRows;
+        // --strict stops at the first row that can't be used. Chunks don't know their line
+        // numbers until they are merged, so strict scans always run sequentially.
+        final boolean strict;
+        // --json or --csv instead of the text report
+        final ReportFormat report;
+        // --correlate joins the two logs by time after the per-log reports
+        final boolean correlate;
+        // --sort reads the logs in (date, time) order, see SortedLog. The checkpoint holds
+        // offsets into the log as written, so incremental scans never sort.
+        final boolean sort;
+
+        ScanOptions(List<String> args) {
+            report = ReportFormat.of(args);
+            strict = args.contains("--strict");
+            parallel = args.contains("--parallel") && !strict;
+            incremental = args.contains("--incremental");
+            sort = args.contains("--sort") && !incremental;
+            snapshot = args.contains("--snapshot") && !sort;
+            rejectedRows = args.contains("--rejected-rows");
+            correlate = args.contains("--correlate");
+        }
     }
 
-    private static BabyProfile loadBabyProfile() throws IOException {
-        // Try different possible filenames
-        Path profilePath = null;
-        if (Files.exists(Paths.get("BABY_PROFILE.csv"))) {
-            profilePath = Paths.get("BABY_PROFILE.csv");
-        } else if (Files.exists(Paths.get("baby_profile.csv"))) {
-            profilePath = Paths.get("baby_profile.csv");
-        } else {
-            throw new IOException("Baby profile file not found!");
+    // The full report for the profiles and logs in one family directory
+    private static FamilySummary analyzeFamily(Path dir, ScanOptions options, ReportSink report) throws IOException {
+        report.begin(dir);
+
+        // Load profiles
+        BabyProfile babyProfile = loadBabyProfile(dir);
+        MamaProfile mamaProfile = loadMamaProfile(dir);
+        report.profiles(babyProfile, mamaProfile);
+
+        // Load and analyze baby data
+        BabyStats babyStats = analyzeBabyData(dir, babyProfile, options, report.notes());
+        report.baby(babyProfile, babyStats);
+
+        // Load and analyze mama data
+        report.mama(mamaProfile, analyzeMamaData(dir, mamaProfile, options, report.notes()));
+        if (options.correlate) report.correlation(analyzeCorrelation(dir, options, report.notes()));
+        report.end();
+
+        FamilySummary summary = new FamilySummary(dir);
+        summary.babyName = babyProfile.name;
+        if (babyStats != null) {
+            long now = AlertLog.minuteOf(LocalDateTime.now());
+            summary.fever = babyStats.alertRules.holds("fever", babyStats, now);
+            summary.feedingOverdue = babyStats.alertRules.holds("feeding-overdue", babyStats, now);
+            summary.hoursSinceFeeding = babyStats.hoursSinceLastFeeding();
         }
+        return summary;
+    }
 
-        String csvData = Files.readString(profilePath);
-        String[] lines = csvData.split("\n");
+    // Where a family's report goes. analyzeFamily calls begin, profiles, baby, mama, correlation
+    // (only with --correlate) and end in that order, or error once something has failed; notes
+    // from scanning go to notes().
+    interface ReportSink extends Flushable {
+        PrintStream notes();
 
-        BabyProfile profile = new BabyProfile();
+        void begin(Path dir) throws IOException;
 
-        for (int i = 1; i < lines.length; i++) {
-            String line = lines[i].trim();
-            if (line.isEmpty()) continue;
+        void profiles(BabyProfile baby, MamaProfile mama) throws IOException;
 
-            String[] parts = line.split(",", 2);
-            if (parts.length < 2) continue;
+        // stats are null for a missing or empty log
+        void baby(BabyProfile profile, BabyStats stats) throws IOException;
 
-            String field = parts[0].trim();
-            String value = parts[1].trim();
+        void mama(MamaProfile profile, MamaStats stats) throws IOException;
 
-            switch (field) {
-                case "baby_name":
-                    profile.name = value;
-                    break;
-                case "birth_date":
-                    profile.birthDate = LocalDate.parse(value, DATE_FORMATTER);
-                    break;
-                case "birth_weight_kg":
-                    profile.birthWeight = Double.parseDouble(value);
-                    break;
-                case "birth_height_cm":
-                    profile.birthHeight = Double.parseDouble(value);
-                    break;
-                case "birth_head_circumference_cm":
-                    profile.birthHeadCircumference = Double.parseDouble(value);
-                    break;
-                case "blood_type":
-                    profile.bloodType = value;
-                    break;
-                case "gender":
-                    profile.gender = value;
-                    break;
-                case "notes":
-                    profile.notes = value;
-                    break;
-            }
-        }
+        // stats are null if either log is missing
+        void correlation(CrossStats stats) throws IOException;
 
-        return profile;
+        void end() throws IOException;
+
+        void error(Exception e) throws IOException;
     }
 
-    private static void displayBabyProfile(BabyProfile profile) {
-        System.out.println("👶 BABY PROFILE");
-        System.out.println("-".repeat(100));
-        System.out.println("Name: " + profile.name);
-        System.out.println("Birth Date: " + profile.birthDate);
+    // Output formats for the report, picked with --json or --csv
+    enum ReportFormat {
+        TEXT("analysis_report.txt"), JSON("analysis_report.json"), CSV("analysis_report.csv");
 
-        // Calculate age
-        long days = ChronoUnit.DAYS.between(profile.birthDate, LocalDate.now());
-        long years = days / 365;
-        long months = (days % 365) / 30;
-        long remainingDays = (days % 365) % 30;
+        // What --batch names each family's report
+        final String fileName;
 
-        if (years > 0) {
-            System.out.printf("Age: %d years, %d months, %d days (%d days total)\n",
-                    years, months, remainingDays, days);
-        } else {
-            System.out.printf("Age: %d months, %d days (%d days total)\n",
-                    months, remainingDays, days);
+        ReportFormat(String fileName) {
+            this.fileName = fileName;
+        }
+
+        static ReportFormat of(List<String> args) {
+            return args.contains("--json") ? JSON : args.contains("--csv") ? CSV : TEXT;
         }
 
-        System.out.println("Birth Weight: " + profile.birthWeight + " kg");
-        System.out.println("Birth Height: " + profile.birthHeight + " cm");
-        System.out.println("Birth Head Circumference: " + profile.birthHeadCircumference + " cm");
-        System.out.println("Blood Type: " + profile.bloodType);
-        System.out.println("Gender: " + profile.gender);
-        System.out.println("Notes: " + profile.notes);
-        System.out.println();
+        // Notes from the machine-readable formats go to notes so they don't corrupt out
+        ReportSink open(OutputStream out, PrintStream notes) {
+            switch (this) {
+                case JSON: return new JsonReport(out, notes);
+                case CSV: return new CsvReport(out, notes);
+                default: return new TextReport(out);
+            }
+        }
     }
 
+    // The report as people read it. Everything goes through one buffered UTF-8 stream, so
+    // the hundreds of println calls per report don't each reach the file or console.
+    static class TextReport implements ReportSink {
+        private final PrintStream out;
+        private Path dir;
 
-    static class MamaProfile {
-        String name;
-        LocalDate lastMenstrualPeriod;
-        LocalDate expectedDueDate;
-        double prePregnancyWeight;
-        String bloodType;
-        double height;
-        String doctorName;
-        String doctorPhone;
-        String hospital;
-        String allergies;
-        String chronicConditions;
-        LocalDate deliveryDate;
-        String deliveryType;
-        String babyName;
-        String notes;
-    }
+        TextReport(OutputStream out) {
+            this.out = new PrintStream(new BufferedOutputStream(out, 1 << 16), false, StandardCharsets.UTF_8);
+        }
 
-    private static MamaProfile loadMamaProfile() throws IOException {
-        // Try different possible filenames
-        Path profilePath = null;
-        if (Files.exists(Paths.get("MUM_PROFILE.CSV"))) {
-            profilePath = Paths.get("MUM_PROFILE.CSV");
-        } else if (Files.exists(Paths.get("mama_profile.csv"))) {
-            profilePath = Paths.get("mama_profile.csv");
-        } else {
-            throw new IOException("Mama profile file not found!");
+        @Override
+        public PrintStream notes() {
+            return out;
         }
 
-        String csvData = Files.readString(profilePath);
-        String[] lines = csvData.split("\n");
+        @Override
+        public void begin(Path dir) {
+            this.dir = dir;
+            out.println("=".repeat(100));
+            out.println("👶🤰 MOM & BABY CARE TRACKER - COMPREHENSIVE ANALYSIS 👶🤰");
+            out.println("=".repeat(100));
+            out.println();
+        }
 
-        MamaProfile profile = new MamaProfile();
+        // Each section's banner is printed before its log is scanned, so scan notes land under it
+        @Override
+        public void profiles(BabyProfile baby, MamaProfile mama) {
+            displayBabyProfile(baby, out);
+            displayMamaProfile(mama, out);
+            banner("📊 BABY DATA ANALYSIS");
+        }
 
-        for (int i = 1; i < lines.length; i++) {
-            String line = lines[i].trim();
-            if (line.isEmpty()) continue;
+        @Override
+        public void baby(BabyProfile profile, BabyStats stats) {
+            if (stats != null) printBabyReport(profile, stats, out);
+            banner("📊 MAMA DATA ANALYSIS");
+        }
 
-            String[] parts = line.split(",", 2);
-            if (parts.length < 2) continue;
+        @Override
+        public void mama(MamaProfile profile, MamaStats stats) {
+            if (stats != null) printMamaReport(profile, stats, out);
+        }
 
-            String field = parts[0].trim();
-            String value = parts[1].trim();
+        @Override
+        public void correlation(CrossStats stats) {
+            banner("🔗 BABY & MAMA CORRELATION");
+            if (stats != null) printCorrelation(stats, out);
+        }
 
-            if (value.isEmpty()) continue;
+        @Override
+        public void end() {
+            banner("✅ ANALYSIS COMPLETE! ALL SYSTEMS CHECKED.");
+            out.flush();
+        }
 
-            switch (field) {
-                case "mama_name":
-                    profile.name = value;
-                    break;
-                case "last_menstrual_period":
-                    profile.lastMenstrualPeriod = LocalDate.parse(value, DATE_FORMATTER);
-                    break;
-                case "expected_due_date":
-                    profile.expectedDueDate = LocalDate.parse(value, DATE_FORMATTER);
-                    break;
-                case "pre_pregnancy_weight_kg":
-                    profile.prePregnancyWeight = Double.parseDouble(value);
-                    break;
-                case "blood_type":
-                    profile.bloodType = value;
-                    break;
-                case "height_cm":
-                    profile.height = Double.parseDouble(value);
-                    break;
-                case "doctor_name":
-                    profile.doctorName = value;
-                    break;
-                case "doctor_phone":
-                    profile.doctorPhone = value;
-                    break;
-                case "hospital":
-                    profile.hospital = value;
-                    break;
-                case "allergies":
-                    profile.allergies = value;
-                    break;
-                case "chronic_conditions":
-                    profile.chronicConditions = value;
-                    break;
-                case "delivery_date":
-                    profile.deliveryDate = LocalDate.parse(value, DATE_FORMATTER);
-                    break;
-                case "delivery_type":
-                    profile.deliveryType = value;
-                    break;
-                case "baby_name":
-                    profile.babyName = value;
-                    break;
-                case "notes":
-                    profile.notes = value;
-                    break;
-            }
+        @Override
+        public void error(Exception e) {
+            out.println("❌ Error analyzing " + dir + ": " + e);
+            out.flush();
         }
 
-        return profile;
+        @Override
+        public void flush() {
+            out.flush();
+        }
+
+        private void banner(String title) {
+            out.println("\n" + "=".repeat(100));
+            out.println(title);
+            out.println("=".repeat(100));
+        }
     }
 
-    private static void displayMamaProfile(MamaProfile profile) {
-        System.out.println("🤰 MAMA PROFILE");
-        System.out.println("-".repeat(100));
-        System.out.println("Name: " + profile.name);
-        System.out.println("Last Menstrual Period: " + profile.lastMenstrualPeriod);
-        System.out.println("Expected Due Date: " + profile.expectedDueDate);
+    // One JSON document per family with the same fields as the API:
+    // {"dir": ..., "baby": {...}, "mama": {...}}, or an "error" field if the analysis failed
+    static class JsonReport implements ReportSink {
+        private final Writer out;
+        private final PrintStream notes;
+        final JsonWriter json;
+        private boolean open;
 
-        if (profile.deliveryDate != null) {
-            System.out.println("Delivery Date: " + profile.deliveryDate);
-            System.out.println("Delivery Type: " + profile.deliveryType);
-            long daysPostpartum = ChronoUnit.DAYS.between(profile.deliveryDate, LocalDate.now());
-            long weeksPostpartum = daysPostpartum / 7;
-            System.out.printf("Postpartum: %d weeks (%d days)\n", weeksPostpartum, daysPostpartum);
-        } else {
-            // Calculate pregnancy week
-            long daysSinceLMP = ChronoUnit.DAYS.between(profile.lastMenstrualPeriod, LocalDate.now());
-            long weeks = daysSinceLMP / 7;
-            long days = daysSinceLMP % 7;
-            int trimester = weeks <= 13 ? 1 : weeks <= 27 ? 2 : 3;
-            System.out.printf("Current Pregnancy: Week %d + %d days (Trimester %d)\n",
-                    weeks, days, trimester);
+        JsonReport(OutputStream out, PrintStream notes) {
+            this(out, notes, JsonWriter::new);
+        }
 
-            long daysUntilDue = ChronoUnit.DAYS.between(LocalDate.now(), profile.expectedDueDate);
-            System.out.println("Days Until Due Date: " + daysUntilDue);
+        JsonReport(OutputStream out, PrintStream notes, Function<Writer, JsonWriter> writerFor) {
+            this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            this.notes = notes;
+            json = writerFor.apply(this.out);
         }
 
-        System.out.println("Pre-Pregnancy Weight: " + profile.prePregnancyWeight + " kg");
-        System.out.println("Height: " + profile.height + " cm");
-        System.out.println("Blood Type: " + profile.bloodType);
-        System.out.println("Doctor: " + profile.doctorName + " (" + profile.doctorPhone + ")");
-        System.out.println("Hospital: " + profile.hospital);
-        System.out.println("Allergies: " + profile.allergies);
-        System.out.println("Baby: " + profile.babyName);
-        System.out.println();
-    }
+        @Override
+        public PrintStream notes() {
+            return notes;
+        }
 
+        @Override
+        public void begin(Path dir) {
+            json.beginObject().name("dir").value(dir.toAbsolutePath().normalize().toString());
+            open = true;
+        }
 
-    private static void analyzeBabyData(BabyProfile profile) throws IOException {
-        Path dataPath = null;
-        if (Files.exists(Paths.get("baby_data.csv"))) {
-            dataPath = Paths.get("baby_data.csv");
-        } else if (Files.exists(Paths.get("BABY_DATA.csv"))) {
-            dataPath = Paths.get("BABY_DATA.csv");
-        } else {
-            System.out.println("⚠️ No baby data file found. Skipping baby analysis.");
-            return;
+        @Override
+        public void profiles(BabyProfile baby, MamaProfile mama) {
         }
 
-        String csvData = Files.readString(dataPath);
-        String[] lines = csvData.split("\n");
+        @Override
+        public void baby(BabyProfile profile, BabyStats stats) {
+            writeBabyJson(json.name("baby"), profile, stats);
+        }
 
-        if (lines.length < 2) {
-            System.out.println("No baby data found in file.");
-            return;
+        @Override
+        public void mama(MamaProfile profile, MamaStats stats) {
+            writeMamaJson(json.name("mama"), profile, stats);
         }
 
-        LocalDate today = LocalDate.now();
-        LocalDate yesterday = today.minusDays(1);
-        LocalDate weekAgo = today.minusDays(7);
+        @Override
+        public void correlation(CrossStats stats) {
+            if (stats != null) writeCorrelationJson(json.name("correlation"), stats);
+        }
 
-        // Counters
-        int totalFeedings = 0, todayFeedings = 0, yesterdayFeedings = 0, weekFeedings = 0;
-        int totalSleepMinutes = 0, todaySleepMinutes = 0;
-        int totalDiapers = 0, todayDiapers = 0;
-        double totalTemperature = 0;
-        int temperatureCount = 0;
-        double maxTemp = 0, minTemp = 100;
-        int milestoneCount = 0, memoryCount = 0;
-        int vaccineCount = 0, doctorVisitCount = 0;
-        int pumpingCount = 0;
-        double totalPumpingML = 0;
+        @Override
+        public void end() throws IOException {
+            json.endObject();
+            open = false;
+            finishLine();
+        }
 
-        Map<String, Integer> feedingTypes = new HashMap<>();
-        Map<String, Integer> diaperTypes = new HashMap<>();
-        Map<String, Integer> moodCounts = new HashMap<>();
-        Map<String, Integer> sleepQuality = new HashMap<>();
-        List<String> milestones = new ArrayList<>();
-        List<String> memories = new ArrayList<>();
-        List<String> vaccines = new ArrayList<>();
-        List<Double> growthWeights = new ArrayList<>();
-        List<Double> growthHeights = new ArrayList<>();
+        @Override
+        public void error(Exception e) throws IOException {
+            if (!open) json.beginObject();
+            json.name("error").value(e.toString()).endObject();
+            open = false;
+            finishLine();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            json.flush();
+        }
 
-        LocalTime lastFeedingTime = null;
-        LocalDate lastFeedingDate = null;
+        private void finishLine() throws IOException {
+            json.buffer.append('\n');
+            json.flush();
+        }
+    }
 
-        // Parse CSV
-        for (int i = 1; i < lines.length; i++) {
-            String line = lines[i].trim();
-            if (line.isEmpty()) continue;
+    // The JSON report flattened to metric,value lines (baby.feedings.today,5) for
+    // spreadsheets and tools that don't read JSON
+    static class CsvReport extends JsonReport {
+        CsvReport(OutputStream out, PrintStream notes) {
+            super(out, notes, FlatCsvWriter::new);
+            json.buffer.append("metric,value\n");
+        }
+
+        @Override
+        public void end() throws IOException {
+            json.endObject();
+            json.flush();
+        }
+
+        @Override
+        public void error(Exception e) throws IOException {
+            json.name("error").value(e.toString());
+            json.flush();
+        }
+    }
+
+    // What the fleet summary needs from one family's analysis
+    static class FamilySummary {
+        final Path dir;
+        String babyName;
+        // The fever and feeding-overdue rules of BABY_ALERT_RULES at the time of the report
+        boolean fever, feedingOverdue;
+        long hoursSinceFeeding = -1;
+        String error;
+
+        FamilySummary(Path dir) {
+            this.dir = dir;
+        }
+    }
+
+    private static final String[] BABY_PROFILES = {"BABY_PROFILE.csv", "baby_profile.csv"};
+
+    // Analyzes every folder under root that has a baby profile, at most maxConcurrent at a
+    // time. Each family's report goes to its own folder and root gets fleet_summary.txt.
+    private static void runBatch(Path root, int maxConcurrent, ScanOptions options)
+            throws IOException, InterruptedException {
+        List<Path> families;
+        try (Stream<Path> paths = Files.walk(root)) {
+            families = paths.filter(Files::isDirectory)
+                    .filter(dir -> findLog(dir, BABY_PROFILES) != null)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
 
-            String[] cols = parseCSVLine(line);
-            if (cols.length < 3) continue;
+        long start = System.nanoTime();
+        // Each family blocks on file I/O most of the time, so it gets its own (virtual) thread;
+        // the semaphore bounds how many families read files at once
+        Semaphore io = new Semaphore(maxConcurrent);
+        ExecutorService executor = newFamilyExecutor(maxConcurrent);
+        List<Future<FamilySummary>> futures = new ArrayList<>();
+        for (Path dir : families) {
+            futures.add(executor.submit(() -> {
+                io.acquire();
+                try {
+                    return analyzeFamilyToFile(dir, options);
+                } finally {
+                    io.release();
+                }
+            }));
+        }
+        executor.shutdown();
 
+        List<FamilySummary> summaries = new ArrayList<>();
+        for (Future<FamilySummary> future : futures) {
             try {
-                String dateStr = cols[0].trim();
-                String timeStr = cols.length > 1 ? cols[1].trim() : "";
-                String activity = cols[2].trim();
-
-                if (dateStr.isEmpty()) continue;
-
-                LocalDate eventDate = LocalDate.parse(dateStr, DATE_FORMATTER);
-                boolean isToday = eventDate.equals(today);
-                boolean isYesterday = eventDate.equals(yesterday);
-                boolean isThisWeek = !eventDate.isBefore(weekAgo);
-
-                switch (activity) {
-                    case "feeding":
-                        totalFeedings++;
-                        if (isToday) todayFeedings++;
-                        if (isYesterday) yesterdayFeedings++;
-                        if (isThisWeek) weekFeedings++;
-
-                        if (cols.length > 3 && !cols[3].isEmpty()) {
-                            String type = cols[3].trim();
-                            feedingTypes.put(type, feedingTypes.getOrDefault(type, 0) + 1);
-                        }
+                summaries.add(future.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
 
-                        if (!timeStr.isEmpty()) {
-                            lastFeedingDate = eventDate;
-                            lastFeedingTime = LocalTime.parse(timeStr, TIME_FORMATTER);
-                        }
-                        break;
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        try (PrintStream out = new PrintStream(Files.newOutputStream(root.resolve("fleet_summary.txt")),
+                false, StandardCharsets.UTF_8)) {
+            printFleetSummary(summaries, elapsedMillis, out);
+        }
+        // UTF-8 like the reports, whatever the platform charset; flushed but not closed, as it wraps stdout
+        PrintStream console = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false,
+                StandardCharsets.UTF_8);
+        printFleetSummary(summaries, elapsedMillis, console);
+        console.flush();
+    }
 
-                    case "sleep":
-                        if (cols.length > 4 && cols[4].equals("end")) {
-                            int duration = cols.length > 5 && !cols[5].isEmpty()
-                                    ? Integer.parseInt(cols[5].trim()) : 0;
-                            totalSleepMinutes += duration;
-                            if (isToday) todaySleepMinutes += duration;
+    // Virtual threads need Java 21; older runtimes get a pool of maxConcurrent platform threads
+    private static ExecutorService newFamilyExecutor(int maxConcurrent) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(maxConcurrent);
+        }
+    }
 
-                            if (cols.length > 7 && !cols[7].isEmpty()) {
-                                String quality = cols[7].trim();
-                                sleepQuality.put(quality, sleepQuality.getOrDefault(quality, 0) + 1);
-                            }
-                        }
-                        break;
+    // Writes dir/analysis_report.txt (.json, .csv). A family that can't be analyzed is reported
+    // with its error instead of stopping the batch.
+    private static FamilySummary analyzeFamilyToFile(Path dir, ScanOptions options) throws IOException {
+        try (OutputStream out = Files.newOutputStream(dir.resolve(options.report.fileName))) {
+            ReportSink report = options.report.open(out, System.err);
+            try {
+                return analyzeFamily(dir, options, report);
+            } catch (IOException | RuntimeException e) {
+                report.error(e);
+                FamilySummary summary = new FamilySummary(dir);
+                summary.error = e.toString();
+                return summary;
+            }
+        }
+    }
+
+    private static void printFleetSummary(List<FamilySummary> summaries, long elapsedMillis, PrintStream out) {
+        List<FamilySummary> failed = new ArrayList<>(), fevers = new ArrayList<>(), overdue = new ArrayList<>();
+        for (FamilySummary summary : summaries) {
+            if (summary.error != null) failed.add(summary);
+            if (summary.fever) fevers.add(summary);
+            if (summary.feedingOverdue) overdue.add(summary);
+        }
 
-                    case "diaper":
-                        totalDiapers++;
-                        if (isToday) todayDiapers++;
+        out.println("=".repeat(100));
+        out.println("🏥 FLEET SUMMARY");
+        out.println("=".repeat(100));
+        out.printf("  Families analyzed: %d (%d failed) in %d ms\n",
+                summaries.size() - failed.size(), failed.size(), elapsedMillis);
+        out.println("\n🔥 FEVER ALERTS: " + fevers.size());
+        for (FamilySummary summary : fevers) {
+            out.println("  " + summary.dir + " (" + summary.babyName + ")");
+        }
+        out.println("\n🍼 OVERDUE FEEDINGS: " + overdue.size());
+        for (FamilySummary summary : overdue) {
+            out.println("  " + summary.dir + " (" + summary.babyName + "): " + summary.hoursSinceFeeding + " hours");
+        }
+        if (!failed.isEmpty()) {
+            out.println("\n❌ FAILED: " + failed.size());
+            for (FamilySummary summary : failed) {
+                out.println("  " + summary.dir + ": " + summary.error);
+            }
+        }
+    }
+
+    private static final Duration WATCH_TICK = Duration.ofMinutes(1);
+
+    // Keeps both analyzers in memory and parses only the rows appended to the logs in dir,
+    // printing a status line whenever they change. Between writes the thread sleeps on the
+    // WatchService; it only wakes once a minute so the feeding alert can fire without a write.
+    private static void runWatch(Path dir, ScanOptions options) throws IOException, InterruptedException {
+        BabyProfile babyProfile = loadBabyProfile(dir);
+        LiveLog<BabyStats> baby = new LiveLog<>(dir, BABY_LOGS, babyStatsFor(babyProfile, options));
+        LiveLog<MamaStats> mama = new LiveLog<>(dir, MAMA_LOGS, mamaStatsFor(options));
+
+        try (WatchService watcher = dir.toAbsolutePath().getFileSystem().newWatchService()) {
+            dir.toAbsolutePath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            System.out.println("👀 Watching " + dir.toAbsolutePath() + " for new rows (Ctrl+C to stop)");
+            LocalDate day = LocalDate.now();
+            baby.refresh(options.parallel);
+            mama.refresh(options.parallel);
+            String shown = printWatchStatus(baby, mama, null);
+            // Only alerts fired after startup are printed as they happen
+            long babySeen = baby.stats == null ? 0 : baby.stats.alerts.total;
+            long mamaSeen = mama.stats == null ? 0 : mama.stats.alerts.total;
+
+            while (true) {
+                WatchKey key = watcher.poll(WATCH_TICK.toMillis(), TimeUnit.MILLISECONDS);
+                boolean changed = false;
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object name = event.context();
+                        boolean all = event.kind() == StandardWatchEventKinds.OVERFLOW;
+                        if (all || baby.watches(name)) changed |= baby.refresh(false);
+                        if (all || mama.watches(name)) changed |= mama.refresh(false);
+                    }
+                    if (!key.reset()) {
+                        System.out.println("⚠️ " + dir.toAbsolutePath() + " is no longer accessible, stopping");
+                        return;
+                    }
+                }
+                // Today/yesterday/week are fixed when the stats are created, so start both over at midnight
+                if (!day.equals(LocalDate.now())) {
+                    day = LocalDate.now();
+                    baby.reset();
+                    mama.reset();
+                    changed |= baby.refresh(options.parallel);
+                    changed |= mama.refresh(options.parallel);
+                    babySeen = baby.stats == null ? 0 : baby.stats.alerts.total;
+                    mamaSeen = mama.stats == null ? 0 : mama.stats.alerts.total;
+                }
+                // Rules like the feeding gap can start to hold without a new row
+                long now = AlertLog.minuteOf(LocalDateTime.now());
+                if (baby.stats != null) {
+                    baby.stats.alerts.check(baby.stats.alertRules, baby.stats.alertRules.all, baby.stats, now);
+                    babySeen = printNewAlerts("baby", baby.stats.alerts, babySeen);
+                }
+                if (mama.stats != null) {
+                    mama.stats.alerts.check(mama.stats.alertRules, mama.stats.alertRules.all, mama.stats, now);
+                    mamaSeen = printNewAlerts("mama", mama.stats.alerts, mamaSeen);
+                }
+                shown = printWatchStatus(baby, mama, changed ? null : shown);
+            }
+        }
+    }
+
+    // Prints the alerts fired since the first seen of them. Returns how many have been seen now.
+    private static long printNewAlerts(String log, AlertLog alerts, long seen) {
+        for (AlertLog.Fired alert : alerts.since(seen)) {
+            System.out.println("[" + LocalTime.now().withNano(0) + "] 🚨 " + log + " " + alert.rule + " at "
+                    + AlertLog.format(alert.minute) + ": " + alert.message);
+        }
+        return alerts.total;
+    }
+
+    // Prints the status and alerts unless they are the same as shown. Returns what is shown now.
+    private static String printWatchStatus(LiveLog<BabyStats> baby, LiveLog<MamaStats> mama, String shown) {
+        StringBuilder status = new StringBuilder();
+        BabyStats b = baby.stats;
+        if (b == null) {
+            status.append("baby: no rows yet");
+        } else {
+            status.append("baby: ").append(b.rejections.lines()).append(" rows, ")
+                    .append(b.days.sum(DailyRollup.FEEDINGS, b.todayDay, b.todayDay)).append(" feedings today");
+            long hours = b.hoursSinceLastFeeding();
+            if (hours >= 0) status.append(", last ").append(hours).append("h ago");
+        }
+        MamaStats m = mama.stats;
+        status.append(" | mama: ").append(m == null ? "no rows yet" : m.rejections.lines() + " rows");
+
+        List<String> alerts = new ArrayList<>();
+        if (b != null) alerts.addAll(babyAlerts(b));
+        if (m != null) alerts.addAll(mamaAlerts(m));
+
+        String text = status + (alerts.isEmpty() ? "" : "\n  " + String.join("\n  ", alerts));
+        if (!text.equals(shown)) {
+            System.out.println("[" + LocalTime.now().withNano(0) + "] " + text);
+        }
+        return text;
+    }
+
+    // The night window of the sleep report, in minutes of the day
+    static final int NIGHT_START = 22 * 60, NIGHT_END = 6 * 60;
+
+    // Below the WHO 3rd percentile
+    static final double LOW_GROWTH_Z = -1.881;
+
+    // Checked as the baby log is read, see AlertRule. Cooldowns are in minutes of log time.
+    static final List<AlertRule<BabyStats>> BABY_ALERT_RULES = List.of(
+            new AlertRule<BabyStats>("fever", "🔥 Fever detected! (>38°C) - Contact doctor!", 6 * 60,
+                    (stats, minute) -> stats.lastTemperature >= 38.0, "temperature"),
+            new AlertRule<BabyStats>("feeding-overdue", "⚠️ Over 4 hours since last feeding!", 4 * 60,
+                    (stats, minute) -> stats.minutesSinceLastFeeding(minute) / 60 > 4),
+            new AlertRule<BabyStats>("fussy", "⚠️ Baby has been fussy/crying frequently", 24 * 60,
+                    (stats, minute) -> stats.moodCounts.total() >= 10 && stats.moodCounts.count("fussy")
+                            + stats.moodCounts.count("crying") > stats.moodCounts.total() * 0.4, "mood"),
+            new AlertRule<BabyStats>("low-weight", "⚠️ Weight below the 3rd percentile for age", 7 * 24 * 60,
+                    (stats, minute) -> stats.latestZ(WhoGrowth.WEIGHT) < LOW_GROWTH_Z, "growth"));
+
+    static final List<AlertRule<MamaStats>> MAMA_ALERT_RULES = List.of(
+            new AlertRule<MamaStats>("low-mood", "⚠️ Low mood detected", 24 * 60,
+                    (stats, minute) -> stats.moodCount > 0 && stats.totalMoodScore.value() / stats.moodCount < 5, "mood"),
+            new AlertRule<MamaStats>("sleep-deprivation", "🔴 Severe sleep deprivation", 24 * 60,
+                    (stats, minute) -> stats.sleepDays > 0 && stats.totalSleepMinutes / 60.0 / stats.sleepDays < 6,
+                    "mama_sleep"),
+            new AlertRule<MamaStats>("contractions", "🤰 Over 10 contractions recorded", 24 * 60,
+                    (stats, minute) -> stats.contractionCount > 10, "contractions"),
+            new AlertRule<MamaStats>("nausea", "💡 Frequent nausea - try ginger tea, small meals", 7 * 24 * 60,
+                    (stats, minute) -> stats.symptomCounts.count("nausea") > 10, "symptom"),
+            new AlertRule<MamaStats>("back-pain", "💡 Frequent back pain - consider prenatal yoga, massage",
+                    7 * 24 * 60, (stats, minute) -> stats.symptomCounts.count("back_pain") > 15, "symptom"));
+
+    // The rules that hold right now. Checking doesn't record anything, so reports can ask
+    // from any thread.
+    private static List<String> babyAlerts(BabyStats stats) {
+        return stats.alerts.activeAt(stats.alertRules, stats, AlertLog.minuteOf(LocalDateTime.now()));
+    }
+
+    private static List<String> mamaAlerts(MamaStats stats) {
+        return stats.alerts.activeAt(stats.alertRules, stats, AlertLog.minuteOf(LocalDateTime.now()));
+    }
+
+    // True if an alert applies to stats at minute (log time, minutes since 1970-01-01)
+    interface AlertCondition<S> {
+        boolean test(S stats, long minute);
+    }
+
+    // An alert over a log's running statistics. The condition reads state the stats class
+    // keeps up to date row by row, so checking it costs a few field reads. It is checked after
+    // each row of one of its activities, or after every row if it lists none.
+    static class AlertRule<S> {
+        final String id;
+        final String message;
+        final int cooldownMinutes;
+        final AlertCondition<S> condition;
+        final String[] activities;
+
+        AlertRule(String id, String message, int cooldownMinutes, AlertCondition<S> condition,
+                  String... activities) {
+            this.id = id;
+            this.message = message;
+            this.cooldownMinutes = cooldownMinutes;
+            this.condition = condition;
+            this.activities = activities;
+        }
+    }
+
+    // A log's rules by activity id, resolved once the header is read. Read-only, so every
+    // chunk of a scan shares it.
+    static class AlertRules<S> {
+        final List<AlertRule<S>> rules;
+        final int[] all;
+        private final int[][] byActivity;
+        private final int[] everyRow;
+
+        AlertRules(ActivityHandlers handlers, List<AlertRule<S>> rules) {
+            this.rules = rules;
+            all = new int[rules.size()];
+            List<List<Integer>> indexes = new ArrayList<>();
+            for (int id = 0; id < handlers.activityCount(); id++) indexes.add(new ArrayList<>());
+            List<Integer> any = new ArrayList<>();
+            for (int r = 0; r < rules.size(); r++) {
+                all[r] = r;
+                if (rules.get(r).activities.length == 0) any.add(r);
+                for (String activity : rules.get(r).activities) {
+                    int id = handlers.activityId(activity);
+                    if (id >= 0) indexes.get(id).add(r);
+                }
+            }
+            everyRow = any.stream().mapToInt(Integer::intValue).toArray();
+            byActivity = new int[indexes.size()][];
+            for (int id = 0; id < byActivity.length; id++) {
+                List<Integer> rulesForId = new ArrayList<>(indexes.get(id));
+                for (int r : everyRow) if (!rulesForId.contains(r)) rulesForId.add(r);
+                rulesForId.sort(null);
+                byActivity[id] = rulesForId.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        // Rules to check after a row of the activity (-1 for one no rule names)
+        int[] forActivity(int activityId) {
+            return activityId >= 0 && activityId < byActivity.length ? byActivity[activityId] : everyRow;
+        }
+
+        // True if the rule with this id holds for stats at minute
+        boolean holds(String id, S stats, long minute) {
+            for (AlertRule<S> rule : rules) {
+                if (rule.id.equals(id)) return rule.condition.test(stats, minute);
+            }
+            throw new IllegalArgumentException("No alert rule " + id);
+        }
+    }
+
+    // What the rules have fired during one scan. A rule fires when its condition becomes true
+    // and stays quiet while it remains true. If it becomes true again within its cooldown of
+    // the last time it fired, that is counted as suppressed instead. The latest MAX_RECENT
+    // alerts are kept with their log time, plus a count per rule.
+    static class AlertLog {
+        static final long NO_TIME = Long.MIN_VALUE;
+        static final int MAX_RECENT = 50;
+
+        static class Fired {
+            final String rule;
+            final String message;
+            final long minute;
+
+            Fired(String rule, String message, long minute) {
+                this.rule = rule;
+                this.message = message;
+                this.minute = minute;
+            }
+        }
+
+        // A rule turning true in a deferred log: the first check of the rule in the chunk, or
+        // one after it was false
+        private static class Edge {
+            final int rule;
+            final long minute;
+            final boolean first;
+
+            Edge(int rule, long minute, boolean first) {
+                this.rule = rule;
+                this.minute = minute;
+                this.first = first;
+            }
+        }
+
+        private final boolean[] active;
+        final long[] lastFired;
+        final int[] fired;
+        final int[] suppressed;
+        final ArrayDeque<Fired> recent = new ArrayDeque<>();
+        long total;
+        // Set by defer(): which rules were checked, and where they turned true
+        private boolean[] checked;
+        private List<Edge> edges;
+
+        AlertLog(int rules) {
+            active = new boolean[rules];
+            lastFired = new long[rules];
+            Arrays.fill(lastFired, NO_TIME);
+            fired = new int[rules];
+            suppressed = new int[rules];
+        }
+
+        // For a chunk read from a copy of the state before it (see scanChunks): what the rules
+        // did before the chunk isn't known here, so checks only record where each rule turned
+        // true, for replay() onto the log of the rows before
+        void defer() {
+            checked = new boolean[active.length];
+            edges = new ArrayList<>();
+        }
+
+        static long minuteOf(LocalDateTime time) {
+            return time.toLocalDate().toEpochDay() * 1440 + time.getHour() * 60 + time.getMinute();
+        }
+
+        static String format(long minute) {
+            return LocalDate.ofEpochDay(Math.floorDiv(minute, 1440)) + " "
+                    + LocalTime.ofSecondOfDay(Math.floorMod(minute, 1440) * 60L);
+        }
+
+        // Checks the given rules (indexes into rules.rules) against stats at minute
+        <S> void check(AlertRules<S> rules, int[] indexes, S stats, long minute) {
+            for (int r : indexes) {
+                AlertRule<S> rule = rules.rules.get(r);
+                boolean holds = rule.condition.test(stats, minute);
+                if (edges != null) {
+                    if (holds && (!checked[r] || !active[r])) edges.add(new Edge(r, minute, !checked[r]));
+                    checked[r] = true;
+                } else if (holds && !active[r]) {
+                    fire(rule, r, minute);
+                }
+                active[r] = holds;
+            }
+        }
+
+        // Applies a deferred log of the rows right after ours, as if its checks had been made here
+        <S> void replay(AlertRules<S> rules, AlertLog later) {
+            for (Edge edge : later.edges) {
+                // A rule already true before the chunk didn't turn true at its first check
+                if (edge.first && active[edge.rule]) continue;
+                fire(rules.rules.get(edge.rule), edge.rule, edge.minute);
+            }
+            for (int r = 0; r < active.length; r++) {
+                if (later.checked[r]) active[r] = later.active[r];
+            }
+        }
+
+        // The rule turned true at minute: an alert, or a suppressed repeat within its cooldown
+        private <S> void fire(AlertRule<S> rule, int r, long minute) {
+            if (lastFired[r] != NO_TIME && minute - lastFired[r] < rule.cooldownMinutes) {
+                suppressed[r]++;
+                return;
+            }
+            fired[r]++;
+            lastFired[r] = minute;
+            total++;
+            recent.addLast(new Fired(rule.id, rule.message, minute));
+            if (recent.size() > MAX_RECENT) recent.removeFirst();
+        }
+
+        <S> List<String> activeAt(AlertRules<S> rules, S stats, long minute) {
+            List<String> messages = new ArrayList<>();
+            for (AlertRule<S> rule : rules.rules) {
+                if (rule.condition.test(stats, minute)) messages.add(rule.message);
+            }
+            return messages;
+        }
+
+        // Alerts fired after the first seen of them, oldest first
+        List<Fired> since(long seen) {
+            List<Fired> latest = new ArrayList<>(recent);
+            return latest.subList((int) Math.max(0, latest.size() - (total - seen)), latest.size());
+        }
+
+        int suppressedTotal() {
+            int count = 0;
+            for (int n : suppressed) count += n;
+            return count;
+        }
+
+        <S> void writeState(AlertRules<S> rules, DataOutput out) throws IOException {
+            out.writeInt(active.length);
+            for (int r = 0; r < active.length; r++) {
+                LogCheckpoint.writeString(out, rules.rules.get(r).id);
+                out.writeBoolean(active[r]);
+                out.writeLong(lastFired[r]);
+                out.writeInt(fired[r]);
+                out.writeInt(suppressed[r]);
+            }
+            out.writeLong(total);
+            out.writeInt(recent.size());
+            for (Fired alert : recent) {
+                LogCheckpoint.writeString(out, alert.rule);
+                LogCheckpoint.writeString(out, alert.message);
+                out.writeLong(alert.minute);
+            }
+        }
+
+        // False if the checkpoint was saved with other rules
+        <S> boolean readState(AlertRules<S> rules, DataInput in) throws IOException {
+            if (in.readInt() != active.length) return false;
+            for (int r = 0; r < active.length; r++) {
+                if (!LogCheckpoint.readString(in).equals(rules.rules.get(r).id)) return false;
+                active[r] = in.readBoolean();
+                lastFired[r] = in.readLong();
+                fired[r] = in.readInt();
+                suppressed[r] = in.readInt();
+            }
+            total = in.readLong();
+            for (int n = in.readInt(); n > 0; n--) {
+                recent.addLast(new Fired(LogCheckpoint.readString(in), LogCheckpoint.readString(in), in.readLong()));
+            }
+            return true;
+        }
+    }
+
+    // A log that is parsed as it grows. Only whole lines are parsed; a last line that is
+    // still being written waits for the next refresh. A log that gets shorter has been
+    // rewritten rather than appended to, so it is read again from the header.
+    static class LiveLog<S extends LogStats<S>> {
+        private final Path dir;
+        // The possible file names, as for findLog
+        private final String[] names;
+        private final Function<CsvRow, Supplier<S>> fromHeader;
+        private Path path;
+        private Supplier<S> newStats;
+        private long offset;
+        S stats;
+
+        LiveLog(Path dir, String[] names, Function<CsvRow, Supplier<S>> fromHeader) {
+            this.dir = dir;
+            this.names = names;
+            this.fromHeader = fromHeader;
+        }
+
+        // Whether a change to the file name in dir may concern this log
+        boolean watches(Object name) {
+            for (String candidate : names) {
+                if (Path.of(candidate).equals(name)) return true;
+            }
+            return false;
+        }
+
+        void reset() {
+            newStats = null;
+            stats = null;
+            offset = 0;
+        }
+
+        // Parses the lines appended since the last refresh. Returns true if there were any.
+        boolean refresh(boolean parallel) throws IOException {
+            // The log read is the one analyzeFamily would pick, which changes if another name appears
+            Path found = findLog(dir, names);
+            if (found == null) return false;
+            if (!found.equals(path)) {
+                reset();
+                path = found;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < offset) reset();
+                if (newStats == null) {
+                    if (lastLineEnd(channel, 0, size) == 0) return false;
+                    try (CsvReader reader = new CsvReader(Files.newInputStream(path))) {
+                        reader.next();
+                        newStats = fromHeader.apply(reader.row());
+                        offset = reader.position();
+                    }
+                }
+                long complete = lastLineEnd(channel, offset, size);
+                if (complete <= offset) return false;
+                stats = scanRange(channel, offset, complete, parallel, newStats, stats);
+                offset = complete;
+                return true;
+            }
+        }
+    }
+
+    // --serve [port] [--bind address]: the baby and mama statistics as JSON on GET /api/baby,
+    // /api/mama and /api/stats (both), with cache hit counts on /api/cache. POST /api/ingest/baby and
+    // /api/ingest/mama append batches of events; GET /api/ingest counts the commits.
+    // GET /api/events/baby and /api/events/mama answer row queries from an EventStore, and
+    // /api/events gives the stores' memory use. Profiles are read once at startup; each log is
+    // parsed again only when its size or mtime changes, so dashboard polls of unchanged files
+    // cost a stat call. The server listens on the loopback address unless --bind names
+    // another, since nothing asks who is appending to the logs.
+    private static void runServer(Path dir, InetAddress address, int port, ScanOptions options) throws IOException {
+        BabyProfile babyProfile = loadBabyProfile(dir);
+        MamaProfile mamaProfile = loadMamaProfile(dir);
+        CachedLog<BabyStats> baby = new CachedLog<>(() -> findLog(dir, BABY_LOGS), path -> {
+            BabyStats stats = scanLog(path, options, System.out, babyStatsFor(babyProfile, options));
+            if (stats != null) {
+                stats.days.buildLookups();
+                stats.sleep.buildIndex();
+            }
+            return stats;
+        });
+        CachedLog<MamaStats> mama = new CachedLog<>(() -> findLog(dir, MAMA_LOGS),
+                path -> scanLog(path, options, System.out, mamaStatsFor(options)));
+        CachedLog<EventStore> babyEvents = new CachedLog<>(() -> findLog(dir, BABY_LOGS), Main::loadEventStore);
+        CachedLog<EventStore> mamaEvents = new CachedLog<>(() -> findLog(dir, MAMA_LOGS), Main::loadEventStore);
+
+        // Without TCP_NODELAY small responses wait out the client's delayed ACK (~40 ms each)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext("/api/baby", exchange -> respond(exchange, () -> {
+            JsonWriter json = new JsonWriter();
+            writeBabyJson(json, babyProfile, baby.get());
+            return json;
+        }));
+        server.createContext("/api/mama", exchange -> respond(exchange, () -> {
+            JsonWriter json = new JsonWriter();
+            writeMamaJson(json, mamaProfile, mama.get());
+            return json;
+        }));
+        server.createContext("/api/stats", exchange -> respond(exchange, () -> {
+            JsonWriter json = new JsonWriter().beginObject();
+            writeBabyJson(json.name("baby"), babyProfile, baby.get());
+            writeMamaJson(json.name("mama"), mamaProfile, mama.get());
+            return json.endObject();
+        }));
+        server.createContext("/api/cache", exchange -> respond(exchange, () -> new JsonWriter().beginObject()
+                .name("baby").beginObject().name("hits").value(baby.hits.sum()).name("misses").value(baby.misses.sum())
+                .endObject()
+                .name("mama").beginObject().name("hits").value(mama.hits.sum()).name("misses").value(mama.misses.sum())
+                .endObject()
+                .endObject()));
+        server.createContext("/api/events/baby", exchange -> respond(exchange,
+                () -> queryEvents(babyEvents.get(), queryParameters(exchange))));
+        server.createContext("/api/events/mama", exchange -> respond(exchange,
+                () -> queryEvents(mamaEvents.get(), queryParameters(exchange))));
+        server.createContext("/api/events", exchange -> respond(exchange, () -> {
+            JsonWriter json = new JsonWriter().beginObject();
+            writeStoreJson(json.name("baby"), babyEvents.get());
+            writeStoreJson(json.name("mama"), mamaEvents.get());
+            return json.endObject();
+        }));
+        Map<Path, GroupCommitLog> writers = new HashMap<>();
+        server.createContext("/api/ingest/baby", exchange -> respond(exchange, "POST",
+                () -> ingest(exchange, findLog(dir, BABY_LOGS), EventLayout::baby, writers)));
+        server.createContext("/api/ingest/mama", exchange -> respond(exchange, "POST",
+                () -> ingest(exchange, findLog(dir, MAMA_LOGS), EventLayout::mama, writers)));
+        server.createContext("/api/ingest", exchange -> respond(exchange, () -> {
+            JsonWriter json = new JsonWriter().beginObject();
+            synchronized (writers) {
+                for (GroupCommitLog writer : writers.values()) {
+                    json.name(writer.path.getFileName().toString()).beginObject()
+                            .name("batches").value(writer.batches.sum())
+                            .name("events").value(writer.events.sum())
+                            .name("commits").value(writer.commits.sum())
+                            .endObject();
+                }
+            }
+            return json.endObject();
+        }));
+        // Ingest requests wait for their group commit, so there have to be enough threads
+        // for many of them to be waiting (and share one fsync) at once
+        server.setExecutor(Executors.newFixedThreadPool(SERVER_THREADS));
+        server.start();
+        System.out.println("🌐 Serving " + dir.toAbsolutePath() + " on http://"
+                + (address.isLoopbackAddress() ? "localhost" : address.getHostAddress()) + ":"
+                + server.getAddress().getPort() + "/api/stats");
+    }
+
+    interface JsonSource {
+        JsonWriter get() throws IOException;
+    }
+
+    private static EventStore loadEventStore(Path log) throws IOException {
+        long start = System.nanoTime();
+        EventStore store = EventStore.load(log, System.out);
+        System.out.printf("📦 %s: %,d rows in memory, %.1f MB (%.1f MB per million rows) in %d ms%n", log,
+                store.rows(), store.bytes() / 1e6, store.bytesPerMillionRows() / 1e6,
+                (System.nanoTime() - start) / 1_000_000);
+        return store;
+    }
+
+    // A century covers any log; larger days= values only echo back dates like -271764-02-06
+    private static final int MAX_QUERY_DAYS = 36_500;
+
+    // ?activity=temperature&days=7 for the last 7 days up to today, or from= and to= dates;
+    // with neither days nor from, every row up to today. Without activity, rows of any
+    // activity. At most limit (default 1000) of the matching rows are listed, as CSV lines.
+    private static JsonWriter queryEvents(EventStore store, Map<String, String> parameters) {
+        String activity = parameters.get("activity");
+        long toDay = parameters.containsKey("to") ? dayParameter(parameters, "to") : LocalDate.now().toEpochDay();
+        long fromDay = parameters.containsKey("from") ? dayParameter(parameters, "from")
+                : parameters.containsKey("days") ? toDay - intParameter(parameters, "days", 0, MAX_QUERY_DAYS) + 1
+                : Long.MIN_VALUE;
+        int limit = intParameter(parameters, "limit", 1000, Integer.MAX_VALUE);
+
+        JsonWriter json = new JsonWriter().beginObject();
+        json.name("activity").value(activity);
+        json.name("from").value(fromDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(fromDay).toString());
+        json.name("to").value(LocalDate.ofEpochDay(toDay).toString());
+        json.name("count").value(store == null ? 0 : store.count(activity, fromDay, toDay));
+        List<String> rows = new ArrayList<>();
+        if (store != null) {
+            for (int id : store.rows(activity, fromDay, toDay, limit)) rows.add(store.row(id).text());
+            json.name("header").value(store.header().text());
+        }
+        json.name("rows").strings(rows);
+        return json.endObject();
+    }
+
+    private static void writeStoreJson(JsonWriter json, EventStore store) {
+        json.beginObject();
+        json.name("rows").value(store == null ? 0 : store.rows());
+        if (store != null) {
+            json.name("activities").value(store.activities());
+            json.name("bytes").value(store.bytes());
+            json.name("bytesPerMillionRows").value(store.bytesPerMillionRows());
+        }
+        json.endObject();
+    }
+
+    // name=value pairs of the request's query string, decoded
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return parameters;
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            parameters.put(URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8),
+                    eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    // A calendar date: isDate only checks the shape, so 2026-02-30 is caught by the parse
+    private static long dayParameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (CsvRow.isDate(value)) {
+            try {
+                return LocalDate.parse(value.trim()).toEpochDay();
+            } catch (DateTimeParseException e) {
+                // not a day of the calendar
+            }
+        }
+        throw new IllegalArgumentException(name + " must be a date as yyyy-MM-dd");
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name, int fallback, int max) {
+        String value = parameters.get(name);
+        if (value == null) return fallback;
+        if (!CsvRow.isInt(value) || Integer.parseInt(value) <= 0) {
+            throw new IllegalArgumentException(name + " must be a positive number");
+        }
+        if (Integer.parseInt(value) > max) throw new IllegalArgumentException(name + " must be at most " + max);
+        return Integer.parseInt(value);
+    }
+
+    private static void respond(HttpExchange exchange, JsonSource source) throws IOException {
+        respond(exchange, "GET", source);
+    }
+
+    // Runs source for requests with the given method. IllegalArgumentException from source is
+    // the client's fault (400), anything else the server's (500).
+    private static void respond(HttpExchange exchange, String method, JsonSource source) throws IOException {
+        try (exchange) {
+            // index.html is opened from disk, so its requests come from the "null" origin and
+            // need CORS to poll (and post to) the API. Requests from any other page are refused,
+            // so a site open in the same browser can't read the logs or append to them.
+            String origin = exchange.getRequestHeaders().getFirst("Origin");
+            boolean foreign = origin != null && !origin.equals("null");
+            if (origin != null && !foreign) exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "null");
+            if (exchange.getRequestMethod().equals("OPTIONS") && !foreign) {
+                exchange.getResponseHeaders().set("Access-Control-Allow-Methods", method);
+                exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type");
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            int status = 200;
+            byte[] body;
+            if (foreign) {
+                status = 403;
+                body = new JsonWriter().beginObject().name("error").value("requests from " + origin + " are not allowed")
+                        .endObject().bytes();
+            } else if (!exchange.getRequestMethod().equals(method)) {
+                status = 405;
+                body = new JsonWriter().beginObject().name("error").value(method + " only").endObject().bytes();
+            } else {
+                try {
+                    body = source.get().bytes();
+                } catch (IOException | RuntimeException e) {
+                    status = e instanceof IllegalArgumentException ? 400 : 500;
+                    body = new JsonWriter().beginObject().name("error").value(String.valueOf(e.getMessage()))
+                            .endObject().bytes();
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    // Appends the events posted to /api/ingest/<log> to that log. The log must already exist
+    // with its header, which decides where each field goes.
+    private static JsonWriter ingest(HttpExchange exchange, Path log, Function<CsvRow, EventLayout> layoutFor,
+                                     Map<Path, GroupCommitLog> writers) throws IOException {
+        if (log == null) throw new IllegalArgumentException("no log to append to");
+        GroupCommitLog writer;
+        synchronized (writers) {
+            writer = writers.get(log);
+            if (writer == null) {
+                try (CsvReader reader = new CsvReader(Files.newInputStream(log))) {
+                    if (!reader.next()) throw new IllegalArgumentException(log + " has no header");
+                    writer = new GroupCommitLog(log, layoutFor.apply(reader.row()), GROUP_COMMIT_WINDOW);
+                }
+                writers.put(log, writer);
+            }
+        }
+
+        List<Map<String, String>> events;
+        try (InputStream body = exchange.getRequestBody()) {
+            events = JsonEvents.parse(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        // Every event is checked before any is written, so a bad batch leaves the log untouched
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < events.size(); i++) {
+            try {
+                writer.layout.appendLine(events.get(i), lines);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("event " + i + ": " + e.getMessage());
+            }
+        }
+        writer.append(lines.toString().getBytes(StandardCharsets.UTF_8), events.size());
+        return new JsonWriter().beginObject().name("accepted").value(events.size()).endObject();
+    }
+
+    private static final int SERVER_THREADS = 64;
+    private static final Duration GROUP_COMMIT_WINDOW = Duration.ofMillis(2);
+
+    // Appends to a log from many threads with group commit: one writer thread takes whatever
+    // batches are waiting, gives later ones window to join, writes them all at once and
+    // fsyncs once. append() returns when its batch is on disk.
+    static class GroupCommitLog {
+        final Path path;
+        final EventLayout layout;
+        private final long windowNanos;
+        private final FileChannel channel;
+        private final List<PendingBatch> pending = new ArrayList<>();
+        final LongAdder batches = new LongAdder(), events = new LongAdder(), commits = new LongAdder();
+
+        private static class PendingBatch {
+            final ByteBuffer lines;
+            final CompletableFuture<Void> written = new CompletableFuture<>();
+
+            PendingBatch(byte[] lines) {
+                this.lines = ByteBuffer.wrap(lines);
+            }
+        }
+
+        GroupCommitLog(Path path, EventLayout layout, Duration window) throws IOException {
+            this.path = path;
+            this.layout = layout;
+            this.windowNanos = window.toNanos();
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Rows start on a fresh line even if the log's last line has no newline
+            long size = channel.size();
+            if (size > 0 && lastLineEnd(channel, size - 1, size) != size) {
+                channel.write(ByteBuffer.wrap(new byte[] {'\n'}), size);
+            }
+            Thread committer = new Thread(this::commitLoop, "group-commit " + path.getFileName());
+            committer.setDaemon(true);
+            committer.start();
+        }
+
+        void append(byte[] lines, int eventCount) throws IOException {
+            if (lines.length == 0) return;
+            PendingBatch batch = new PendingBatch(lines);
+            synchronized (pending) {
+                pending.add(batch);
+                pending.notifyAll();
+            }
+            try {
+                batch.written.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted waiting for " + path, e);
+            } catch (ExecutionException e) {
+                throw new IOException("appending to " + path + " failed", e.getCause());
+            }
+            batches.increment();
+            events.add(eventCount);
+        }
+
+        private void commitLoop() {
+            List<PendingBatch> group = new ArrayList<>();
+            while (true) {
+                try {
+                    synchronized (pending) {
+                        while (pending.isEmpty()) pending.wait();
+                    }
+                    // Let batches arriving right behind the first one share its fsync
+                    if (windowNanos > 0) TimeUnit.NANOSECONDS.sleep(windowNanos);
+                    synchronized (pending) {
+                        group.addAll(pending);
+                        pending.clear();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    ByteBuffer[] buffers = new ByteBuffer[group.size()];
+                    for (int i = 0; i < buffers.length; i++) buffers[i] = group.get(i).lines;
+                    long remaining = 0;
+                    for (ByteBuffer buffer : buffers) remaining += buffer.remaining();
+                    channel.position(channel.size());
+                    while (remaining > 0) remaining -= channel.write(buffers);
+                    channel.force(false);
+                    commits.increment();
+                    for (PendingBatch batch : group) batch.written.complete(null);
+                } catch (IOException | RuntimeException e) {
+                    for (PendingBatch batch : group) batch.written.completeExceptionally(e);
+                }
+                group.clear();
+            }
+        }
+    }
+
+    // Where each field of a posted event goes in a log. Fields are looked up as
+    // "<activity>.<field>" first, then "<field>": the analyzer's own columns, then the web
+    // app's names for them, then any header column by name. Numeric columns are looked up
+    // the same way in numbers, by "<activity>.<type>.<column>", "<activity>.<column>" and
+    // "<column>", so a value is checked the way the analyzer for that row will read it.
+    static class EventLayout {
+        // Measurement columns by their header names' unit, like weight_kg or bottle_ml
+        private static final String[] NUMERIC_SUFFIXES = {
+                "_kg", "_cm", "_ml", "_min", "_minutes", "_sec", "_liters", "_gr", "_count"};
+
+        private final int columns, date, time, activity;
+        private final Map<String, Integer> byName = new HashMap<>();
+        private final Map<String, Double> factors = new HashMap<>();
+        private final Map<String, NumberRule> numbers = new HashMap<>();
+
+        // Whole numbers only, or any number once unit (if any) is removed
+        private static class NumberRule {
+            final boolean whole;
+            final String unit;
+
+            NumberRule(boolean whole, String unit) {
+                this.whole = whole;
+                this.unit = unit;
+            }
+
+            boolean accepts(String value) {
+                if (unit != null) value = value.replace(unit, "");
+                return whole ? CsvRow.isInt(value.trim()) : CsvRow.isDouble(value);
+            }
+        }
+
+        EventLayout(CsvRow header, int date, int time, int activity) {
+            this.columns = header.size();
+            this.date = date;
+            this.time = time;
+            this.activity = activity;
+            for (int i = 0; i < columns; i++) {
+                byName.putIfAbsent(header.get(i), i);
+                for (String suffix : NUMERIC_SUFFIXES) {
+                    if (header.get(i).endsWith(suffix)) number("", i, false, null);
+                }
+            }
+            alias("date", date);
+            alias("time", time);
+            alias("activity", activity);
+        }
+
+        static EventLayout baby(CsvRow header) {
+            BabyColumns schema = new BabyColumns(header);
+            EventLayout layout = new EventLayout(header, schema.date, schema.time, schema.activity);
+            layout.alias("type", schema.type);
+            layout.alias("subtype", schema.subtype);
+            layout.alias("value", schema.value);
+            layout.alias("amount", schema.value);
+            layout.alias("duration", schema.value);
+            layout.alias("quality", schema.sleepQuality);
+            layout.alias("method", schema.subtype);
+            layout.alias("milestone", schema.milestone);
+            layout.alias("memory", schema.memory);
+            layout.number("", schema.value, false, null);
+            layout.number("", header.indexOf("duration", -1), false, null);
+            layout.number("sleep.", schema.value, true, null);
+            layout.number("pumping.", schema.value, false, "ml");
+            layout.number("growth.weight.", schema.value, false, "kg");
+            layout.number("growth.height.", schema.value, false, "cm");
+            layout.number("growth.head.", schema.value, false, "cm");
+            return layout;
+        }
+
+        static EventLayout mama(CsvRow header) {
+            MamaColumns schema = new MamaColumns(header);
+            EventLayout layout = new EventLayout(header, schema.date, header.indexOf("time", 1), schema.activity);
+            layout.alias("mood.scale", schema.moodScale);
+            layout.alias("mood.emotion", schema.dominantEmotion);
+            layout.alias("mood.notes", header.indexOf("mood_notes", -1));
+            layout.alias("mama_sleep.minutes", schema.totalSleepMinutes);
+            layout.alias("mama_sleep.hours", schema.totalSleepMinutes, 60);
+            layout.alias("mama_sleep.quality", header.indexOf("sleep_rating", -1));
+            layout.alias("breastfeeding.side", header.indexOf("breast_side", -1));
+            layout.alias("breastfeeding.duration", header.indexOf("breastfeeding_duration_minutes", -1));
+            layout.alias("pumping.amount", schema.pumpingAmount);
+            layout.alias("exercise.type", schema.exerciseType);
+            layout.alias("exercise.duration", schema.exerciseMinutes);
+            layout.alias("symptom.type", schema.symptomType);
+            layout.alias("weight.weight", schema.weight);
+            layout.alias("weight.gain", schema.weightGain);
+            layout.number("", schema.weight, false, null);
+            layout.number("", schema.weightGain, false, null);
+            layout.number("", schema.moodScale, false, null);
+            layout.number("", schema.totalSleepMinutes, true, null);
+            layout.number("", schema.pumpingAmount, false, "ml");
+            layout.number("", schema.exerciseMinutes, true, null);
+            return layout;
+        }
+
+        private void alias(String field, int column) {
+            if (column >= 0 && column < columns) byName.put(field, column);
+        }
+
+        // scope is "", "<activity>." or "<activity>.<type>."
+        private void number(String scope, int column, boolean whole, String unit) {
+            if (column >= 0 && column < columns) numbers.put(scope + column, new NumberRule(whole, unit));
+        }
+
+        private NumberRule numberRule(String activityName, String type, int column) {
+            NumberRule rule = type == null ? null : numbers.get(activityName + "." + type + "." + column);
+            if (rule == null) rule = numbers.get(activityName + "." + column);
+            return rule != null ? rule : numbers.get(Integer.toString(column));
+        }
+
+        // A numeric field stored in the column's unit, e.g. hours into a minutes column
+        private void alias(String field, int column, double factor) {
+            alias(field, column);
+            factors.put(field, factor);
+        }
+
+        // Appends the event as one CSV line in this layout. Throws IllegalArgumentException
+        // if the analyzer couldn't use it.
+        void appendLine(Map<String, String> event, StringBuilder out) {
+            String activityName = event.get("activity");
+            if (activityName == null || activityName.isBlank()) throw new IllegalArgumentException("no activity");
+            String dateValue = event.get("date");
+            if (dateValue == null || !CsvRow.isDate(dateValue)) {
+                throw new IllegalArgumentException("date must be yyyy-MM-dd");
+            }
+            String timeValue = event.get("time");
+            if (timeValue != null && !timeValue.isEmpty() && !CsvRow.isTime(timeValue)) {
+                throw new IllegalArgumentException("time must be HH:mm");
+            }
+
+            String type = event.get("type");
+            String[] row = new String[columns];
+            for (Map.Entry<String, String> field : event.entrySet()) {
+                String name = activityName + "." + field.getKey();
+                Integer column = byName.get(name);
+                if (column == null) column = byName.get(name = field.getKey());
+                if (column == null) {
+                    throw new IllegalArgumentException("unknown field \"" + field.getKey() + "\" for " + activityName);
+                }
+                String value = field.getValue();
+                Double factor = factors.get(name);
+                if (factor != null && !value.isEmpty()) {
+                    if (!CsvRow.isDouble(value)) {
+                        throw new IllegalArgumentException(field.getKey() + " must be a number");
+                    }
+                    value = Snapshot.formatNumber(Math.round(Double.parseDouble(value.trim()) * factor));
+                }
+                NumberRule number = numberRule(activityName, type, column);
+                if (number != null && !value.isBlank() && !number.accepts(value)) {
+                    throw new IllegalArgumentException(field.getKey() + " must be a "
+                            + (number.whole ? "whole number" : "number")
+                            + (number.unit != null ? " (optionally in " + number.unit + ")" : ""));
+                }
+                row[column] = value;
+            }
+
+            for (int i = 0; i < columns; i++) {
+                if (i > 0) out.append(',');
+                if (row[i] != null) appendCsvValue(row[i], out);
+            }
+            out.append('\n');
+        }
+
+        // Quotes values with commas or quotes; line breaks become spaces so a row stays one line
+        static void appendCsvValue(String value, StringBuilder out) {
+            value = value.replace('\r', ' ').replace('\n', ' ');
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+                out.append(value);
+                return;
+            }
+            out.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    // Reads a posted batch: a JSON array of flat objects (or {"events": [...]}). Numbers and
+    // booleans are kept as written; null fields are left out.
+    static class JsonEvents {
+        private final String json;
+        private int pos;
+
+        private JsonEvents(String json) {
+            this.json = json;
+        }
+
+        static List<Map<String, String>> parse(String json) {
+            JsonEvents reader = new JsonEvents(json);
+            List<Map<String, String>> events = new ArrayList<>();
+            reader.skipSpace();
+            boolean wrapped = reader.peek() == '{';
+            if (wrapped) {
+                reader.expect('{');
+                if (!reader.string().equals("events")) throw reader.error("expected \"events\"");
+                reader.expect(':');
+            }
+            reader.expect('[');
+            if (!reader.consume(']')) {
+                do {
+                    events.add(reader.object());
+                } while (reader.consume(','));
+                reader.expect(']');
+            }
+            if (wrapped) reader.expect('}');
+            reader.skipSpace();
+            if (reader.pos != json.length()) throw reader.error("trailing characters");
+            return events;
+        }
+
+        // A flat object as "name value, name value" for the text report; anything else as it is
+        static String plainText(String json) {
+            if (!json.startsWith("{")) return json;
+            try {
+                JsonEvents reader = new JsonEvents(json);
+                Map<String, String> fields = reader.object();
+                if (reader.pos != json.length()) return json;
+                StringBuilder text = new StringBuilder();
+                fields.forEach((name, value) -> text.append(text.length() > 0 ? ", " : "").append(name)
+                        .append(' ').append(value));
+                return text.toString();
+            } catch (IllegalArgumentException e) {
+                return json;
+            }
+        }
+
+        private Map<String, String> object() {
+            Map<String, String> fields = new LinkedHashMap<>();
+            expect('{');
+            if (consume('}')) return fields;
+            do {
+                String name = string();
+                expect(':');
+                String value = scalar();
+                if (value != null) fields.put(name, value);
+            } while (consume(','));
+            expect('}');
+            return fields;
+        }
+
+        private String scalar() {
+            skipSpace();
+            char c = peek();
+            if (c == '"') return string();
+            int start = pos;
+            while (pos < json.length() && "+-.eE0123456789truefalsn".indexOf(json.charAt(pos)) >= 0) pos++;
+            String literal = json.substring(start, pos);
+            if (literal.equals("null")) return null;
+            if (literal.equals("true") || literal.equals("false") || CsvRow.isDouble(literal)) return literal;
+            throw error("expected a string, number, boolean or null");
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (pos >= json.length()) throw error("unterminated string");
+                char c = json.charAt(pos++);
+                if (c == '"') return value.toString();
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= json.length()) throw error("unterminated string");
+                char escaped = json.charAt(pos++);
+                switch (escaped) {
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > json.length()) throw error("bad \\u escape");
+                        try {
+                            value.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("bad \\u escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            }
+        }
+
+        private boolean consume(char c) {
+            skipSpace();
+            if (pos < json.length() && json.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) throw error("expected '" + c + "'");
+        }
+
+        private char peek() {
+            return pos < json.length() ? json.charAt(pos) : 0;
+        }
+
+        private void skipSpace() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at character " + pos);
+        }
+    }
+
+    // The stats for one log, parsed again only when the file (or, since the stats count from
+    // today, the date) changes. Readers share one immutable entry, so a hit takes no lock;
+    // a miss parses under the lock so concurrent requests don't parse the same file twice.
+    static class CachedLog<S> {
+        private final Supplier<Path> locate;
+        private final Function<Path, S> parse;
+        private volatile Entry<S> entry;
+        final LongAdder hits = new LongAdder(), misses = new LongAdder();
+
+        private static class Entry<S> {
+            final Path path;
+            final long size, mtime;
+            final LocalDate day;
+            final S stats;
+
+            Entry(Path path, long size, long mtime, LocalDate day, S stats) {
+                this.path = path;
+                this.size = size;
+                this.mtime = mtime;
+                this.day = day;
+                this.stats = stats;
+            }
+
+            boolean matches(Path path, BasicFileAttributes attributes, LocalDate day) {
+                return path.equals(this.path) && attributes.size() == size
+                        && attributes.lastModifiedTime().toMillis() == mtime && day.equals(this.day);
+            }
+        }
+
+        // parse may throw UncheckedIOException, which get() rethrows as the IOException
+        CachedLog(Supplier<Path> locate, IOFunction<Path, S> parse) {
+            this.locate = locate;
+            this.parse = path -> {
+                try {
+                    return parse.apply(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+        }
+
+        // Null if the log doesn't exist or has no rows
+        S get() throws IOException {
+            Path path = locate.get();
+            if (path == null) return null;
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            LocalDate today = LocalDate.now();
+            Entry<S> current = entry;
+            if (current != null && current.matches(path, attributes, today)) {
+                hits.increment();
+                return current.stats;
+            }
+            synchronized (this) {
+                current = entry;
+                if (current != null && current.matches(path, attributes, today)) {
+                    hits.increment();
+                    return current.stats;
+                }
+                misses.increment();
+                try {
+                    // Stat before parsing: a write during the parse then misses next time
+                    S stats = parse.apply(path);
+                    entry = new Entry<>(path, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                            today, stats);
+                    return stats;
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+    }
+
+    interface IOFunction<T, R> {
+        R apply(T value) throws IOException;
+    }
+
+    private static void writeBabyJson(JsonWriter json, BabyProfile profile, BabyStats stats) {
+        json.beginObject();
+        json.name("name").value(profile.name);
+        json.name("birthDate").value(profile.birthDate == null ? null : profile.birthDate.toString());
+        if (stats == null) {
+            json.name("rows").value(0);
+            json.endObject();
+            return;
+        }
+        DailyRollup days = stats.days;
+        long ageDays = profile.birthDate == null ? 0 : ChronoUnit.DAYS.between(profile.birthDate, stats.today);
+        json.name("today").value(stats.today.toString());
+        json.name("ageDays").value(ageDays);
+        json.name("rows").value(stats.rejections.lines());
+        json.name("rejectedRows").value(stats.rejections.total());
+
+        json.name("feedings").beginObject();
+        json.name("today").value(days.sum(DailyRollup.FEEDINGS, stats.todayDay, stats.todayDay));
+        json.name("yesterday").value(days.sum(DailyRollup.FEEDINGS, stats.todayDay - 1, stats.todayDay - 1));
+        json.name("week").value(days.sum(DailyRollup.FEEDINGS, stats.todayDay - 7, DailyRollup.LATEST));
+        json.name("total").value(days.total(DailyRollup.FEEDINGS));
+        json.name("perDay").value(days.total(DailyRollup.FEEDINGS) / (double) Math.max(1, ageDays));
+        boolean timed = stats.lastFeedingDay != NO_DAY && stats.lastFeedingMinute != NO_MINUTE;
+        json.name("last").value(timed ? LocalDate.ofEpochDay(stats.lastFeedingDay)
+                .atTime(LocalTime.ofSecondOfDay(stats.lastFeedingMinute * 60L)).toString() : null);
+        json.name("hoursSinceLast").value(timed ? stats.hoursSinceLastFeeding() : null);
+        json.name("types").counts(stats.feedingTypes);
+        json.endObject();
+
+        json.name("sleep").beginObject();
+        long sleepMinutes = stats.sleepMinutes(DailyRollup.EARLIEST, DailyRollup.LATEST);
+        int weekAgo = stats.todayDay - 6;
+        json.name("todayHours").value(stats.sleepMinutes(stats.todayDay, stats.todayDay) / 60.0);
+        json.name("totalHours").value(sleepMinutes / 60.0);
+        json.name("hoursPerDay").value(sleepMinutes / 60.0 / Math.max(1, ageDays));
+        json.name("sessions").value(stats.sleep.size());
+        json.name("nightHoursPerNight7d").value(
+                stats.sleep.minutesDaily(weekAgo - 1, stats.todayDay - 1, NIGHT_START, NIGHT_END) / 60.0 / 7);
+        json.name("dayHoursPerDay7d").value(
+                stats.sleep.minutesDaily(weekAgo, stats.todayDay, NIGHT_END, NIGHT_START) / 60.0 / 7);
+        json.name("longestHours7d").value(
+                stats.sleep.longestBetween(weekAgo * 1440L, (stats.todayDay + 1) * 1440L) / 60.0);
+        json.name("quality").counts(stats.sleepQuality);
+        json.endObject();
+
+        json.name("diapers").beginObject();
+        json.name("today").value(days.sum(DailyRollup.DIAPERS, stats.todayDay, stats.todayDay));
+        json.name("total").value(days.total(DailyRollup.DIAPERS));
+        json.name("perDay").value(days.total(DailyRollup.DIAPERS) / (double) Math.max(1, ageDays));
+        json.name("types").counts(stats.diaperTypes);
+        json.endObject();
+
+        json.name("temperature").beginObject();
+        json.name("readings").value(stats.temperatureCount);
+        json.name("average").value(stats.totalTemperature.value() / stats.temperatureCount);
+        json.name("min").value(days.minTemperature(DailyRollup.EARLIEST, DailyRollup.LATEST));
+        json.name("max").value(days.maxTemperature(DailyRollup.EARLIEST, DailyRollup.LATEST));
+        json.name("fever").value(stats.alertRules.holds("fever", stats, AlertLog.minuteOf(LocalDateTime.now())));
+        json.endObject();
+
+        json.name("pumping").beginObject();
+        json.name("sessions").value(days.total(DailyRollup.PUMPING_SESSIONS));
+        json.name("totalMl").value(days.pumpingMl(DailyRollup.EARLIEST, DailyRollup.LATEST));
+        json.endObject();
+
+        json.name("growth").beginObject();
+        writeGrowthJson(json.name("weight"), stats.growthWeights, stats.growthScores(WhoGrowth.WEIGHT));
+        writeGrowthJson(json.name("length"), stats.growthHeights, stats.growthScores(WhoGrowth.LENGTH));
+        writeGrowthJson(json.name("head"), stats.growthHeads, stats.growthScores(WhoGrowth.HEAD));
+        json.endObject();
+
+        json.name("moods").counts(stats.moodCounts);
+        json.name("milestones").value(stats.milestoneCount);
+        json.name("memories").value(stats.memoryCount);
+        json.name("vaccines").value(stats.vaccineCount);
+        json.name("doctorVisits").value(stats.doctorVisitCount);
+        stats.handlers.write(stats.metrics, json.name("metrics"));
+        json.name("alerts").strings(babyAlerts(stats));
+        writeAlertLog(json.name("alertLog"), stats.alerts);
+        json.endObject();
+    }
+
+    // {"fired": n, "suppressed": n, "recent": ["<log time> <rule>: <message>", ...]}
+    private static void writeAlertLog(JsonWriter json, AlertLog alerts) {
+        List<String> recent = new ArrayList<>();
+        for (AlertLog.Fired alert : alerts.recent) {
+            recent.add(AlertLog.format(alert.minute) + " " + alert.rule + ": " + alert.message);
+        }
+        json.beginObject();
+        json.name("fired").value(alerts.total);
+        json.name("suppressed").value(alerts.suppressedTotal());
+        json.name("recent").strings(recent);
+        json.endObject();
+    }
+
+    // Latest measurement with its WHO z-score and percentile (null when not scored)
+    private static void writeGrowthJson(JsonWriter json, GrowthSeries series, GrowthScores scores) {
+        json.beginObject();
+        json.name("measurements").value(series.size());
+        json.name("latest").value(series.isEmpty() ? Double.NaN : series.last());
+        json.name("z").value(scores.latestZ);
+        json.name("percentile").value(WhoGrowth.percentile(scores.latestZ));
+        json.name("lowestZ").value(scores.lowestZ);
+        json.name("highestZ").value(scores.highestZ);
+        json.endObject();
+    }
+
+    private static void writeMamaJson(JsonWriter json, MamaProfile profile, MamaStats stats) {
+        json.beginObject();
+        json.name("name").value(profile.name);
+        if (stats == null) {
+            json.name("rows").value(0);
+            json.endObject();
+            return;
+        }
+        json.name("rows").value(stats.rejections.lines());
+        json.name("rejectedRows").value(stats.rejections.total());
+
+        json.name("weight").beginObject();
+        json.name("entries").value(stats.weightCount);
+        json.name("averageGainKg").value(stats.totalWeightGain.value() / stats.weightCount);
+        json.name("minKg").value(stats.weightCount > 0 ? stats.minWeight : Double.NaN);
+        json.name("maxKg").value(stats.weightCount > 0 ? stats.maxWeight : Double.NaN);
+        json.endObject();
+
+        json.name("mood").beginObject();
+        json.name("entries").value(stats.moodCount);
+        json.name("average").value(stats.totalMoodScore.value() / stats.moodCount);
+        json.name("types").counts(stats.moodTypes);
+        json.endObject();
+
+        json.name("sleep").beginObject();
+        json.name("nights").value(stats.sleepDays);
+        json.name("hoursPerNight").value(stats.totalSleepMinutes / 60.0 / stats.sleepDays);
+        json.endObject();
+
+        json.name("breastfeeding").value(stats.breastfeedingCount);
+        json.name("pumping").beginObject();
+        json.name("sessions").value(stats.pumpingCount);
+        json.name("totalMl").value(stats.totalPumpingAmount.value());
+        json.endObject();
+
+        json.name("exercise").beginObject();
+        json.name("sessions").value(stats.exerciseCount);
+        json.name("minutes").value(stats.totalExerciseMinutes);
+        json.name("types").counts(stats.exerciseTypes);
+        json.endObject();
+
+        json.name("water").beginObject();
+        json.name("days").value(stats.waterDays);
+        json.name("litersPerDay").value(stats.totalWaterLiters.value() / stats.waterDays);
+        json.endObject();
+
+        json.name("symptoms").counts(stats.symptomCounts);
+        json.name("doctorVisits").value(stats.doctorVisits);
+        json.name("tests").value(stats.testCount);
+        json.name("postpartumCheckups").value(stats.postpartumCheckups);
+        json.name("kegelSessions").value(stats.kegelSessions);
+        json.name("contractions").value(stats.contractionCount);
+        json.name("fetalMovements").value(stats.fetalMovementsCount);
+        json.name("milestones").value(stats.mamaMilestones);
+        stats.handlers.write(stats.metrics, json.name("metrics"));
+        json.name("alerts").strings(mamaAlerts(stats));
+        writeAlertLog(json.name("alertLog"), stats.alerts);
+        json.endObject();
+    }
+
+    private static void writeCorrelationJson(JsonWriter json, CrossStats stats) {
+        json.beginObject();
+        json.name("nights").value(stats.wakeUpsVsSleep.n);
+        json.name("mamaSleepHoursByWakeUps").beginObject();
+        for (int i = 0; i < CrossStats.WAKE_UP_BUCKETS.length; i++) {
+            json.name(CrossStats.WAKE_UP_BUCKETS[i]).value(stats.averageSleepHours(i));
+        }
+        json.endObject();
+        json.name("wakeUpsVsMamaSleep").value(stats.wakeUpsVsSleep.r());
+        json.name("nightFeedingsVsMamaSleep").value(stats.feedingsVsSleep.r());
+        json.name("sleepDebtHoursByWakeUps").beginObject();
+        json.name("under" + CrossStats.BROKEN_NIGHT).value(stats.averageDebtHours(false));
+        json.name(CrossStats.BROKEN_NIGHT + "OrMore").value(stats.averageDebtHours(true));
+        json.endObject();
+        json.name("pumpingDays").value(stats.breastVsPumping.n);
+        json.name("breastFeedingsVsPumpingMl").value(stats.breastVsPumping.r());
+        json.name("lateRows").value(stats.lateRows);
+        json.endObject();
+    }
+
+    // Just enough JSON for the API. Commas are added as values are written; numbers that
+    // aren't finite (an average of nothing) are written as null.
+    static class JsonWriter {
+        private static final int SPILL_CHARS = 1 << 13;
+
+        final StringBuilder buffer = new StringBuilder();
+        private final Writer target;
+        private boolean needsComma;
+
+        JsonWriter() {
+            this(null);
+        }
+
+        // Writes through to target every few KB instead of keeping the whole document
+        JsonWriter(Writer target) {
+            this.target = target;
+        }
+
+        JsonWriter beginObject() {
+            separate();
+            buffer.append('{');
+            needsComma = false;
+            return this;
+        }
+
+        JsonWriter endObject() {
+            buffer.append('}');
+            needsComma = true;
+            return this;
+        }
+
+        JsonWriter name(String name) {
+            separate();
+            string(name);
+            buffer.append(':');
+            needsComma = false;
+            return this;
+        }
+
+        JsonWriter value(String value) {
+            separate();
+            if (value == null) buffer.append("null");
+            else string(value);
+            needsComma = true;
+            return this;
+        }
+
+        JsonWriter value(long value) {
+            separate();
+            buffer.append(value);
+            needsComma = true;
+            return this;
+        }
+
+        JsonWriter value(Long value) {
+            return value == null ? value((String) null) : value(value.longValue());
+        }
+
+        JsonWriter value(double value) {
+            separate();
+            buffer.append(Double.isFinite(value) ? Double.toString(value) : "null");
+            needsComma = true;
+            return this;
+        }
+
+        JsonWriter value(boolean value) {
+            separate();
+            buffer.append(value);
+            needsComma = true;
+            return this;
+        }
+
+        JsonWriter counts(CategoryCounts counts) {
+            beginObject();
+            counts.forEach((category, count) -> name(category).value(count));
+            return endObject();
+        }
+
+        JsonWriter strings(List<String> values) {
+            separate();
+            buffer.append('[');
+            needsComma = false;
+            for (String value : values) value(value);
+            buffer.append(']');
+            needsComma = true;
+            return this;
+        }
+
+        byte[] bytes() {
+            return buffer.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+
+        // Hands what has been written so far to the target
+        void flush() throws IOException {
+            if (target == null) return;
+            target.append(buffer);
+            buffer.setLength(0);
+            target.flush();
+        }
+
+        void separate() {
+            if (needsComma) buffer.append(',');
+            spill();
+        }
+
+        void spill() {
+            if (target == null || buffer.length() < SPILL_CHARS) return;
+            try {
+                target.append(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.setLength(0);
+        }
+
+        private void string(String value) {
+            buffer.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': buffer.append("\\\""); break;
+                    case '\\': buffer.append("\\\\"); break;
+                    case '\n': buffer.append("\\n"); break;
+                    case '\r': buffer.append("\\r"); break;
+                    case '\t': buffer.append("\\t"); break;
+                    default:
+                        if (c < 0x20) buffer.append(String.format("\\u%04x", (int) c));
+                        else buffer.append(c);
+                }
+            }
+            buffer.append('"');
+        }
+    }
+
+    // A JsonWriter that writes each value as a metric,value CSV line named by its path:
+    // {"feedings":{"today":5}} becomes feedings.today,5. Each element of a list gets its own
+    // line under the list's name.
+    static class FlatCsvWriter extends JsonWriter {
+        private final StringBuilder path = new StringBuilder();
+        private final Deque<Integer> parents = new ArrayDeque<>();
+        private String name;
+
+        FlatCsvWriter(Writer target) {
+            super(target);
+        }
+
+        @Override
+        JsonWriter beginObject() {
+            parents.push(path.length());
+            if (name != null) path.append(name).append('.');
+            name = null;
+            return this;
+        }
+
+        @Override
+        JsonWriter endObject() {
+            if (!parents.isEmpty()) path.setLength(parents.pop());
+            return this;
+        }
+
+        @Override
+        JsonWriter name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        @Override
+        JsonWriter value(String value) {
+            return line(value == null ? "" : value);
+        }
+
+        @Override
+        JsonWriter value(long value) {
+            return line(Long.toString(value));
+        }
+
+        @Override
+        JsonWriter value(double value) {
+            return line(Double.isFinite(value) ? Double.toString(value) : "");
+        }
+
+        @Override
+        JsonWriter value(boolean value) {
+            return line(Boolean.toString(value));
+        }
+
+        @Override
+        JsonWriter strings(List<String> values) {
+            String listName = name;
+            for (String value : values) {
+                name = listName;
+                line(value);
+            }
+            return this;
+        }
+
+        private JsonWriter line(String value) {
+            spill();
+            EventLayout.appendCsvValue(path + (name == null ? "value" : name), buffer);
+            buffer.append(',');
+            EventLayout.appendCsvValue(value, buffer);
+            buffer.append('\n');
+            name = null;
+            return this;
+        }
+    }
+
+    // --load-test <url> [requests] [concurrency] [eventsPerPost]: GETs url from concurrency
+    // threads, or with eventsPerPost POSTs batches of that many events to an ingest url, and
+    // reports throughput and latency percentiles
+    private static void runLoadTest(URI uri, int requests, int concurrency, int eventsPerPost)
+            throws IOException, InterruptedException {
+        ExecutorService clientThreads = Executors.newFixedThreadPool(concurrency);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .executor(clientThreads).build();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(10));
+        HttpRequest request;
+        if (eventsPerPost > 0) {
+            request = builder.header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(loadTestEvents(uri, eventsPerPost))).build();
+        } else {
+            request = builder.GET().build();
+            // Warm up the connections and the server's cache
+            for (int i = 0; i < concurrency; i++) client.send(request, HttpResponse.BodyHandlers.discarding());
+        }
+
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger(), errors = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long started = System.nanoTime();
+        for (int t = 0; t < concurrency; t++) {
+            workers.execute(() -> {
+                for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() != 200) errors.incrementAndGet();
+                        bytes.addAndGet(response.body().length);
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    latencies[i] = System.nanoTime() - start;
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.DAYS);
+        long elapsed = System.nanoTime() - started;
+        clientThreads.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("%d requests to %s from %d threads in %d ms: %.0f req/s, %d errors, %d KB\n",
+                requests, uri, concurrency, elapsed / 1_000_000, requests * 1e9 / elapsed, errors.get(),
+                bytes.get() / 1024);
+        if (eventsPerPost > 0) {
+            System.out.printf("  %.0f events/s\n", (double) requests * eventsPerPost * 1e9 / elapsed);
+        }
+        System.out.printf("  latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms\n",
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.90) / 1e6,
+                percentile(latencies, 0.99) / 1e6, latencies[requests - 1] / 1e6);
+    }
+
+    // A batch as the web app would post it: feedings for the baby log, moods for mama's
+    private static String loadTestEvents(URI uri, int count) {
+        String now = "\"date\":\"" + LocalDate.now() + "\",\"time\":\"" + LocalTime.now().format(TIME_FORMATTER) + "\",";
+        String event = uri.getPath().endsWith("/mama")
+                ? "{" + now + "\"activity\":\"mood\",\"scale\":7,\"emotion\":\"calm\"}"
+                : "{" + now + "\"activity\":\"feeding\",\"type\":\"bottle\",\"amount\":120}";
+        return "[" + String.join(",", Collections.nCopies(count, event)) + "]";
+    }
+
+    // Nearest-rank percentile of sorted values
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    // Column layouts of the logs --generate writes; the baby log leaves columns 6 and 8-18 to
+    // the app, the mama log is the web app's full export
+    static final String BABY_LOG_HEADER = "date,time,activity,type,subtype,value,duration,sleep_quality,"
+            + "location,caregiver,bottle_ml,breast_side,left_minutes,right_minutes,diaper_color,"
+            + "consistency,weight_kg,height_cm,head_cm,milestone,memory,notes";
+    static final String MAMA_LOG_HEADER = "date,time,activity,type,subtype,value,week_of_pregnancy,weight_kg,"
+            + "weight_gain_kg,blood_pressure,fundal_height_cm,fetal_heartbeat,dose,frequency,reminder_time,"
+            + "side_effects,doctor,visit_type,reason,measurements,instructions,next_appointment,test_type,"
+            + "test_results,normal_range,doctor_notes,mood_scale,dominant_emotion,stress_level,sleep_quality,"
+            + "mood_notes,symptom_type,severity,duration_minutes,what_helped,when_to_call_doctor,"
+            + "lochia_intensity,lochia_color,lochia_smell,pain_type,pain_level,treatment,wound_type,"
+            + "days_postpartum,wound_appearance,wound_care,physical_symptom,energy_level,mobility,activities,"
+            + "emotional_state,mood_level,ppd_symptoms,ppd_duration,ppd_severity,support_partner,"
+            + "support_family,need_professional_help,self_care_time,relaxation_activities,social_interaction,"
+            + "breast_side,breastfeeding_duration_minutes,breastfeeding_problems,latch_quality,feeling_after,"
+            + "pumping_amount_ml,pumping_difficulty,milk_production,supplements,production_helpers,bedtime,"
+            + "wake_time,total_sleep_minutes,night_interruptions,interruption_reasons,nap_duration_minutes,"
+            + "sleep_rating,feels_rested,sleep_problems,total_24h_sleep,sleep_debt,fetal_movements_count,"
+            + "fetal_movement_type,contraction_duration_sec,contraction_frequency_min,contraction_intensity,"
+            + "what_stopped_contractions,meal_type,meal_description,protein_gr,carbs_gr,fats_gr,water_liters,"
+            + "cravings,food_aversions,exercise_type,exercise_duration_min,exercise_intensity,how_felt_after,"
+            + "delivery_prep_task,task_status,budget_category,budget_amount,budget_description,"
+            + "budget_vs_actual,period_return_date,period_flow_intensity,period_duration_days,cycle_regular,"
+            + "months_postpartum,first_intimacy_date,weeks_postpartum_intimacy,comfort_level,libido_level,"
+            + "intimacy_concerns,work_return_date,maternity_leave_months,work_schedule,"
+            + "childcare_arrangement,work_feelings,partner_support_level,quality_time_minutes,"
+            + "communication_quality,shared_baby_care_level,partner_notes,checkup_weeks_postpartum,"
+            + "checkup_weight_kg,checkup_blood_pressure,wound_healing_status,uterus_status,"
+            + "contraception_discussion,exercise_clearance,sex_clearance,kegel_sets,pelvic_floor_pt_session,"
+            + "incontinence_level,pf_progress_notes,body_weight_postpartum,body_image_feeling,clothes_fit,"
+            + "weight_goal_kg,weight_loss_method,body_image_notes,family_helper_name,help_type,help_hours,"
+            + "help_satisfaction_level,morning_routine,evening_routine,what_worked_well,what_was_chaotic,"
+            + "tomorrow_try,mama_milestone_type,mama_milestone_description,mama_milestone_feeling,notes";
+
+    // Writes <root>/family-NNNN folders with both profiles and a baby log covering years years
+    // up to lastDay, plus mama's log from the start of the pregnancy. The same seed and lastDay
+    // always give the same files; when lastDay is today its rows stop at the current minute.
+    // malformedPercent of the rows get a bad date, a bad number or are cut short.
+    private static void generateLogs(Path root, int families, int years, long seed, double malformedPercent,
+                                     LocalDate lastDay) throws IOException {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        long rows = 0, bytes = 0;
+        long start = System.nanoTime();
+        LocalTime now = LocalTime.now();
+        int lastMinute = lastDay.equals(LocalDate.now()) ? now.getHour() * 60 + now.getMinute() : 1439;
+        for (int i = 1; i <= families; i++) {
+            Path dir = Files.createDirectories(root.resolve(String.format("family-%04d", i)));
+            LogGenerator generator = new LogGenerator(seeds.split(), malformedPercent, lastDay.minusYears(years),
+                    lastDay, lastMinute);
+            generator.writeProfiles(dir);
+            rows += generator.writeBabyLog(dir.resolve(BABY_LOGS[0]));
+            rows += generator.writeMamaLog(dir.resolve(MAMA_LOGS[0]));
+            bytes += Files.size(dir.resolve(BABY_LOGS[0])) + Files.size(dir.resolve(MAMA_LOGS[0]));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %,d rows (%,d MB) for %d families in %.1f s%n",
+                rows, bytes >> 20, families, seconds);
+    }
+
+    // One family's profiles and logs, drawn from its own random stream. Each day's rows are
+    // written in time order.
+    static class LogGenerator {
+        private static final String[] BABY_NAMES = {"Sofia", "Eleni", "Maria", "Nikos", "Giorgos", "Anna", "Dimitris", "Katerina"};
+        private static final String[] MAMA_NAMES = {"Ioanna", "Christina", "Vasiliki", "Georgia", "Despina", "Athina"};
+        private static final String[] BABY_MOODS = {"happy", "calm", "fussy", "crying", "playful", "sleepy"};
+        private static final String[] EMOTIONS = {"happy", "calm", "tired", "anxious", "overwhelmed", "grateful"};
+        private static final String[] SYMPTOMS = {"nausea", "back_pain", "headache", "heartburn", "swelling", "fatigue"};
+        private static final String[] EXERCISES = {"walking", "prenatal_yoga", "swimming", "stretching", "pilates"};
+        private static final String[] MEALS = {"breakfast", "lunch", "dinner", "snack"};
+        private static final String[] TESTS = {"blood_test", "urine_test", "ultrasound", "glucose_test"};
+        private static final String[] VACCINES = {"Hepatitis B", "DTaP", "Rotavirus", "PCV13", "MMR"};
+        private static final int[] VACCINE_DAYS = {1, 60, 120, 180, 365};
+        private static final String[] MILESTONES = {"first smile", "holds head up", "rolls over",
+                "sits without support", "first word", "crawls", "first steps"};
+        private static final int PREGNANCY_DAYS = 280;
+
+        private static final String[] TIMES = new String[1440];
+        static {
+            for (int i = 0; i < TIMES.length; i++) TIMES[i] = String.format("%02d:%02d", i / 60, i % 60);
+        }
+
+        private final SplittableRandom random;
+        private final double malformedPercent;
+        private final LocalDate birthDate, lastDay;
+        private final int lastMinute;
+        private final String babyName;
+        private final double birthWeight, birthHeight, prePregnancyWeight, birthHead;
+        private final List<GeneratedRow> day = new ArrayList<>();
+        private final StringBuilder line = new StringBuilder(512);
+
+        LogGenerator(SplittableRandom random, double malformedPercent, LocalDate birthDate, LocalDate lastDay,
+                     int lastMinute) {
+            this.random = random;
+            this.malformedPercent = malformedPercent;
+            this.birthDate = birthDate;
+            this.lastDay = lastDay;
+            this.lastMinute = lastMinute;
+            babyName = pick(BABY_NAMES);
+            birthWeight = 2.8 + random.nextDouble() * 1.2;
+            birthHeight = 47 + random.nextDouble() * 6;
+            prePregnancyWeight = 55 + random.nextDouble() * 20;
+            birthHead = 33 + random.nextDouble() * 3;
+        }
+
+        void writeProfiles(Path dir) throws IOException {
+            Files.writeString(dir.resolve(BABY_PROFILES[0]), "field,value\n"
+                    + "baby_name," + babyName + "\n"
+                    + "birth_date," + birthDate + "\n"
+                    + "birth_weight_kg," + round(birthWeight, 10) + "\n"
+                    + "birth_height_cm," + round(birthHeight, 10) + "\n"
+                    + "birth_head_circumference_cm," + round(birthHead, 10) + "\n"
+                    + "blood_type," + pick(new String[]{"A+", "A-", "B+", "O+", "O-", "AB+"}) + "\n"
+                    + "gender," + (random.nextBoolean() ? "female" : "male") + "\n"
+                    + "notes,Generated by --generate\n", StandardCharsets.UTF_8);
+            LocalDate lastPeriod = birthDate.minusDays(PREGNANCY_DAYS);
+            Files.writeString(dir.resolve("MUM_PROFILE.CSV"), "field,value\n"
+                    + "mama_name," + pick(MAMA_NAMES) + "\n"
+                    + "last_menstrual_period," + lastPeriod + "\n"
+                    + "expected_due_date," + birthDate + "\n"
+                    + "pre_pregnancy_weight_kg," + round(prePregnancyWeight, 10) + "\n"
+                    + "blood_type," + pick(new String[]{"A+", "B+", "O+", "AB-"}) + "\n"
+                    + "height_cm," + (155 + random.nextInt(25)) + "\n"
+                    + "doctor_name,Dr. Papadopoulos\n"
+                    + "doctor_phone,210-0000000\n"
+                    + "hospital,General Hospital\n"
+                    + "allergies,None\n"
+                    + "chronic_conditions,None\n"
+                    + "delivery_date," + birthDate + "\n"
+                    + "delivery_type," + (random.nextInt(3) == 0 ? "cesarean" : "natural") + "\n"
+                    + "baby_name," + babyName + "\n", StandardCharsets.UTF_8);
+        }
+
+        long writeBabyLog(Path path) throws IOException {
+            CsvRow header = headerOf(BABY_LOG_HEADER);
+            BabyColumns schema = new BabyColumns(header);
+            int columns = header.size();
+            long rows = 0;
+            GeneratedRow nightEnd = null;
+            try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                out.write(BABY_LOG_HEADER);
+                out.write('\n');
+                for (LocalDate date = birthDate; !date.isAfter(lastDay); date = date.plusDays(1)) {
+                    int age = (int) (date.toEpochDay() - birthDate.toEpochDay());
+                    day.clear();
+                    if (nightEnd != null) day.add(nightEnd);
+
+                    // Newborns feed every 2-3 hours, toddlers a few times a day
+                    int feedings = age < 90 ? 8 + random.nextInt(4) : age < 365 ? 5 + random.nextInt(3) : 3 + random.nextInt(3);
+                    for (int f = 0; f < feedings; f++) {
+                        int minute = f * 1440 / feedings + random.nextInt(1440 / feedings);
+                        String type = age < 180 ? (random.nextInt(3) == 0 ? "bottle" : "breast")
+                                : pick(new String[]{"bottle", "breast", "solid"});
+                        add(minute, "feeding", schema.type, type, schema.value,
+                                type.equals("bottle") ? Integer.toString(60 + random.nextInt(Math.min(200, 60 + age))) : "");
+                    }
+
+                    // Naps as start/end pairs, then a night's sleep that ends tomorrow morning
+                    int naps = age < 180 ? 3 + random.nextInt(2) : age < 540 ? 1 + random.nextInt(2) : random.nextInt(2);
+                    for (int n = 0; n < naps; n++) {
+                        int minute = 8 * 60 + n * 600 / Math.max(naps, 1) + random.nextInt(60);
+                        int length = 30 + random.nextInt(90);
+                        add(minute, "sleep", schema.subtype, "start");
+                        add(minute + length, "sleep", schema.subtype, "end", schema.value, Integer.toString(length),
+                                schema.sleepQuality, pick(new String[]{"good", "good", "fair", "poor"}));
+                    }
+                    int bedtime = 19 * 60 + 30 + random.nextInt(120);
+                    int night = 480 + random.nextInt(240);
+                    add(bedtime, "sleep", schema.subtype, "start");
+                    nightEnd = row((bedtime + night) - 1440, "sleep", schema.subtype, "end", schema.value,
+                            Integer.toString(night), schema.sleepQuality, pick(new String[]{"good", "fair", "poor"}));
+
+                    int diapers = age < 90 ? 7 + random.nextInt(4) : age < 730 ? 5 + random.nextInt(3) : 2 + random.nextInt(3);
+                    for (int d = 0; d < diapers; d++) {
+                        add(random.nextInt(1440), "diaper", schema.type, pick(new String[]{"wet", "wet", "dirty", "mixed"}));
+                    }
+
+                    // Mostly normal readings with the occasional fever
+                    if (random.nextInt(4) == 0) {
+                        double temperature = random.nextInt(40) == 0 ? 38 + random.nextDouble() * 1.5
+                                : 36.4 + random.nextDouble() * 0.9;
+                        add(random.nextInt(1440), "temperature", schema.value, round(temperature, 10));
+                    }
+                    if (age < 365) {
+                        for (int p = random.nextInt(3); p > 0; p--) {
+                            add(random.nextInt(1440), "pumping", schema.value, (50 + random.nextInt(150)) + "ml");
+                        }
+                    }
+                    add(random.nextInt(1440), "mood", schema.type, pick(BABY_MOODS));
+
+                    // Weekly weigh-ins along a rough growth curve
+                    if (age % 7 == 0) {
+                        double months = age / 30.4;
+                        double weight = birthWeight + 0.75 * months - 0.018 * months * months + random.nextDouble() * 0.2;
+                        double height = birthHeight + 3.2 * months - 0.07 * months * months + random.nextDouble();
+                        int minute = 9 * 60 + random.nextInt(180);
+                        add(minute, "growth", schema.type, "weight", schema.value, round(weight, 100) + "kg");
+                        add(minute + 1, "growth", schema.type, "height", schema.value, round(height, 10) + "cm");
+                        if (age <= 730) {
+                            double head = birthHead + 4.4 * Math.log1p(months) + random.nextDouble() * 0.4;
+                            add(minute + 2, "growth", schema.type, "head", schema.value, round(head, 10) + "cm");
+                        }
+                    }
+                    if (age % 30 == 0) add(10 * 60 + random.nextInt(360), "doctor_visit", schema.type, "checkup");
+                    for (int v = 0; v < VACCINE_DAYS.length; v++) {
+                        if (age == VACCINE_DAYS[v]) add(11 * 60, "vaccine", schema.type, VACCINES[v]);
+                    }
+                    if (age > 0 && age % 60 == 0 && age / 60 <= MILESTONES.length) {
+                        add(random.nextInt(1440), "milestone", schema.milestone, MILESTONES[age / 60 - 1]);
+                    }
+                    if (random.nextInt(20) == 0) {
+                        add(random.nextInt(1440), "memory", schema.memory, "A lovely afternoon in the park");
+                    }
+                    rows += writeDay(out, date, columns, schema.date, schema.time, schema.activity);
+                }
+            }
+            return rows;
+        }
+
+        long writeMamaLog(Path path) throws IOException {
+            CsvRow header = headerOf(MAMA_LOG_HEADER);
+            MamaColumns schema = new MamaColumns(header);
+            int columns = header.size();
+            int type = header.indexOf("type", 3), week = header.indexOf("week_of_pregnancy", 6);
+            int movements = header.indexOf("fetal_movements_count", 82);
+            int contractionSeconds = header.indexOf("contraction_duration_sec", 84);
+            int contractionMinutes = header.indexOf("contraction_frequency_min", 85);
+            int breastSide = header.indexOf("breast_side", 61);
+            int breastfeedingMinutes = header.indexOf("breastfeeding_duration_minutes", 62);
+            int mealType = header.indexOf("meal_type", 88);
+            int kegelSets = header.indexOf("kegel_sets", 130);
+            double weight = prePregnancyWeight;
+            long rows = 0;
+            try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                out.write(MAMA_LOG_HEADER);
+                out.write('\n');
+                for (LocalDate date = birthDate.minusDays(PREGNANCY_DAYS); !date.isAfter(lastDay); date = date.plusDays(1)) {
+                    int age = (int) (date.toEpochDay() - birthDate.toEpochDay());
+                    boolean pregnant = age < 0;
+                    day.clear();
+
+                    if (age % 7 == 0) {
+                        // Gains through the pregnancy, loses most of it in the first year after
+                        double gain = pregnant ? 0.2 + random.nextDouble() * 0.3 : age < 365 ? -0.1 - random.nextDouble() * 0.15 : 0;
+                        if (age == 0) gain = -6;
+                        weight += gain;
+                        if (pregnant) {
+                            add(8 * 60, "pregnancy_week", week, Integer.toString((PREGNANCY_DAYS + age) / 7),
+                                    schema.weight, round(weight, 10), schema.weightGain, round(gain, 10));
+                        } else {
+                            add(8 * 60, "weight", schema.weight, round(weight, 10), schema.weightGain, round(gain, 10));
+                        }
+                    }
+                    add(7 * 60 + random.nextInt(120), "mama_sleep", schema.totalSleepMinutes,
+                            Integer.toString(pregnant || age > 180 ? 360 + random.nextInt(180) : 240 + random.nextInt(180)));
+                    add(random.nextInt(1440), "mood", schema.moodScale, Integer.toString(3 + random.nextInt(8)),
+                            schema.dominantEmotion, pick(EMOTIONS));
+                    add(20 * 60 + random.nextInt(120), "nutrition", mealType, pick(MEALS),
+                            schema.waterLiters, round(1.2 + random.nextDouble() * 1.8, 10));
+                    if (random.nextInt(3) == 0) {
+                        String exercise = pick(EXERCISES);
+                        add(random.nextInt(1440), "exercise", type, exercise, schema.exerciseType, exercise,
+                                schema.exerciseMinutes, Integer.toString(15 + random.nextInt(46)));
+                    }
+                    if (random.nextInt(4) == 0) add(random.nextInt(1440), "symptom", schema.symptomType, pick(SYMPTOMS));
+
+                    if (pregnant) {
+                        if (age % 28 == 0) {
+                            add(10 * 60 + random.nextInt(300), "doctor_appointment", schema.doctor, "Dr. Papadopoulos");
+                        }
+                        if (age % 42 == 0) add(9 * 60 + random.nextInt(120), "test", schema.testType, pick(TESTS));
+                        if (age > -PREGNANCY_DAYS / 2) {
+                            add(random.nextInt(1440), "fetal_movements", movements, Integer.toString(5 + random.nextInt(20)));
+                        }
+                        if (age > -14 && random.nextInt(3) == 0) {
+                            add(random.nextInt(1440), "contractions", contractionSeconds, Integer.toString(30 + random.nextInt(60)),
+                                    contractionMinutes, Integer.toString(3 + random.nextInt(15)));
+                        }
+                    } else {
+                        if (age < 365) {
+                            for (int f = 6 + random.nextInt(4); f > 0; f--) {
+                                add(random.nextInt(1440), "breastfeeding", breastSide, random.nextBoolean() ? "left" : "right",
+                                        breastfeedingMinutes, Integer.toString(5 + random.nextInt(25)));
+                            }
+                            for (int p = random.nextInt(3); p > 0; p--) {
+                                add(random.nextInt(1440), "pumping", schema.pumpingAmount, Integer.toString(40 + random.nextInt(160)));
+                            }
+                        }
+                        if (age == 42) add(10 * 60, "postpartum_checkup", type, "6week");
+                        if (age < 180 && random.nextInt(2) == 0) {
+                            add(random.nextInt(1440), "pelvic_floor", type, "kegel_exercises", kegelSets, Integer.toString(1 + random.nextInt(3)));
+                        }
+                        if (age > 0 && age % 90 == 0) {
+                            add(random.nextInt(1440), "mama_milestone", schema.milestoneDescription, "Another season together");
+                        }
+                    }
+                    rows += writeDay(out, date, columns, schema.date, header.indexOf("time", 1), schema.activity);
+                }
+            }
+            return rows;
+        }
+
+        private void add(int minute, String activity, Object... columnValues) {
+            day.add(row(minute, activity, columnValues));
+        }
+
+        private static GeneratedRow row(int minute, String activity, Object... columnValues) {
+            int[] columns = new int[columnValues.length / 2];
+            String[] values = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = (Integer) columnValues[2 * i];
+                values[i] = (String) columnValues[2 * i + 1];
+            }
+            return new GeneratedRow(Math.min(Math.max(minute, 0), 1439), activity, columns, values);
+        }
+
+        // Sorts the day's rows by time and writes them, spoiling malformedPercent of them
+        private long writeDay(BufferedWriter out, LocalDate date, int columns, int dateColumn, int timeColumn,
+                              int activityColumn) throws IOException {
+            day.sort(Comparator.comparingInt(row -> row.minute));
+            if (date.equals(lastDay)) day.removeIf(row -> row.minute > lastMinute);
+            String dateText = date.toString();
+            String[] cells = new String[columns];
+            for (GeneratedRow row : day) {
+                Arrays.fill(cells, null);
+                cells[dateColumn] = dateText;
+                cells[timeColumn] = TIMES[row.minute];
+                cells[activityColumn] = row.activity;
+                for (int i = 0; i < row.columns.length; i++) cells[row.columns[i]] = row.values[i];
+
+                int cut = columns;
+                if (malformedPercent > 0 && random.nextDouble() * 100 < malformedPercent) {
+                    int number = lastNumber(row);
+                    switch (random.nextInt(3)) {
+                        case 0 -> cells[dateColumn] = pick(new String[]{"2024-13-01", "yesterday", date.getDayOfMonth() + "/" + date.getMonthValue()});
+                        case 1 -> {
+                            if (number >= 0) cells[row.columns[number]] = "n/a";
+                            else cells[dateColumn] = "??";
+                        }
+                        default -> {
+                            int last = activityColumn;
+                            for (int column : row.columns) last = Math.max(last, column);
+                            cut = 1 + random.nextInt(last);
+                        }
+                    }
+                }
+
+                line.setLength(0);
+                for (int i = 0; i < cut; i++) {
+                    if (i > 0) line.append(',');
+                    if (cells[i] != null) line.append(cells[i]);
+                }
+                line.append('\n');
+                out.append(line);
+            }
+            return day.size();
+        }
+
+        // Index in row.values of the last numeric value, or -1 if there is none
+        private static int lastNumber(GeneratedRow row) {
+            for (int i = row.values.length - 1; i >= 0; i--) {
+                String value = row.values[i];
+                if (!value.isEmpty() && Character.isDigit(value.charAt(0))) return i;
+            }
+            return -1;
+        }
+
+        private String pick(String[] values) {
+            return values[random.nextInt(values.length)];
+        }
+
+        private static String round(double value, int scale) {
+            return Snapshot.formatNumber(Math.round(value * scale) / (double) scale);
+        }
+
+        private static CsvRow headerOf(String line) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            CsvRow header = new CsvRow();
+            header.parse(bytes, 0, bytes.length);
+            return header;
+        }
+    }
+
+    static class GeneratedRow {
+        final int minute;
+        final String activity;
+        final int[] columns;
+        final String[] values;
+
+        GeneratedRow(int minute, String activity, int[] columns, String[] values) {
+            this.minute = minute;
+            this.activity = activity;
+            this.columns = columns;
+            this.values = values;
+        }
+    }
+
+    private static final String[] BABY_LOGS = {"baby_data.csv", "BABY_DATA.csv"};
+    private static final String[] MAMA_LOGS = {"mama_data_complete.csv", "MUM_DATA.csv"};
+
+    // First of the possible file names in dir that exists, or null
+    private static Path findLog(Path dir, String... names) {
+        for (String name : names) {
+            if (Files.exists(dir.resolve(name))) return dir.resolve(name);
+        }
+        return null;
+    }
+
+    static class BabyProfile {
+        String name;
+        LocalDate birthDate;
+        double birthWeight;
+        double birthHeight;
+        double birthHeadCircumference;
+        String bloodType;
+        String gender;
+        String notes;
+    }
+
+    private static BabyProfile loadBabyProfile(Path dir) throws IOException {
+        // Try different possible filenames
+        Path profilePath = null;
+        if (Files.exists(dir.resolve("BABY_PROFILE.csv"))) {
+            profilePath = dir.resolve("BABY_PROFILE.csv");
+        } else if (Files.exists(dir.resolve("baby_profile.csv"))) {
+            profilePath = dir.resolve("baby_profile.csv");
+        } else {
+            throw new IOException("Baby profile file not found!");
+        }
+
+        String csvData = Files.readString(profilePath);
+        String[] lines = csvData.split("\n");
+
+        BabyProfile profile = new BabyProfile();
+
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) continue;
+
+            String[] parts = line.split(",", 2);
+            if (parts.length < 2) continue;
+
+            String field = parts[0].trim();
+            String value = parts[1].trim();
+
+            switch (field) {
+                case "baby_name":
+                    profile.name = value;
+                    break;
+                case "birth_date":
+                    profile.birthDate = LocalDate.parse(value, DATE_FORMATTER);
+                    break;
+                case "birth_weight_kg":
+                    profile.birthWeight = Double.parseDouble(value);
+                    break;
+                case "birth_height_cm":
+                    profile.birthHeight = Double.parseDouble(value);
+                    break;
+                case "birth_head_circumference_cm":
+                    profile.birthHeadCircumference = Double.parseDouble(value);
+                    break;
+                case "blood_type":
+                    profile.bloodType = value;
+                    break;
+                case "gender":
+                    profile.gender = value;
+                    break;
+                case "notes":
+                    profile.notes = value;
+                    break;
+            }
+        }
+
+        return profile;
+    }
+
+    private static void displayBabyProfile(BabyProfile profile, PrintStream out) {
+        out.println("👶 BABY PROFILE");
+        out.println("-".repeat(100));
+        out.println("Name: " + profile.name);
+        out.println("Birth Date: " + profile.birthDate);
+
+        // Calculate age
+        long days = ChronoUnit.DAYS.between(profile.birthDate, LocalDate.now());
+        long years = days / 365;
+        long months = (days % 365) / 30;
+        long remainingDays = (days % 365) % 30;
+
+        if (years > 0) {
+            out.printf("Age: %d years, %d months, %d days (%d days total)\n",
+                    years, months, remainingDays, days);
+        } else {
+            out.printf("Age: %d months, %d days (%d days total)\n",
+                    months, remainingDays, days);
+        }
+
+        out.println("Birth Weight: " + profile.birthWeight + " kg");
+        out.println("Birth Height: " + profile.birthHeight + " cm");
+        out.println("Birth Head Circumference: " + profile.birthHeadCircumference + " cm");
+        out.println("Blood Type: " + profile.bloodType);
+        out.println("Gender: " + profile.gender);
+        out.println("Notes: " + profile.notes);
+        out.println();
+    }
+
+
+    static class MamaProfile {
+        String name;
+        LocalDate lastMenstrualPeriod;
+        LocalDate expectedDueDate;
+        double prePregnancyWeight;
+        String bloodType;
+        double height;
+        String doctorName;
+        String doctorPhone;
+        String hospital;
+        String allergies;
+        String chronicConditions;
+        LocalDate deliveryDate;
+        String deliveryType;
+        String babyName;
+        String notes;
+    }
+
+    private static MamaProfile loadMamaProfile(Path dir) throws IOException {
+        // Try different possible filenames
+        Path profilePath = null;
+        if (Files.exists(dir.resolve("MUM_PROFILE.CSV"))) {
+            profilePath = dir.resolve("MUM_PROFILE.CSV");
+        } else if (Files.exists(dir.resolve("mama_profile.csv"))) {
+            profilePath = dir.resolve("mama_profile.csv");
+        } else {
+            throw new IOException("Mama profile file not found!");
+        }
+
+        String csvData = Files.readString(profilePath);
+        String[] lines = csvData.split("\n");
+
+        MamaProfile profile = new MamaProfile();
+
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) continue;
+
+            String[] parts = line.split(",", 2);
+            if (parts.length < 2) continue;
+
+            String field = parts[0].trim();
+            String value = parts[1].trim();
+
+            if (value.isEmpty()) continue;
+
+            switch (field) {
+                case "mama_name":
+                    profile.name = value;
+                    break;
+                case "last_menstrual_period":
+                    profile.lastMenstrualPeriod = LocalDate.parse(value, DATE_FORMATTER);
+                    break;
+                case "expected_due_date":
+                    profile.expectedDueDate = LocalDate.parse(value, DATE_FORMATTER);
+                    break;
+                case "pre_pregnancy_weight_kg":
+                    profile.prePregnancyWeight = Double.parseDouble(value);
+                    break;
+                case "blood_type":
+                    profile.bloodType = value;
+                    break;
+                case "height_cm":
+                    profile.height = Double.parseDouble(value);
+                    break;
+                case "doctor_name":
+                    profile.doctorName = value;
+                    break;
+                case "doctor_phone":
+                    profile.doctorPhone = value;
+                    break;
+                case "hospital":
+                    profile.hospital = value;
+                    break;
+                case "allergies":
+                    profile.allergies = value;
+                    break;
+                case "chronic_conditions":
+                    profile.chronicConditions = value;
+                    break;
+                case "delivery_date":
+                    profile.deliveryDate = LocalDate.parse(value, DATE_FORMATTER);
+                    break;
+                case "delivery_type":
+                    profile.deliveryType = value;
+                    break;
+                case "baby_name":
+                    profile.babyName = value;
+                    break;
+                case "notes":
+                    profile.notes = value;
+                    break;
+            }
+        }
+
+        return profile;
+    }
+
+    private static void displayMamaProfile(MamaProfile profile, PrintStream out) {
+        out.println("🤰 MAMA PROFILE");
+        out.println("-".repeat(100));
+        out.println("Name: " + profile.name);
+        out.println("Last Menstrual Period: " + profile.lastMenstrualPeriod);
+        out.println("Expected Due Date: " + profile.expectedDueDate);
+
+        if (profile.deliveryDate != null) {
+            out.println("Delivery Date: " + profile.deliveryDate);
+            out.println("Delivery Type: " + profile.deliveryType);
+            long daysPostpartum = ChronoUnit.DAYS.between(profile.deliveryDate, LocalDate.now());
+            long weeksPostpartum = daysPostpartum / 7;
+            out.printf("Postpartum: %d weeks (%d days)\n", weeksPostpartum, daysPostpartum);
+        } else {
+            // Calculate pregnancy week
+            long daysSinceLMP = ChronoUnit.DAYS.between(profile.lastMenstrualPeriod, LocalDate.now());
+            long weeks = daysSinceLMP / 7;
+            long days = daysSinceLMP % 7;
+            int trimester = weeks <= 13 ? 1 : weeks <= 27 ? 2 : 3;
+            out.printf("Current Pregnancy: Week %d + %d days (Trimester %d)\n",
+                    weeks, days, trimester);
+
+            long daysUntilDue = ChronoUnit.DAYS.between(LocalDate.now(), profile.expectedDueDate);
+            out.println("Days Until Due Date: " + daysUntilDue);
+        }
+
+        out.println("Pre-Pregnancy Weight: " + profile.prePregnancyWeight + " kg");
+        out.println("Height: " + profile.height + " cm");
+        out.println("Blood Type: " + profile.bloodType);
+        out.println("Doctor: " + profile.doctorName + " (" + profile.doctorPhone + ")");
+        out.println("Hospital: " + profile.hospital);
+        out.println("Allergies: " + profile.allergies);
+        out.println("Baby: " + profile.babyName);
+        out.println();
+    }
+
+
+    // Column positions in baby_data.csv, resolved by name from the header row.
+    // A header that doesn't name a column keeps that column's original fixed position.
+    static class BabyColumns {
+        final int date, time, activity, type, subtype, value, sleepQuality, milestone, memory;
+
+        BabyColumns(CsvRow header) {
+            date = header.indexOf("date", 0);
+            time = header.indexOf("time", 1);
+            activity = header.indexOf("activity", 2);
+            type = header.indexOf("type", 3);
+            subtype = header.indexOf("subtype", 4);
+            value = header.indexOf("value", 5);
+            sleepQuality = header.indexOf("sleep_quality", 7);
+            milestone = header.indexOf("milestone", 19);
+            memory = header.indexOf("memory", 20);
+        }
+    }
+
+    // Resolves a baby log's header into a factory for empty BabyStats counting from today
+    private static Function<CsvRow, Supplier<BabyStats>> babyStatsFor(BabyProfile profile, ScanOptions options) {
+        return header -> {
+            BabyColumns schema = new BabyColumns(header);
+            ActivityHandlers handlers = ActivityHandlers.load("baby", header, BabyStats.ACTIVITIES);
+            AlertRules<BabyStats> alertRules = new AlertRules<>(handlers, BABY_ALERT_RULES);
+            LocalDate today = LocalDate.now();
+            return () -> new BabyStats(schema, handlers, alertRules, today, profile, options);
+        };
+    }
+
+    // Scans the baby log. A missing or empty log is noted on out and gives null.
+    private static BabyStats analyzeBabyData(Path dir, BabyProfile profile, ScanOptions options,
+                                             PrintStream out) throws IOException {
+        Path dataPath = findLog(dir, BABY_LOGS);
+        if (dataPath == null) {
+            out.println("⚠️ No baby data file found. Skipping baby analysis.");
+            return null;
+        }
+
+        BabyStats stats = scanLog(dataPath, options, out, babyStatsFor(profile, options));
+        if (stats == null) {
+            out.println("No baby data found in file.");
+            return null;
+        }
+
+        return stats;
+    }
+
+    // WHO percentile of the latest measurement of each kind, with the z range over all of them
+    private static void printWhoPercentiles(BabyProfile profile, BabyStats stats, PrintStream out) {
+        if (stats.growthTables == null) return;
+        out.println("  WHO percentiles (" + profile.gender + "):");
+        GrowthScores weight = stats.growthScores(WhoGrowth.WEIGHT);
+        printWhoScores("Weight-for-age", weight, out);
+        if (!stats.growthHeights.isEmpty()) printWhoScores("Length-for-age", stats.growthScores(WhoGrowth.LENGTH), out);
+        if (!stats.growthHeads.isEmpty()) {
+            printWhoScores("Head circumference-for-age", stats.growthScores(WhoGrowth.HEAD), out);
+        }
+        out.println("    At birth: weight " + percentileText(WhoGrowth.zScore(stats.growthTables, WhoGrowth.WEIGHT, 0, profile.birthWeight))
+                + ", length " + percentileText(WhoGrowth.zScore(stats.growthTables, WhoGrowth.LENGTH, 0, profile.birthHeight))
+                + ", head " + percentileText(WhoGrowth.zScore(stats.growthTables, WhoGrowth.HEAD, 0, profile.birthHeadCircumference)));
+    }
+
+    private static void printWhoScores(String label, GrowthScores scores, PrintStream out) {
+        if (Double.isNaN(scores.latestZ)) {
+            out.print("    " + label + ": latest measurement is outside the WHO 0-24 month tables");
+        } else {
+            out.printf("    %s: %s (z %.2f)", label, percentileText(scores.latestZ), scores.latestZ);
+        }
+        if (scores.scored > 1) {
+            out.printf(", z %.2f to %.2f over %d measurements", scores.lowestZ, scores.highestZ, scores.scored);
+        }
+        out.println();
+    }
+
+    // "45th percentile", with the tails capped the way growth charts print them
+    private static String percentileText(double z) {
+        if (Double.isNaN(z)) return "n/a";
+        double percentile = WhoGrowth.percentile(z);
+        if (percentile < 1) return "below the 1st percentile";
+        if (percentile > 99) return "above the 99th percentile";
+        long n = Math.round(percentile);
+        long tens = n % 100;
+        String suffix = tens >= 11 && tens <= 13 ? "th" : n % 10 == 1 ? "st" : n % 10 == 2 ? "nd" : n % 10 == 3 ? "rd" : "th";
+        return n + suffix + " percentile";
+    }
+
+    private static void printBabyReport(BabyProfile profile, BabyStats stats, PrintStream out) {
+        // Calculate days since birth
+        long daysSinceBirth = ChronoUnit.DAYS.between(profile.birthDate, stats.today);
+
+        DailyRollup days = stats.days;
+        int todayDay = stats.todayDay;
+
+        // Display Results
+        out.println("\n🍼 FEEDING STATISTICS:");
+        out.println("  Today: " + days.sum(DailyRollup.FEEDINGS, todayDay, todayDay) + " feedings");
+        out.println("  Yesterday: " + days.sum(DailyRollup.FEEDINGS, todayDay - 1, todayDay - 1) + " feedings");
+        out.println("  This Week: " + days.sum(DailyRollup.FEEDINGS, todayDay - 7, DailyRollup.LATEST) + " feedings");
+        out.println("  Total: " + days.total(DailyRollup.FEEDINGS) + " feedings");
+        out.printf("  Average per day: %.1f feedings\n",
+                days.total(DailyRollup.FEEDINGS) / (double)Math.max(1, daysSinceBirth));
+
+        if (!stats.feedingTypes.isEmpty()) {
+            out.println("  Feeding Types:");
+            stats.feedingTypes.forEach((type, count) ->
+                    out.println("    " + type + ": " + count + " times"));
+        }
+
+        if (stats.lastFeedingDay != NO_DAY && stats.lastFeedingMinute != NO_MINUTE) {
+            long hoursSinceFeeding = stats.hoursSinceLastFeeding();
+            out.println("  Last feeding: " + hoursSinceFeeding + " hours ago");
+        }
+
+        out.println("\n😴 SLEEP STATISTICS:");
+        out.printf("  Today: %.1f hours\n", stats.sleepMinutes(todayDay, todayDay) / 60.0);
+        out.printf("  Average per day: %.1f hours\n",
+                stats.sleepMinutes(DailyRollup.EARLIEST, DailyRollup.LATEST) / 60.0 / Math.max(1, daysSinceBirth));
+        if (stats.sleep.size() > 0) {
+            int weekAgo = todayDay - 6;
+            out.println("  Sessions: " + stats.sleep.size());
+            out.printf("  Last 7 days: %.1f hours a night between 22:00 and 06:00, %.1f hours a day otherwise\n",
+                    stats.sleep.minutesDaily(weekAgo - 1, todayDay - 1, NIGHT_START, NIGHT_END) / 60.0 / 7,
+                    stats.sleep.minutesDaily(weekAgo, todayDay, NIGHT_END, NIGHT_START) / 60.0 / 7);
+            out.printf("  Longest stretch this week: %.1f hours\n",
+                    stats.sleep.longestBetween(weekAgo * 1440L, (todayDay + 1) * 1440L) / 60.0);
+        }
+
+        if (!stats.sleepQuality.isEmpty()) {
+            out.println("  Sleep Quality:");
+            stats.sleepQuality.forEach((quality, count) ->
+                    out.println("    " + quality + ": " + count + " times"));
+        }
+
+        // Sleep recommendation based on age
+        double avgSleepHours = stats.sleepMinutes(DailyRollup.EARLIEST, DailyRollup.LATEST) / 60.0
+                / Math.max(1, daysSinceBirth);
+        long ageMonths = daysSinceBirth / 30;
+        double recommendedSleep = ageMonths < 3 ? 16 : ageMonths < 12 ? 14 : 13;
+        if (avgSleepHours < recommendedSleep) {
+            out.printf("  ⚠️ Baby is sleeping less than recommended %.0f hours for age\n",
+                    recommendedSleep);
+        }
+
+        out.println("\n💩 DIAPER STATISTICS:");
+        out.println("  Today: " + days.sum(DailyRollup.DIAPERS, todayDay, todayDay) + " diapers");
+        out.println("  Total: " + days.total(DailyRollup.DIAPERS) + " diapers");
+        out.printf("  Average per day: %.1f diapers\n",
+                days.total(DailyRollup.DIAPERS) / (double)Math.max(1, daysSinceBirth));
+
+        if (!stats.diaperTypes.isEmpty()) {
+            out.println("  Diaper Types:");
+            stats.diaperTypes.forEach((type, count) ->
+                    out.println("    " + type + ": " + count + " times"));
+        }
+
+        if (stats.temperatureCount > 0) {
+            double avgTemp = stats.totalTemperature.value() / stats.temperatureCount;
+            out.println("\n🌡️ TEMPERATURE:");
+            out.printf("  Average: %.1f°C\n", avgTemp);
+            out.printf("  Range: %.1f°C - %.1f°C\n",
+                    days.minTemperature(DailyRollup.EARLIEST, DailyRollup.LATEST),
+                    days.maxTemperature(DailyRollup.EARLIEST, DailyRollup.LATEST));
+
+            if (avgTemp >= 37.5) {
+                out.println("  ⚠️ WARNING: Elevated temperature - Monitor closely");
+            }
+        }
+
+        if (!stats.moodCounts.isEmpty()) {
+            out.println("\n😊 MOOD DISTRIBUTION:");
+            stats.moodCounts.forEach((mood, count) -> {
+                String emoji = mood.equals("happy") ? "😊" :
+                        mood.equals("calm") ? "😌" :
+                                mood.equals("fussy") ? "😠" : "😭";
+                out.println("  " + emoji + " " + mood + ": " + count + " times");
+            });
+        }
+
+        if (!stats.growthWeights.isEmpty()) {
+            out.println("\n📏 GROWTH TRACKING:");
+            double currentWeight = stats.growthWeights.last();
+            double weightGain = currentWeight - profile.birthWeight;
+            out.printf("  Current Weight: %.2f kg\n", currentWeight);
+            out.printf("  Weight Gain: %.2f kg (%.1f%%)\n",
+                    weightGain, (weightGain / profile.birthWeight) * 100);
+
+            if (!stats.growthHeights.isEmpty()) {
+                double currentHeight = stats.growthHeights.last();
+                double heightGain = currentHeight - profile.birthHeight;
+                out.printf("  Current Height: %.1f cm\n", currentHeight);
+                out.printf("  Height Gain: %.1f cm (%.1f%%)\n",
+                        heightGain, (heightGain / profile.birthHeight) * 100);
+            }
+            if (!stats.growthHeads.isEmpty()) {
+                out.printf("  Current Head Circumference: %.1f cm\n", stats.growthHeads.last());
+            }
+            printWhoPercentiles(profile, stats, out);
+        }
+
+        long pumpingSessions = days.total(DailyRollup.PUMPING_SESSIONS);
+        if (pumpingSessions > 0) {
+            double pumpedML = days.pumpingMl(DailyRollup.EARLIEST, DailyRollup.LATEST);
+            out.println("\n🍼 PUMPING STATISTICS:");
+            out.println("  Total Sessions: " + pumpingSessions);
+            out.printf("  Average Amount: %.0f ml per session\n", pumpedML / pumpingSessions);
+            out.printf("  Total Produced: %.0f ml\n", pumpedML);
+        }
+
+        // Any window is a lookup in the daily rollup
+        if (profile.birthDate != null && !profile.birthDate.isAfter(stats.today)) {
+            int fortnightAgo = todayDay - 13;
+            long monthOfLife = ChronoUnit.MONTHS.between(profile.birthDate, stats.today) + 1;
+            int monthStart = (int) profile.birthDate.plusMonths(monthOfLife - 1).toEpochDay();
+            out.println("\n📅 RECENT DAYS:");
+            long fortnightFeedings = days.sum(DailyRollup.FEEDINGS, fortnightAgo, todayDay);
+            double fortnightSleepHours = stats.sleepMinutes(fortnightAgo, todayDay) / 60.0;
+            long fortnightDiapers = days.sum(DailyRollup.DIAPERS, fortnightAgo, todayDay);
+            out.printf("  Last 14 days: %d feedings, %.1f hours sleep, %d diapers\n",
+                    fortnightFeedings, fortnightSleepHours, fortnightDiapers);
+            out.printf("  Per day: %.1f feedings, %.1f hours sleep, %.1f diapers\n",
+                    fortnightFeedings / 14.0, fortnightSleepHours / 14, fortnightDiapers / 14.0);
+            out.printf("  Month %d of life so far: %d feedings, %.1f hours sleep, %d diapers\n", monthOfLife,
+                    days.sum(DailyRollup.FEEDINGS, monthStart, todayDay),
+                    stats.sleepMinutes(monthStart, todayDay) / 60.0,
+                    days.sum(DailyRollup.DIAPERS, monthStart, todayDay));
+        }
+
+        if (stats.vaccineCount > 0) {
+            out.println("\n💉 VACCINATION RECORD (" + stats.vaccineCount + " vaccines):");
+            stats.vaccines.forEach(v -> out.println("  ✅ " + v));
+        }
+
+        if (stats.doctorVisitCount > 0) {
+            out.println("\n👨‍⚕️ DOCTOR VISITS: " + stats.doctorVisitCount + " visits total");
+        }
+
+        if (stats.milestoneCount > 0) {
+            out.println("\n🎯 MILESTONES (" + stats.milestoneCount + " total):");
+            stats.milestones.forEach(m -> out.println("  ✨ " + m));
+        }
+
+        if (stats.memoryCount > 0) {
+            out.println("\n💝 SPECIAL MEMORIES (" + stats.memoryCount + " total):");
+            int displayCount = Math.min(10, stats.memories.size());
+            for (int i = 0; i < displayCount; i++) {
+                out.println("  🎉 " + stats.memories.get(i));
+            }
+            if (stats.memories.size() > 10) {
+                out.println("  ... and " + (stats.memories.size() - 10) + " more memories!");
+            }
+        }
+
+        printMetrics(stats.handlers, stats.metrics, out);
+        printAlerts(babyAlerts(stats), out);
+        printAlertLog(stats.alertRules, stats.alerts, out);
+        printRejections(stats.rejections, out);
+    }
+
+    // Everything analyzeBabyData counts. A log can be split into chunks, each counted into
+    // its own instance, and the results merged back in file order.
+    static class BabyStats implements LogStats<BabyStats> {
+        // Activity ids for the switch in accept, in the order of ACTIVITIES
+        static final int FEEDING = 0, SLEEP = 1, DIAPER = 2, TEMPERATURE = 3, MOOD = 4, MILESTONE = 5,
+                MEMORY = 6, PUMPING = 7, VACCINE = 8, DOCTOR_VISIT = 9, GROWTH = 10;
+        static final String[] ACTIVITIES = {"feeding", "sleep", "diaper", "temperature", "mood", "milestone",
+                "memory", "pumping", "vaccine", "doctor_visit", "growth"};
+
+        final BabyColumns schema;
+        final ActivityHandlers handlers;
+        final AlertRules<BabyStats> alertRules;
+        final AlertLog alerts;
+        final LocalDate today;
+        final int todayDay;
+        final Rejections rejections;
+
+        // Feedings, diapers, pumping and temperature range, per day
+        final DailyRollup days;
+        final SleepSessions sleep = new SleepSessions();
+
+        // Counters
+        final ExactSum totalTemperature = new ExactSum();
+        int temperatureCount = 0;
+        int milestoneCount = 0, memoryCount = 0;
+        int vaccineCount = 0, doctorVisitCount = 0;
+
+        CategoryCounts feedingTypes = new CategoryCounts();
+        CategoryCounts diaperTypes = new CategoryCounts();
+        CategoryCounts moodCounts = new CategoryCounts();
+        CategoryCounts sleepQuality = new CategoryCounts();
+        List<String> milestones = new ArrayList<>();
+        List<String> memories = new ArrayList<>();
+        List<String> vaccines = new ArrayList<>();
+        GrowthSeries growthWeights = new GrowthSeries();
+        GrowthSeries growthHeights = new GrowthSeries();
+        GrowthSeries growthHeads = new GrowthSeries();
+
+        // WHO tables for the baby's gender (null if unknown) and the birth epoch day
+        final double[][] growthTables;
+        final int birthDay;
+
+        // Epoch day and minute of day, only turned into java.time values for the report
+        int lastFeedingDay = NO_DAY;
+        int lastFeedingMinute = NO_MINUTE;
+
+        // For the alert rules: the latest reading and the log time of the latest dated row
+        double lastTemperature = Double.NaN;
+        long lastRowMinute = AlertLog.NO_TIME;
+
+        // One accumulator per registered metric
+        Object[] metrics;
+
+        // The rollup runs from birth (or a week ago, if that is earlier) through today
+        BabyStats(BabyColumns schema, ActivityHandlers handlers, AlertRules<BabyStats> alertRules, LocalDate today,
+                  BabyProfile profile, ScanOptions options) {
+            this.schema = schema;
+            this.handlers = handlers;
+            this.alertRules = alertRules;
+            this.alerts = new AlertLog(alertRules.rules.size());
+            this.metrics = handlers.newAccumulators();
+            this.rejections = new Rejections(options);
+            this.today = today;
+            this.todayDay = (int) today.toEpochDay();
+            this.birthDay = profile.birthDate == null ? NO_DAY : (int) profile.birthDate.toEpochDay();
+            this.growthTables = profile.birthDate == null ? null : WhoGrowth.tablesFor(profile.gender);
+            int firstDay = todayDay - 7;
+            if (birthDay != NO_DAY) firstDay = Math.min(firstDay, birthDay);
+            this.days = new DailyRollup(firstDay, todayDay);
+        }
+
+        @Override
+        public void accept(EventRow cols) {
+            rejections.nextLine();
+            if (!cols.has(schema.date) || !cols.has(schema.activity)) return;
+
+            int id = handlers.activityId(cols, schema.activity);
+            String activity = id >= 0 ? handlers.activityName(id) : null;
+
+            if (cols.isBlank(schema.date)) return;
+            if (!cols.isDate(schema.date)) {
+                rejections.reject(cols, activity != null ? activity : cols.get(schema.activity), "invalid date");
+                return;
+            }
+
+            int eventDay = cols.epochDay(schema.date);
+            boolean timed = cols.has(schema.time) && cols.isTime(schema.time);
+            long minute = eventDay * 1440L + (timed ? cols.minuteOfDay(schema.time) : 0);
+
+            switch (id) {
+                case FEEDING:
+                    days.add(DailyRollup.FEEDINGS, eventDay, 1);
+
+                    if (cols.has(schema.type) && !cols.isEmpty(schema.type)) {
+                        feedingTypes.add(cols, schema.type);
+                    }
+
+                    if (cols.has(schema.time) && !cols.isBlank(schema.time)) {
+                        if (!cols.isTime(schema.time)) {
+                            rejections.reject(cols, activity, "invalid time");
+                            return;
+                        }
+                        lastFeedingDay = eventDay;
+                        lastFeedingMinute = cols.minuteOfDay(schema.time);
+                    }
+                    break;
+
+                case SLEEP:
+                    if (cols.has(schema.subtype) && cols.equals(schema.subtype, "start")) {
+                        if (timed) sleep.start(minute);
+                    } else if (cols.has(schema.subtype) && cols.equals(schema.subtype, "end")) {
+                        boolean hasDuration = cols.has(schema.value) && !cols.isEmpty(schema.value);
+                        if (hasDuration && !cols.isInt(schema.value)) {
+                            rejections.reject(cols, activity, "invalid sleep minutes");
+                            return;
+                        }
+                        int duration = hasDuration ? cols.parseInt(schema.value) : 0;
+                        if (timed) sleep.end(minute, duration);
+                        else sleep.endUntimed(eventDay, duration);
+
+                        if (cols.has(schema.sleepQuality) && !cols.isEmpty(schema.sleepQuality)) {
+                            sleepQuality.add(cols, schema.sleepQuality);
+                        }
+                    }
+                    break;
+
+                case DIAPER:
+                    days.add(DailyRollup.DIAPERS, eventDay, 1);
+
+                    if (cols.has(schema.type) && !cols.isEmpty(schema.type)) {
+                        diaperTypes.add(cols, schema.type);
+                    }
+                    break;
+
+                case TEMPERATURE:
+                    if (cols.has(schema.value) && !cols.isEmpty(schema.value)) {
+                        if (!cols.isDouble(schema.value)) {
+                            rejections.reject(cols, activity, "invalid temperature");
+                            return;
+                        }
+                        double temp = cols.parseDouble(schema.value);
+                        lastTemperature = temp;
+                        totalTemperature.add(temp);
+                        temperatureCount++;
+                        days.addTemperature(eventDay, temp);
+                    }
+                    break;
+
+                case MOOD:
+                    if (cols.has(schema.type) && !cols.isEmpty(schema.type)) {
+                        moodCounts.add(cols, schema.type);
+                    }
+                    break;
+
+                case MILESTONE:
+                    milestoneCount++;
+                    if (cols.has(schema.milestone) && !cols.isEmpty(schema.milestone)) {
+                        milestones.add(cols.get(schema.date) + ": " + cols.get(schema.milestone));
+                    }
+                    break;
+
+                case MEMORY:
+                    memoryCount++;
+                    if (cols.has(schema.memory) && !cols.isEmpty(schema.memory)) {
+                        memories.add(cols.get(schema.date) + ": " + cols.get(schema.memory));
+                    }
+                    break;
+
+                case PUMPING:
+                    days.add(DailyRollup.PUMPING_SESSIONS, eventDay, 1);
+                    if (cols.has(schema.value) && !cols.isEmpty(schema.value, "ml")) {
+                        if (!cols.isDouble(schema.value, "ml")) {
+                            rejections.reject(cols, activity, "invalid pumping amount");
+                            return;
+                        }
+                        days.addPumpingMl(eventDay, cols.parseDouble(schema.value, "ml"));
+                    }
+                    break;
+
+                case VACCINE:
+                    vaccineCount++;
+                    String vaccineName = cols.has(schema.type) ? cols.get(schema.type) : "Unknown";
+                    vaccines.add(cols.get(schema.date) + ": " + vaccineName);
+                    break;
+
+                case DOCTOR_VISIT:
+                    doctorVisitCount++;
+                    break;
+
+                case GROWTH:
+                    if (cols.has(schema.type) && cols.equals(schema.type, "weight") && cols.has(schema.value)) {
+                        if (!cols.isEmpty(schema.value, "kg")) {
+                            if (!cols.isDouble(schema.value, "kg")) {
+                                rejections.reject(cols, activity, "invalid weight");
+                                return;
+                            }
+                            growthWeights.add(eventDay, cols.parseDouble(schema.value, "kg"));
+                        }
+                    }
+                    if (cols.has(schema.type) && cols.equals(schema.type, "height") && cols.has(schema.value)) {
+                        if (!cols.isEmpty(schema.value, "cm")) {
+                            if (!cols.isDouble(schema.value, "cm")) {
+                                rejections.reject(cols, activity, "invalid height");
+                                return;
+                            }
+                            growthHeights.add(eventDay, cols.parseDouble(schema.value, "cm"));
+                        }
+                    }
+                    if (cols.has(schema.type) && cols.equals(schema.type, "head") && cols.has(schema.value)) {
+                        if (!cols.isEmpty(schema.value, "cm")) {
+                            if (!cols.isDouble(schema.value, "cm")) {
+                                rejections.reject(cols, activity, "invalid head circumference");
+                                return;
+                            }
+                            growthHeads.add(eventDay, cols.parseDouble(schema.value, "cm"));
+                        }
+                    }
+                    break;
+            }
+            if (handlers.hasHandlers(id)) handlers.accept(id, metrics, cols, eventDay);
+
+            lastRowMinute = minute;
+            alerts.check(alertRules, alertRules.forActivity(id), this, lastRowMinute);
+        }
+
+        @Override
+        public BabyStats merge(BabyStats later) {
+            days.merge(later.days);
+            sleep.merge(later.sleep);
+            totalTemperature.add(later.totalTemperature);
+            temperatureCount += later.temperatureCount;
+            milestoneCount += later.milestoneCount;
+            memoryCount += later.memoryCount;
+            vaccineCount += later.vaccineCount;
+            doctorVisitCount += later.doctorVisitCount;
+
+            feedingTypes.merge(later.feedingTypes);
+            diaperTypes.merge(later.diaperTypes);
+            moodCounts.merge(later.moodCounts);
+            sleepQuality.merge(later.sleepQuality);
+            milestones.addAll(later.milestones);
+            memories.addAll(later.memories);
+            vaccines.addAll(later.vaccines);
+            growthWeights.addAll(later.growthWeights);
+            growthHeights.addAll(later.growthHeights);
+            growthHeads.addAll(later.growthHeads);
+
+            // Rows in the later chunk come after ours, so its last feeding wins
+            if (later.lastFeedingDay != NO_DAY) lastFeedingDay = later.lastFeedingDay;
+            if (later.lastFeedingMinute != NO_MINUTE) lastFeedingMinute = later.lastFeedingMinute;
+            if (!Double.isNaN(later.lastTemperature)) lastTemperature = later.lastTemperature;
+            handlers.merge(metrics, later.metrics);
+            rejections.merge(later.rejections);
+
+            // The later chunk's alerts (and interval gaps) were measured against its own rows
+            // only, so they are left out; scanChunks replays them from a second pass
+            if (later.lastRowMinute != AlertLog.NO_TIME) lastRowMinute = later.lastRowMinute;
+            return this;
+        }
+
+        @Override
+        public void defer() {
+            alerts.defer();
+            handlers.defer(metrics);
+        }
+
+        @Override
+        public void replay(BabyStats later) {
+            alerts.replay(alertRules, later.alerts);
+            handlers.replay(metrics, later.metrics);
+        }
+
+        // Minutes asleep on the days fromDay through toDay (DailyRollup.EARLIEST/LATEST for no limit)
+        long sleepMinutes(int fromDay, int toDay) {
+            return sleep.minutesBetween(fromDay == DailyRollup.EARLIEST ? Long.MIN_VALUE : fromDay * 1440L,
+                    toDay == DailyRollup.LATEST ? Long.MAX_VALUE : (toDay + 1) * 1440L);
+        }
+
+        // Minutes from the last timed feeding until minute (log time), or -1 if no feeding had a time
+        long minutesSinceLastFeeding(long minute) {
+            if (lastFeedingDay == NO_DAY || lastFeedingMinute == NO_MINUTE) return -1;
+            return minute - (lastFeedingDay * 1440L + lastFeedingMinute);
+        }
+
+        // WHO z-score of the latest measurement of a kind, NaN if there is none or it can't be scored
+        double latestZ(int indicator) {
+            GrowthSeries series = indicator == WhoGrowth.WEIGHT ? growthWeights
+                    : indicator == WhoGrowth.LENGTH ? growthHeights : growthHeads;
+            if (growthTables == null || birthDay == NO_DAY || series.isEmpty()) return Double.NaN;
+            return WhoGrowth.zScore(growthTables, indicator, series.day(series.size() - 1) - birthDay, series.last());
+        }
+
+        // Hours from the last timed feeding until now, or -1 if no feeding had a time
+        long hoursSinceLastFeeding() {
+            if (lastFeedingDay == NO_DAY || lastFeedingMinute == NO_MINUTE) return -1;
+            return ChronoUnit.HOURS.between(
+                    LocalDate.ofEpochDay(lastFeedingDay).atTime(LocalTime.ofSecondOfDay(lastFeedingMinute * 60L)),
+                    LocalDate.now().atTime(LocalTime.now()));
+        }
+
+        // WHO scores of every weight (WhoGrowth.WEIGHT), height or head measurement
+        GrowthScores growthScores(int indicator) {
+            GrowthSeries series = indicator == WhoGrowth.WEIGHT ? growthWeights
+                    : indicator == WhoGrowth.LENGTH ? growthHeights : growthHeads;
+            return new GrowthScores(series, growthTables, indicator, birthDay);
+        }
+
+        @Override
+        public Rejections rejections() {
+            return rejections;
+        }
+
+        @Override
+        public void writeState(DataOutput out) throws IOException {
+            out.writeInt(todayDay);
+            days.writeState(out);
+            sleep.writeState(out);
+            totalTemperature.writeState(out);
+            out.writeInt(temperatureCount);
+            out.writeInt(milestoneCount);
+            out.writeInt(memoryCount);
+            out.writeInt(vaccineCount);
+            out.writeInt(doctorVisitCount);
+
+            feedingTypes.writeState(out);
+            diaperTypes.writeState(out);
+            moodCounts.writeState(out);
+            sleepQuality.writeState(out);
+            LogCheckpoint.writeStrings(out, milestones);
+            LogCheckpoint.writeStrings(out, memories);
+            LogCheckpoint.writeStrings(out, vaccines);
+            growthWeights.writeState(out);
+            growthHeights.writeState(out);
+            growthHeads.writeState(out);
+
+            out.writeInt(lastFeedingDay);
+            out.writeInt(lastFeedingMinute);
+            out.writeDouble(lastTemperature);
+            out.writeLong(lastRowMinute);
+            alerts.writeState(alertRules, out);
+            handlers.writeState(metrics, out);
+            rejections.writeState(out);
+        }
+
+        // The daily rollup ends today, so a checkpoint from another day (or birth date) can't
+        // be reused
+        @Override
+        public boolean readState(DataInput in) throws IOException {
+            if (in.readInt() != todayDay || !days.readState(in)) return false;
+            sleep.readState(in);
+            totalTemperature.readState(in);
+            temperatureCount = in.readInt();
+            milestoneCount = in.readInt();
+            memoryCount = in.readInt();
+            vaccineCount = in.readInt();
+            doctorVisitCount = in.readInt();
+
+            feedingTypes.readState(in);
+            diaperTypes.readState(in);
+            moodCounts.readState(in);
+            sleepQuality.readState(in);
+            LogCheckpoint.readStrings(in, milestones);
+            LogCheckpoint.readStrings(in, memories);
+            LogCheckpoint.readStrings(in, vaccines);
+            growthWeights.readState(in);
+            growthHeights.readState(in);
+            growthHeads.readState(in);
+
+            lastFeedingDay = in.readInt();
+            lastFeedingMinute = in.readInt();
+            lastTemperature = in.readDouble();
+            lastRowMinute = in.readLong();
+            if (!alerts.readState(alertRules, in)) return false;
+            if (!handlers.readState(in, metrics)) return false;
+            rejections.readState(in);
+            return true;
+        }
+    }
+
+    // Growth measurements in log order with the epoch day each was taken, in primitive arrays
+    static class GrowthSeries {
+        private int[] days = new int[16];
+        private double[] values = new double[16];
+        private int size;
+
+        void add(int day, double value) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            days[size] = day;
+            values[size] = value;
+            size++;
+        }
+
+        void addAll(GrowthSeries later) {
+            for (int i = 0; i < later.size; i++) add(later.days[i], later.values[i]);
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int day(int i) {
+            return days[i];
+        }
+
+        double value(int i) {
+            return values[i];
+        }
+
+        double last() {
+            return values[size - 1];
+        }
+
+        void writeState(DataOutput out) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(days[i]);
+                out.writeDouble(values[i]);
+            }
+        }
+
+        void readState(DataInput in) throws IOException {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) add(in.readInt(), in.readDouble());
+        }
+    }
+
+    // WHO Child Growth Standards (2006), birth to 24 months: weight-for-age, length-for-age and
+    // head-circumference-for-age as L, M, S triples per completed month. Ages between two months
+    // are interpolated linearly; older babies get no score.
+    static class WhoGrowth {
+        static final int WEIGHT = 0, LENGTH = 1, HEAD = 2;
+        static final int MONTHS = 24;
+        private static final double DAYS_PER_MONTH = 365.25 / 12;
+
+        // [indicator][month * 3 + 0, 1, 2] = L, M, S
+        private static final double[][] BOYS = {
+                {0.3487, 3.3464, 0.14602, 0.2297, 4.4709, 0.13395, 0.1970, 5.5675, 0.12385,
+                        0.1738, 6.3762, 0.11727, 0.1553, 7.0023, 0.11316, 0.1395, 7.5105, 0.11080,
+                        0.1257, 7.9340, 0.10958, 0.1134, 8.2970, 0.10902, 0.1021, 8.6151, 0.10882,
+                        0.0917, 8.9014, 0.10881, 0.0820, 9.1649, 0.10891, 0.0730, 9.4122, 0.10906,
+                        0.0644, 9.6479, 0.10925, 0.0563, 9.8749, 0.10949, 0.0487, 10.0953, 0.10976,
+                        0.0413, 10.3108, 0.11007, 0.0343, 10.5228, 0.11041, 0.0275, 10.7319, 0.11079,
+                        0.0211, 10.9385, 0.11119, 0.0148, 11.1430, 0.11164, 0.0087, 11.3462, 0.11211,
+                        0.0029, 11.5486, 0.11261, -0.0028, 11.7504, 0.11314, -0.0083, 11.9514, 0.11369,
+                        -0.0137, 12.1515, 0.11426},
+                {1, 49.8842, 0.03795, 1, 54.7244, 0.03557, 1, 58.4249, 0.03424, 1, 61.4292, 0.03328,
+                        1, 63.8860, 0.03257, 1, 65.9026, 0.03204, 1, 67.6236, 0.03165, 1, 69.1645, 0.03139,
+                        1, 70.5994, 0.03124, 1, 71.9687, 0.03117, 1, 73.2812, 0.03118, 1, 74.5388, 0.03125,
+                        1, 75.7488, 0.03137, 1, 76.9186, 0.03154, 1, 78.0497, 0.03174, 1, 79.1458, 0.03197,
+                        1, 80.2113, 0.03222, 1, 81.2487, 0.03250, 1, 82.2587, 0.03279, 1, 83.2418, 0.03310,
+                        1, 84.1996, 0.03342, 1, 85.1348, 0.03376, 1, 86.0477, 0.03410, 1, 86.9410, 0.03445,
+                        1, 87.8161, 0.03479},
+                {1, 34.4618, 0.03686, 1, 37.2759, 0.03133, 1, 39.1285, 0.02997, 1, 40.5135, 0.02918,
+                        1, 41.6317, 0.02868, 1, 42.5576, 0.02837, 1, 43.3306, 0.02817, 1, 43.9803, 0.02804,
+                        1, 44.5300, 0.02796, 1, 44.9998, 0.02792, 1, 45.4051, 0.02790, 1, 45.7573, 0.02789,
+                        1, 46.0661, 0.02789, 1, 46.3395, 0.02789, 1, 46.5844, 0.02791, 1, 46.8060, 0.02792,
+                        1, 47.0088, 0.02795, 1, 47.1962, 0.02797, 1, 47.3711, 0.02800, 1, 47.5357, 0.02803,
+                        1, 47.6919, 0.02806, 1, 47.8408, 0.02810, 1, 47.9833, 0.02813, 1, 48.1201, 0.02817,
+                        1, 48.2515, 0.02821}};
+        private static final double[][] GIRLS = {
+                {0.3809, 3.2322, 0.14171, 0.1714, 4.1873, 0.13724, 0.0962, 5.1282, 0.13000,
+                        0.0402, 5.8458, 0.12619, -0.0050, 6.4237, 0.12402, -0.0430, 6.8985, 0.12274,
+                        -0.0756, 7.2970, 0.12204, -0.1039, 7.6422, 0.12178, -0.1288, 7.9487, 0.12181,
+                        -0.1507, 8.2254, 0.12199, -0.1700, 8.4800, 0.12223, -0.1872, 8.7192, 0.12247,
+                        -0.2024, 8.9481, 0.12268, -0.2158, 9.1699, 0.12283, -0.2278, 9.3870, 0.12294,
+                        -0.2384, 9.6008, 0.12299, -0.2478, 9.8124, 0.12303, -0.2562, 10.0226, 0.12306,
+                        -0.2637, 10.2315, 0.12309, -0.2703, 10.4393, 0.12315, -0.2762, 10.6464, 0.12323,
+                        -0.2815, 10.8534, 0.12335, -0.2862, 11.0608, 0.12350, -0.2903, 11.2688, 0.12369,
+                        -0.2941, 11.4775, 0.12390},
+                {1, 49.1477, 0.03790, 1, 53.6872, 0.03640, 1, 57.0673, 0.03568, 1, 59.8029, 0.03520,
+                        1, 62.0899, 0.03486, 1, 64.0301, 0.03463, 1, 65.7311, 0.03448, 1, 67.2873, 0.03441,
+                        1, 68.7498, 0.03440, 1, 70.1435, 0.03444, 1, 71.4818, 0.03452, 1, 72.7710, 0.03464,
+                        1, 74.0150, 0.03479, 1, 75.2176, 0.03496, 1, 76.3817, 0.03514, 1, 77.5099, 0.03534,
+                        1, 78.6055, 0.03555, 1, 79.6710, 0.03576, 1, 80.7079, 0.03598, 1, 81.7182, 0.03620,
+                        1, 82.7036, 0.03643, 1, 83.6654, 0.03666, 1, 84.6040, 0.03688, 1, 85.5202, 0.03711,
+                        1, 86.4153, 0.03734},
+                {1, 33.8787, 0.03496, 1, 36.5463, 0.03210, 1, 38.2521, 0.03168, 1, 39.5328, 0.03140,
+                        1, 40.5817, 0.03119, 1, 41.4590, 0.03102, 1, 42.1995, 0.03087, 1, 42.8290, 0.03075,
+                        1, 43.3671, 0.03063, 1, 43.8300, 0.03053, 1, 44.2319, 0.03044, 1, 44.5844, 0.03035,
+                        1, 44.8965, 0.03027, 1, 45.1752, 0.03019, 1, 45.4265, 0.03012, 1, 45.6551, 0.03006,
+                        1, 45.8650, 0.03000, 1, 46.0598, 0.02994, 1, 46.2424, 0.02989, 1, 46.4152, 0.02985,
+                        1, 46.5801, 0.02981, 1, 46.7384, 0.02977, 1, 46.8913, 0.02973, 1, 47.0391, 0.02970,
+                        1, 47.1822, 0.02967}};
+
+        // The table for a profile's gender, or null if it isn't recognized
+        static double[][] tablesFor(String gender) {
+            if (gender == null) return null;
+            switch (gender.trim().toLowerCase(Locale.ROOT)) {
+                case "female": case "girl": case "f": return GIRLS;
+                case "male": case "boy": case "m": return BOYS;
+                default: return null;
+            }
+        }
+
+        // z-score of a measurement taken ageDays after birth, or NaN outside 0-24 months. Weight
+        // beyond +-3 SD uses WHO's restricted scale, measured in the SD2-SD3 distance.
+        static double zScore(double[][] tables, int indicator, int ageDays, double value) {
+            double months = ageDays / DAYS_PER_MONTH;
+            if (tables == null || months < 0 || months > MONTHS || !(value > 0)) return Double.NaN;
+            double[] lms = tables[indicator];
+            int month = Math.min((int) months, MONTHS - 1);
+            double f = months - month;
+            int i = month * 3;
+            double l = lms[i] + f * (lms[i + 3] - lms[i]);
+            double m = lms[i + 1] + f * (lms[i + 4] - lms[i + 1]);
+            double s = lms[i + 2] + f * (lms[i + 5] - lms[i + 2]);
+
+            double z = Math.abs(l) < 1e-9 ? Math.log(value / m) / s : (Math.pow(value / m, l) - 1) / (l * s);
+            if (indicator == WEIGHT && Math.abs(z) > 3) {
+                double sd3 = lmsValue(l, m, s, Math.signum(z) * 3), sd2 = lmsValue(l, m, s, Math.signum(z) * 2);
+                z = Math.signum(z) * 3 + (value - sd3) / Math.abs(sd3 - sd2);
+            }
+            return z;
+        }
+
+        // Percentile (0-100) of a z-score
+        static double percentile(double z) {
+            return 50 * erfc(-z / Math.sqrt(2));
+        }
+
+        private static double lmsValue(double l, double m, double s, double z) {
+            return m * Math.pow(1 + l * s * z, 1 / l);
+        }
+
+        // Complementary error function, fractional error below 1.2e-7 (Numerical Recipes' erfcc)
+        private static double erfc(double x) {
+            double t = 1 / (1 + 0.5 * Math.abs(x));
+            double r = t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                    + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                    + t * (-0.82215223 + t * 0.17087277)))))))));
+            return x >= 0 ? r : 2 - r;
+        }
+    }
+
+    // WHO scores of one growth series: the latest measurement in the log and the lowest and
+    // highest z over every measurement the tables cover
+    static class GrowthScores {
+        double latestZ = Double.NaN, lowestZ = Double.NaN, highestZ = Double.NaN;
+        int scored;
+
+        GrowthScores(GrowthSeries series, double[][] tables, int indicator, int birthDay) {
+            for (int i = 0; i < series.size(); i++) {
+                double z = WhoGrowth.zScore(tables, indicator, series.day(i) - birthDay, series.value(i));
+                if (i == series.size() - 1) latestZ = z;
+                if (Double.isNaN(z)) continue;
+                scored++;
+                if (!(z >= lowestZ)) lowestZ = z;
+                if (!(z <= highestZ)) highestZ = z;
+            }
+        }
+    }
+
+    // Column positions in mama_data_complete.csv, resolved by the header names used in
+    // MUM_PROFILE.CSV. A header that doesn't name a column keeps its original fixed position.
+    static class MamaColumns {
+        final int date, time, activity, weight, weightGain, doctor, testType, moodScale, dominantEmotion;
+        final int symptomType, pumpingAmount, totalSleepMinutes, waterLiters, exerciseType;
+        final int exerciseMinutes, milestoneDescription;
+
+        MamaColumns(CsvRow header) {
+            date = header.indexOf("date", 0);
+            time = header.indexOf("time", 1);
+            activity = header.indexOf("activity", 2);
+            weight = header.indexOf("weight_kg", 7);
+            weightGain = header.indexOf("weight_gain_kg", 8);
+            doctor = header.indexOf("doctor", 16);
+            testType = header.indexOf("test_type", 22);
+            moodScale = header.indexOf("mood_scale", 26);
+            dominantEmotion = header.indexOf("dominant_emotion", 27);
+            symptomType = header.indexOf("symptom_type", 31);
+            pumpingAmount = header.indexOf("pumping_amount_ml", 63);
+            totalSleepMinutes = header.indexOf("total_sleep_minutes", 70);
+            waterLiters = header.indexOf("water_liters", 92);
+            exerciseType = header.indexOf("exercise_type", 94);
+            exerciseMinutes = header.indexOf("exercise_duration_min", 95);
+            milestoneDescription = header.indexOf("mama_milestone_description", 142);
+        }
+    }
+
+    private static Function<CsvRow, Supplier<MamaStats>> mamaStatsFor(ScanOptions options) {
+        return header -> {
+            MamaColumns schema = new MamaColumns(header);
+            ActivityHandlers handlers = ActivityHandlers.load("mama", header, MamaStats.ACTIVITIES);
+            AlertRules<MamaStats> alertRules = new AlertRules<>(handlers, MAMA_ALERT_RULES);
+            return () -> new MamaStats(schema, handlers, alertRules, options);
+        };
+    }
+
+    // Scans mama's log. A missing or empty log is noted on out and gives null.
+    private static MamaStats analyzeMamaData(Path dir, MamaProfile profile, ScanOptions options,
+                                             PrintStream out) throws IOException {
+        Path dataPath = findLog(dir, MAMA_LOGS);
+        if (dataPath == null) {
+            out.println("⚠️ No mama data file found. Skipping mama analysis.");
+            return null;
+        }
+
+        MamaStats stats = scanLog(dataPath, options, out, mamaStatsFor(options));
+        if (stats == null) {
+            out.println("No mama data found in file.");
+            return null;
+        }
+
+        return stats;
+    }
+
+    private static void printMamaReport(MamaProfile profile, MamaStats stats, PrintStream out) {
+        // Display Results
+        if (stats.weightCount > 0) {
+            out.println("\n⚖️ WEIGHT TRACKING:");
+            out.printf("  Average weight gain: %.1f kg\n", stats.totalWeightGain.value() / stats.weightCount);
+            out.printf("  Weight range: %.1f kg - %.1f kg\n", stats.minWeight, stats.maxWeight);
+            out.printf("  Total gain: %.1f kg\n", stats.maxWeight - profile.prePregnancyWeight);
+
+            // BMI-based recommendation
+            double bmi = profile.prePregnancyWeight / Math.pow(profile.height / 100, 2);
+            double recommendedGain = bmi < 18.5 ? 18 : bmi < 25 ? 15 : bmi < 30 ? 11 : 9;
+            double currentGain = stats.maxWeight - profile.prePregnancyWeight;
+
+            if (currentGain > recommendedGain + 3) {
+                out.printf("  ⚠️ Weight gain above recommended (%.0f kg) for BMI\n", recommendedGain);
+            } else if (currentGain < recommendedGain - 3) {
+                out.printf("  ⚠️ Weight gain below recommended (%.0f kg) for BMI\n", recommendedGain);
+            }
+        }
+
+        out.println("\n👨‍⚕️ MEDICAL CARE:");
+        out.println("  Doctor visits: " + stats.doctorVisits);
+        out.println("  Tests completed: " + stats.testCount);
+        out.println("  Postpartum checkups: " + stats.postpartumCheckups);
+
+        if (!stats.doctorAppointments.isEmpty()) {
+            out.println("  Recent appointments:");
+            int show = Math.min(3, stats.doctorAppointments.size());
+            for (int i = 0; i < show; i++) {
+                out.println("    📅 " + stats.doctorAppointments.get(i));
+            }
+        }
+
+        if (stats.moodCount > 0) {
+            double avgMood = stats.totalMoodScore.value() / stats.moodCount;
+            out.println("\n💭 MENTAL HEALTH:");
+            out.printf("  Average mood score: %.1f/10\n", avgMood);
+
+            String status;
+            String emoji;
+            if (avgMood >= 7) {
+                status = "Good - doing well!";
+                emoji = "😊";
+            } else if (avgMood >= 5) {
+                status = "Fair - manageable";
+                emoji = "😐";
+            } else if (avgMood >= 3) {
+                status = "Challenging - needs support";
+                emoji = "😢";
+            } else {
+                status = "ALERT - Please seek professional help";
+                emoji = "🚨";
+            }
+            out.println("  Overall: " + emoji + " " + status);
+
+            if (!stats.moodTypes.isEmpty()) {
+                out.println("  Mood Distribution:");
+                stats.moodTypes.forEach((mood, count) ->
+                        out.println("    " + mood + ": " + count + " times"));
+            }
+        }
+
+        if (stats.sleepDays > 0) {
+            double avgSleepHours = (stats.totalSleepMinutes / 60.0) / stats.sleepDays;
+            out.println("\n😴 SLEEP TRACKING:");
+            out.printf("  Average per night: %.1f hours\n", avgSleepHours);
+            out.printf("  Total nights tracked: %d\n", stats.sleepDays);
+
+            if (avgSleepHours < 7) {
+                out.printf("  ⚠️ Below recommended 7-8 hours - try to rest more (%.0f hours debt)\n",
+                        (7 - avgSleepHours) * stats.sleepDays);
+            } else {
+                out.println("  ✅ Meeting sleep recommendations!");
+            }
+        }
+
+        if (stats.breastfeedingCount > 0 || stats.pumpingCount > 0) {
+            out.println("\n🍼 BREASTFEEDING & PUMPING:");
+            out.println("  Breastfeeding sessions: " + stats.breastfeedingCount);
+            out.println("  Pumping sessions: " + stats.pumpingCount);
+
+            if (stats.pumpingCount > 0) {
+                out.printf("  Average pumping: %.0f ml per session\n",
+                        stats.totalPumpingAmount.value() / stats.pumpingCount);
+                out.printf("  Total milk produced: %.0f ml\n", stats.totalPumpingAmount.value());
+
+                double avgDaily = stats.totalPumpingAmount.value() / Math.max(1, stats.pumpingCount / 4.0);
+                if (avgDaily < 500) {
+                    out.println("  ⚠️ Consider: milk production may be low");
+                }
+            }
+        }
+
+        if (stats.exerciseCount > 0) {
+            out.println("\n🚶‍♀️ PHYSICAL ACTIVITY:");
+            out.println("  Total sessions: " + stats.exerciseCount);
+            out.println("  Total minutes: " + stats.totalExerciseMinutes);
+            out.printf("  Average per session: %d minutes\n",
+                    stats.totalExerciseMinutes / stats.exerciseCount);
+            out.printf("  Weekly average: %.0f minutes\n",
+                    (stats.totalExerciseMinutes / (double)stats.exerciseCount) * 7);
+
+            if (!stats.exerciseTypes.isEmpty()) {
+                out.println("  Exercise Types:");
+                stats.exerciseTypes.forEach((type, count) ->
+                        out.println("    " + type + ": " + count + " times"));
+            }
+
+            double weeklyMinutes = (stats.totalExerciseMinutes / (double)stats.exerciseCount) * 7;
+            if (weeklyMinutes >= 150) {
+                out.println("  ✅ Meeting WHO recommendation of 150 min/week!");
+            } else {
+                out.printf("  💪 Goal: %.0f more minutes to reach 150/week\n",
+                        150 - weeklyMinutes);
+            }
+        }
+
+        if (stats.waterDays > 0) {
+            double avgWater = stats.totalWaterLiters.value() / stats.waterDays;
+            out.println("\n💧 HYDRATION:");
+            out.printf("  Average water intake: %.1f liters/day\n", avgWater);
+
+            if (avgWater < 2.0) {
+                out.println("  ⚠️ Below recommended 2-3 liters during pregnancy/breastfeeding");
+            } else if (avgWater >= 2.5) {
+                out.println("  ✅ Excellent hydration!");
+            }
+        }
+
+        if (stats.fetalMovementsCount > 0) {
+            out.println("\n👶 FETAL MOVEMENTS:");
+            out.println("  Tracking sessions: " + stats.fetalMovementsCount);
+            out.println("  ✅ Monitoring baby's activity regularly");
+        }
+
+        if (stats.contractionCount > 0) {
+            out.println("\n🤰 CONTRACTIONS:");
+            out.println("  Total recorded: " + stats.contractionCount);
+        }
+
+        if (stats.kegelSessions > 0) {
+            out.println("\n🧘‍♀️ PELVIC FLOOR EXERCISES:");
+            out.println("  Kegel sessions: " + stats.kegelSessions);
+            out.println("  ✅ Great work on pelvic floor recovery!");
+        }
+
+        if (!stats.symptomCounts.isEmpty()) {
+            out.println("\n⚠️ SYMPTOMS TRACKER:");
+            stats.symptomCounts.toMap().entrySet().stream()
+                    .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
+                    .forEach(entry ->
+                            out.println("  " + entry.getKey() + ": " + entry.getValue() + " times"));
+        }
+
+        if (stats.mamaMilestones > 0) {
+            out.println("\n🎉 MAMA MILESTONES (" + stats.mamaMilestones + " achievements):");
+            stats.milestones.forEach(m -> out.println("  ✨ " + m));
+            out.println("\n  💪 You're doing an amazing job, mama!");
+        }
+
+        printMetrics(stats.handlers, stats.metrics, out);
+        printAlerts(mamaAlerts(stats), out);
+        printAlertLog(stats.alertRules, stats.alerts, out);
+        printRejections(stats.rejections, out);
+    }
+
+    // Everything analyzeMamaData counts. A log can be split into chunks, each counted into
+    // its own instance, and the results merged back in file order.
+    static class MamaStats implements LogStats<MamaStats> {
+        // Activity ids for the switch in accept, in the order of ACTIVITIES
+        static final int WEIGHT = 0, PREGNANCY_WEEK = 1, DOCTOR_APPOINTMENT = 2, TEST = 3, MOOD = 4,
+                MAMA_SLEEP = 5, BREASTFEEDING = 6, PUMPING = 7, EXERCISE = 8, FETAL_MOVEMENTS = 9,
+                CONTRACTIONS = 10, NUTRITION = 11, SYMPTOM = 12, POSTPARTUM_CHECKUP = 13, PELVIC_FLOOR = 14,
+                MAMA_MILESTONE = 15;
+        static final String[] ACTIVITIES = {"weight", "pregnancy_week", "doctor_appointment", "test", "mood",
+                "mama_sleep", "breastfeeding", "pumping", "exercise", "fetal_movements", "contractions",
+                "nutrition", "symptom", "postpartum_checkup", "pelvic_floor", "mama_milestone"};
+
+        final MamaColumns schema;
+        final ActivityHandlers handlers;
+        final Rejections rejections;
+
+        // Counters
+        int weightCount = 0;
+        final ExactSum totalWeightGain = new ExactSum();
+        double maxWeight = 0, minWeight = 1000;
+        int doctorVisits = 0, testCount = 0;
+        final ExactSum totalMoodScore = new ExactSum();
+        int moodCount = 0;
+        int totalSleepMinutes = 0, sleepDays = 0;
+        int breastfeedingCount = 0, pumpingCount = 0;
+        final ExactSum totalPumpingAmount = new ExactSum();
+        int exerciseCount = 0, totalExerciseMinutes = 0;
+        int fetalMovementsCount = 0;
+        int mamaMilestones = 0;
+        int contractionCount = 0;
+        final ExactSum totalWaterLiters = new ExactSum();
+        int waterDays = 0;
+        int postpartumCheckups = 0;
+        int kegelSessions = 0;
+
+        CategoryCounts symptomCounts = new CategoryCounts();
+        CategoryCounts exerciseTypes = new CategoryCounts();
+        CategoryCounts moodTypes = new CategoryCounts();
+        List<String> milestones = new ArrayList<>();
+        List<String> doctorAppointments = new ArrayList<>();
+        List<String> tests = new ArrayList<>();
+
+        // One accumulator per registered metric
+        Object[] metrics;
+
+        final AlertRules<MamaStats> alertRules;
+        final AlertLog alerts;
+        // Log time of the latest dated row a rule is checked after
+        long lastRowMinute = AlertLog.NO_TIME;
+
+        MamaStats(MamaColumns schema, ActivityHandlers handlers, AlertRules<MamaStats> alertRules,
+                  ScanOptions options) {
+            this.schema = schema;
+            this.handlers = handlers;
+            this.alertRules = alertRules;
+            this.alerts = new AlertLog(alertRules.rules.size());
+            this.metrics = handlers.newAccumulators();
+            this.rejections = new Rejections(options);
+        }
+
+        @Override
+        public void accept(EventRow cols) {
+            rejections.nextLine();
+            if (!cols.has(schema.date) || !cols.has(schema.activity)) return;
+
+            int id = handlers.activityId(cols, schema.activity);
+            if (id < 0) return;
+            String activity = handlers.activityName(id);
+
+            switch (id) {
+                case WEIGHT:
+                case PREGNANCY_WEEK:
+                    if (cols.has(schema.weightGain) && !cols.isEmpty(schema.weightGain)) {
+                        if (!cols.isDouble(schema.weightGain)) {
+                            rejections.reject(cols, activity, "invalid weight gain");
+                            return;
+                        }
+                        double gain = cols.parseDouble(schema.weightGain);
+                        totalWeightGain.add(gain);
+                        weightCount++;
+                    }
+                    if (cols.has(schema.weight) && !cols.isEmpty(schema.weight)) {
+                        if (!cols.isDouble(schema.weight)) {
+                            rejections.reject(cols, activity, "invalid weight");
+                            return;
+                        }
+                        double weight = cols.parseDouble(schema.weight);
+                        maxWeight = Math.max(maxWeight, weight);
+                        if (weight > 0) minWeight = Math.min(minWeight, weight);
+                    }
+                    break;
+
+                case DOCTOR_APPOINTMENT:
+                    doctorVisits++;
+                    if (cols.has(schema.doctor) && !cols.isEmpty(schema.doctor)) {
+                        doctorAppointments.add(cols.get(schema.date) + ": " + cols.get(schema.doctor));
+                    }
+                    break;
+
+                case TEST:
+                    testCount++;
+                    if (cols.has(schema.testType) && !cols.isEmpty(schema.testType)) {
+                        tests.add(cols.get(schema.date) + ": " + cols.get(schema.testType));
+                    }
+                    break;
+
+                case MOOD:
+                    if (cols.has(schema.moodScale) && !cols.isEmpty(schema.moodScale)) {
+                        if (!cols.isDouble(schema.moodScale)) {
+                            rejections.reject(cols, activity, "invalid mood scale");
+                            return;
+                        }
+                        double score = cols.parseDouble(schema.moodScale);
+                        totalMoodScore.add(score);
+                        moodCount++;
+                    }
+                    if (cols.has(schema.dominantEmotion) && !cols.isEmpty(schema.dominantEmotion)) {
+                        moodTypes.add(cols, schema.dominantEmotion);
+                    }
+                    break;
+
+                case MAMA_SLEEP:
+                    if (cols.has(schema.totalSleepMinutes) && !cols.isEmpty(schema.totalSleepMinutes)) {
+                        if (!cols.isInt(schema.totalSleepMinutes)) {
+                            rejections.reject(cols, activity, "invalid sleep minutes");
+                            return;
+                        }
+                        int minutes = cols.parseInt(schema.totalSleepMinutes);
+                        totalSleepMinutes += minutes;
+                        sleepDays++;
+                    }
+                    break;
+
+                case BREASTFEEDING:
+                    breastfeedingCount++;
+                    break;
+
+                case PUMPING:
+                    pumpingCount++;
+                    if (cols.has(schema.pumpingAmount) && !cols.isEmpty(schema.pumpingAmount, "ml")) {
+                        if (!cols.isDouble(schema.pumpingAmount, "ml")) {
+                            rejections.reject(cols, activity, "invalid pumping amount");
+                            return;
+                        }
+                        totalPumpingAmount.add(cols.parseDouble(schema.pumpingAmount, "ml"));
+                    }
+                    break;
+
+                case EXERCISE:
+                    exerciseCount++;
+                    if (cols.has(schema.exerciseMinutes) && !cols.isEmpty(schema.exerciseMinutes)) {
+                        if (!cols.isInt(schema.exerciseMinutes)) {
+                            rejections.reject(cols, activity, "invalid exercise minutes");
+                            return;
+                        }
+                        int minutes = cols.parseInt(schema.exerciseMinutes);
+                        totalExerciseMinutes += minutes;
+                    }
+                    if (cols.has(schema.exerciseType) && !cols.isEmpty(schema.exerciseType)) {
+                        exerciseTypes.add(cols, schema.exerciseType);
+                    }
+                    break;
+
+                case FETAL_MOVEMENTS:
+                    fetalMovementsCount++;
+                    break;
+
+                case CONTRACTIONS:
+                    contractionCount++;
+                    break;
+
+                case NUTRITION:
+                    if (cols.has(schema.waterLiters) && !cols.isEmpty(schema.waterLiters)) {
+                        if (!cols.isDouble(schema.waterLiters)) {
+                            rejections.reject(cols, activity, "invalid water liters");
+                            return;
+                        }
+                        double liters = cols.parseDouble(schema.waterLiters);
+                        totalWaterLiters.add(liters);
+                        waterDays++;
+                    }
+                    break;
+
+                case SYMPTOM:
+                    if (cols.has(schema.symptomType) && !cols.isEmpty(schema.symptomType)) {
+                        symptomCounts.add(cols, schema.symptomType);
+                    }
+                    break;
+
+                case POSTPARTUM_CHECKUP:
+                    postpartumCheckups++;
+                    break;
+
+                case PELVIC_FLOOR:
+                    kegelSessions++;
+                    break;
+
+                case MAMA_MILESTONE:
+                    mamaMilestones++;
+                    if (cols.has(schema.milestoneDescription) && !cols.isEmpty(schema.milestoneDescription)) {
+                        milestones.add(cols.get(schema.date) + ": " + cols.get(schema.milestoneDescription));
+                    }
+                    break;
+            }
+            // Only the metrics and alerts need the date; the built-in mama counters never read it.
+            // Every mama rule names its activities, so most rows skip the date and time parsing.
+            int[] rules = alertRules.forActivity(id);
+            if (rules.length == 0 && !handlers.hasHandlers(id)) return;
+            if (!cols.isDate(schema.date)) return;
+            int eventDay = cols.epochDay(schema.date);
+            if (handlers.hasHandlers(id)) handlers.accept(id, metrics, cols, eventDay);
+            if (rules.length == 0) return;
+
+            boolean timed = cols.has(schema.time) && cols.isTime(schema.time);
+            lastRowMinute = eventDay * 1440L + (timed ? cols.minuteOfDay(schema.time) : 0);
+            alerts.check(alertRules, rules, this, lastRowMinute);
+        }
+
+        @Override
+        public MamaStats merge(MamaStats later) {
+            weightCount += later.weightCount;
+            totalWeightGain.add(later.totalWeightGain);
+            maxWeight = Math.max(maxWeight, later.maxWeight);
+            minWeight = Math.min(minWeight, later.minWeight);
+            doctorVisits += later.doctorVisits;
+            testCount += later.testCount;
+            totalMoodScore.add(later.totalMoodScore);
+            moodCount += later.moodCount;
+            totalSleepMinutes += later.totalSleepMinutes;
+            sleepDays += later.sleepDays;
+            breastfeedingCount += later.breastfeedingCount;
+            pumpingCount += later.pumpingCount;
+            totalPumpingAmount.add(later.totalPumpingAmount);
+            exerciseCount += later.exerciseCount;
+            totalExerciseMinutes += later.totalExerciseMinutes;
+            fetalMovementsCount += later.fetalMovementsCount;
+            mamaMilestones += later.mamaMilestones;
+            contractionCount += later.contractionCount;
+            totalWaterLiters.add(later.totalWaterLiters);
+            waterDays += later.waterDays;
+            postpartumCheckups += later.postpartumCheckups;
+            kegelSessions += later.kegelSessions;
+
+            symptomCounts.merge(later.symptomCounts);
+            exerciseTypes.merge(later.exerciseTypes);
+            moodTypes.merge(later.moodTypes);
+            milestones.addAll(later.milestones);
+            doctorAppointments.addAll(later.doctorAppointments);
+            tests.addAll(later.tests);
+            handlers.merge(metrics, later.metrics);
+            rejections.merge(later.rejections);
+
+            // As in BabyStats, the later chunk's alerts come from scanChunks instead
+            if (later.lastRowMinute != AlertLog.NO_TIME) lastRowMinute = later.lastRowMinute;
+            return this;
+        }
+
+        @Override
+        public void defer() {
+            alerts.defer();
+            handlers.defer(metrics);
+        }
+
+        @Override
+        public void replay(MamaStats later) {
+            alerts.replay(alertRules, later.alerts);
+            handlers.replay(metrics, later.metrics);
+        }
+
+        @Override
+        public Rejections rejections() {
+            return rejections;
+        }
+
+        @Override
+        public void writeState(DataOutput out) throws IOException {
+            out.writeInt(weightCount);
+            totalWeightGain.writeState(out);
+            out.writeDouble(maxWeight);
+            out.writeDouble(minWeight);
+            out.writeInt(doctorVisits);
+            out.writeInt(testCount);
+            totalMoodScore.writeState(out);
+            out.writeInt(moodCount);
+            out.writeInt(totalSleepMinutes);
+            out.writeInt(sleepDays);
+            out.writeInt(breastfeedingCount);
+            out.writeInt(pumpingCount);
+            totalPumpingAmount.writeState(out);
+            out.writeInt(exerciseCount);
+            out.writeInt(totalExerciseMinutes);
+            out.writeInt(fetalMovementsCount);
+            out.writeInt(mamaMilestones);
+            out.writeInt(contractionCount);
+            totalWaterLiters.writeState(out);
+            out.writeInt(waterDays);
+            out.writeInt(postpartumCheckups);
+            out.writeInt(kegelSessions);
+
+            symptomCounts.writeState(out);
+            exerciseTypes.writeState(out);
+            moodTypes.writeState(out);
+            LogCheckpoint.writeStrings(out, milestones);
+            LogCheckpoint.writeStrings(out, doctorAppointments);
+            LogCheckpoint.writeStrings(out, tests);
+            out.writeLong(lastRowMinute);
+            alerts.writeState(alertRules, out);
+            handlers.writeState(metrics, out);
+            rejections.writeState(out);
+        }
+
+        @Override
+        public boolean readState(DataInput in) throws IOException {
+            weightCount = in.readInt();
+            totalWeightGain.readState(in);
+            maxWeight = in.readDouble();
+            minWeight = in.readDouble();
+            doctorVisits = in.readInt();
+            testCount = in.readInt();
+            totalMoodScore.readState(in);
+            moodCount = in.readInt();
+            totalSleepMinutes = in.readInt();
+            sleepDays = in.readInt();
+            breastfeedingCount = in.readInt();
+            pumpingCount = in.readInt();
+            totalPumpingAmount.readState(in);
+            exerciseCount = in.readInt();
+            totalExerciseMinutes = in.readInt();
+            fetalMovementsCount = in.readInt();
+            mamaMilestones = in.readInt();
+            contractionCount = in.readInt();
+            totalWaterLiters.readState(in);
+            waterDays = in.readInt();
+            postpartumCheckups = in.readInt();
+            kegelSessions = in.readInt();
+
+            symptomCounts.readState(in);
+            exerciseTypes.readState(in);
+            moodTypes.readState(in);
+            LogCheckpoint.readStrings(in, milestones);
+            LogCheckpoint.readStrings(in, doctorAppointments);
+            LogCheckpoint.readStrings(in, tests);
+            lastRowMinute = in.readLong();
+            if (!alerts.readState(alertRules, in)) return false;
+            if (!handlers.readState(in, metrics)) return false;
+            rejections.readState(in);
+            return true;
+        }
+    }
+
+
+    // Joins the two logs by time. Returns null, with a note on out, if either log is missing.
+    private static CrossStats analyzeCorrelation(Path dir, ScanOptions options, PrintStream out) throws IOException {
+        Path babyLog = findLog(dir, BABY_LOGS), mamaLog = findLog(dir, MAMA_LOGS);
+        if (babyLog == null || mamaLog == null) {
+            out.println("⚠️ Correlation needs both the baby and mama logs. Skipping it.");
+            return null;
+        }
+        try (SortedLog baby = SortedLog.of(babyLog, options.sort, out);
+             SortedLog mama = SortedLog.of(mamaLog, options.sort, out)) {
+            return correlate(baby.path, mama.path);
+        }
+    }
+
+    // Streams both logs once, always taking the earlier of the two next events, so the join is
+    // one linear pass. Memory is the two reorder buffers and the two days being joined,
+    // however long the logs are.
+    static CrossStats correlate(Path babyLog, Path mamaLog) throws IOException {
+        CrossStats stats = new CrossStats();
+        try (OrderedEvents baby = new OrderedEvents(babyLog, Main::babyEventsFor);
+             OrderedEvents mama = new OrderedEvents(mamaLog, Main::mamaEventsFor)) {
+            TimedEvent b = baby.next(), m = mama.next();
+            while (b != null || m != null) {
+                if (m == null || (b != null && b.minute <= m.minute)) {
+                    stats.accept(b);
+                    b = baby.next();
+                } else {
+                    stats.accept(m);
+                    m = mama.next();
+                }
+            }
+            stats.finish(baby.late + mama.late);
+        }
+        return stats;
+    }
+
+    private static final ActivityIds BABY_JOINED = new ActivityIds(List.of("feeding", "sleep"));
+    private static final ActivityIds MAMA_JOINED = new ActivityIds(List.of("mama_sleep", "pumping"));
+    private static final ActivityIds BREAST = new ActivityIds(List.of("breast"));
+
+    // Baby feedings and sleep ends (wake-ups) with a date and time
+    private static Function<EventRow, TimedEvent> babyEventsFor(CsvRow header) {
+        BabyColumns schema = new BabyColumns(header);
+        return cols -> {
+            if (!cols.has(schema.activity) || !cols.has(schema.time)) return null;
+            int id = BABY_JOINED.idOf(cols, schema.activity);
+            if (id < 0 || !cols.isDate(schema.date) || !cols.isTime(schema.time)) return null;
+            long minute = cols.epochDay(schema.date) * 1440L + cols.minuteOfDay(schema.time);
+            if (id == 0) {
+                boolean breast = cols.has(schema.type) && BREAST.idOf(cols, schema.type) == 0;
+                return new TimedEvent(minute, breast ? TimedEvent.BREAST_FEEDING : TimedEvent.FEEDING, 0, 0);
+            }
+            if (!cols.has(schema.subtype) || !cols.equals(schema.subtype, "end")) return null;
+            return new TimedEvent(minute, TimedEvent.WAKE_UP, 0, 0);
+        };
+    }
+
+    // Mama's sleep (with sleep_debt if logged) and pumping rows with a date and time
+    private static Function<EventRow, TimedEvent> mamaEventsFor(CsvRow header) {
+        MamaColumns schema = new MamaColumns(header);
+        int sleepDebt = header.indexOf("sleep_debt", -1);
+        return cols -> {
+            if (!cols.has(schema.activity) || !cols.has(schema.time)) return null;
+            int id = MAMA_JOINED.idOf(cols, schema.activity);
+            if (id < 0 || !cols.isDate(schema.date) || !cols.isTime(schema.time)) return null;
+            long minute = cols.epochDay(schema.date) * 1440L + cols.minuteOfDay(schema.time);
+            if (id == 0) {
+                if (!cols.has(schema.totalSleepMinutes) || !cols.isDouble(schema.totalSleepMinutes)) return null;
+                double debt = sleepDebt >= 0 && cols.has(sleepDebt) && cols.isDouble(sleepDebt)
+                        ? cols.parseDouble(sleepDebt) : Double.NaN;
+                return new TimedEvent(minute, TimedEvent.MAMA_SLEEP, cols.parseDouble(schema.totalSleepMinutes), debt);
+            }
+            if (!cols.has(schema.pumpingAmount) || !cols.isDouble(schema.pumpingAmount, "ml")) return null;
+            return new TimedEvent(minute, TimedEvent.PUMPING, cols.parseDouble(schema.pumpingAmount, "ml"), 0);
+        };
+    }
+
+    // A row the correlation reads, reduced to its log time (minutes since 1970-01-01), kind and
+    // amounts: minutes of sleep and sleep_debt for MAMA_SLEEP, ml for PUMPING
+    static class TimedEvent {
+        static final int FEEDING = 0, BREAST_FEEDING = 1, WAKE_UP = 2, MAMA_SLEEP = 3, PUMPING = 4;
+
+        final long minute;
+        final int kind;
+        final double value;
+        final double debt;
+
+        TimedEvent(long minute, int kind, double value, double debt) {
+            this.minute = minute;
+            this.kind = kind;
+            this.value = value;
+            this.debt = debt;
+        }
+    }
+
+    // One log's events in time order. Rows go through a buffer of up to REORDER_ROWS events
+    // that hands out the earliest first, so a row that far out of place still comes out in
+    // order. A row earlier than one already handed out is counted in late and skipped.
+    static class OrderedEvents implements Closeable {
+        static final int REORDER_ROWS = 1 << 16;
+
+        private final CsvReader reader;
+        private final Function<EventRow, TimedEvent> events;
+        private final PriorityQueue<TimedEvent> buffer = new PriorityQueue<>(Comparator.comparingLong(e -> e.minute));
+        private long released = Long.MIN_VALUE;
+        long late;
+
+        OrderedEvents(Path log, Function<CsvRow, Function<EventRow, TimedEvent>> fromHeader) throws IOException {
+            reader = new CsvReader(Files.newInputStream(log));
+            events = reader.next() ? fromHeader.apply(reader.row()) : cols -> null;
+        }
+
+        // The next event, or null at the end of the log
+        TimedEvent next() throws IOException {
+            while (buffer.size() < REORDER_ROWS && reader.next()) {
+                TimedEvent event = events.apply(reader.row());
+                if (event == null) continue;
+                if (event.minute < released) late++;
+                else buffer.add(event);
+            }
+            TimedEvent next = buffer.poll();
+            if (next != null) released = next.minute;
+            return next;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // Pearson correlation of (x, y) pairs, from running sums
+    static class Correlation {
+        long n;
+        private double sumX, sumY, sumXX, sumYY, sumXY;
+
+        void add(double x, double y) {
+            n++;
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumYY += y * y;
+            sumXY += x * y;
+        }
+
+        // Between -1 and 1, or NaN with fewer than 3 pairs or if either side never varies
+        double r() {
+            if (n < 3) return Double.NaN;
+            double cov = n * sumXY - sumX * sumY;
+            double varX = n * sumXX - sumX * sumX, varY = n * sumYY - sumY * sumY;
+            if (varX <= 0 || varY <= 0) return Double.NaN;
+            return Math.max(-1, Math.min(1, cov / Math.sqrt(varX * varY)));
+        }
+    }
+
+    // Cross-log statistics, fed events in time order. Events are gathered per date: the night
+    // of a date is from NIGHT_START the evening before to NIGHT_END, mama's sleep row on a
+    // date is for the night that ended that morning, and breast feedings and pumping count on
+    // their own date. An event on a date closes every earlier date, so at most today and
+    // tomorrow (which tonight's feedings and wake-ups already count for) are open.
+    static class CrossStats {
+        static final String[] WAKE_UP_BUCKETS = {"0", "1", "2", "3+"};
+        // Nights with this many wake-ups or more count as broken for the sleep debt
+        static final int BROKEN_NIGHT = 2;
+
+        // Nights where both logs have rows: wake-ups and night feedings against mama's sleep
+        final Correlation wakeUpsVsSleep = new Correlation();
+        final Correlation feedingsVsSleep = new Correlation();
+        private final long[] nightsByWakeUps = new long[WAKE_UP_BUCKETS.length];
+        private final double[] sleepByWakeUps = new double[WAKE_UP_BUCKETS.length];
+        private final long[] debtNights = new long[2];
+        private final double[] debtMinutes = new double[2];
+        // Days with pumping and baby rows: breast feedings against ml pumped
+        final Correlation breastVsPumping = new Correlation();
+        // Rows skipped for being further out of order than the reorder buffers hold
+        long lateRows;
+
+        private final ArrayDeque<Day> open = new ArrayDeque<>();
+
+        private static class Day {
+            final int day;
+            int babyEvents, wakeUps, nightFeedings, breastFeedings, pumpingSessions;
+            double mamaSleep = Double.NaN, sleepDebt = Double.NaN, pumpingMl;
+
+            Day(int day) {
+                this.day = day;
+            }
+        }
+
+        void accept(TimedEvent event) {
+            int date = (int) Math.floorDiv(event.minute, 1440);
+            while (!open.isEmpty() && open.peekFirst().day < date) close(open.pollFirst());
+
+            int minuteOfDay = Math.floorMod(event.minute, 1440);
+            boolean night = minuteOfDay >= NIGHT_START || minuteOfDay < NIGHT_END;
+            Day today = day(date);
+            switch (event.kind) {
+                case TimedEvent.FEEDING:
+                case TimedEvent.BREAST_FEEDING:
+                case TimedEvent.WAKE_UP:
+                    today.babyEvents++;
+                    if (event.kind == TimedEvent.BREAST_FEEDING) today.breastFeedings++;
+                    if (night) {
+                        Day nightOf = minuteOfDay >= NIGHT_START ? day(date + 1) : today;
+                        if (event.kind == TimedEvent.WAKE_UP) nightOf.wakeUps++;
+                        else nightOf.nightFeedings++;
+                    }
+                    break;
+                case TimedEvent.MAMA_SLEEP:
+                    // A second sleep row on a date is a nap; the longest one is the night
+                    if (!(today.mamaSleep >= event.value)) {
+                        today.mamaSleep = event.value;
+                        today.sleepDebt = event.debt;
+                    }
+                    break;
+                case TimedEvent.PUMPING:
+                    today.pumpingSessions++;
+                    today.pumpingMl += event.value;
+                    break;
+            }
+        }
+
+        private Day day(int date) {
+            for (Day day : open) if (day.day == date) return day;
+            Day day = new Day(date);
+            open.addLast(day);
+            return day;
+        }
+
+        // The night counts if the baby log has rows that day or in its night window, which
+        // starts the evening before; breast feedings against pumping need rows on the day itself
+        private void close(Day day) {
+            boolean babyNight = day.babyEvents > 0 || day.wakeUps > 0 || day.nightFeedings > 0;
+            if (babyNight && !Double.isNaN(day.mamaSleep)) {
+                wakeUpsVsSleep.add(day.wakeUps, day.mamaSleep);
+                feedingsVsSleep.add(day.nightFeedings, day.mamaSleep);
+                int bucket = Math.min(day.wakeUps, WAKE_UP_BUCKETS.length - 1);
+                nightsByWakeUps[bucket]++;
+                sleepByWakeUps[bucket] += day.mamaSleep;
+                if (!Double.isNaN(day.sleepDebt)) {
+                    int broken = day.wakeUps >= BROKEN_NIGHT ? 1 : 0;
+                    debtNights[broken]++;
+                    debtMinutes[broken] += day.sleepDebt;
+                }
+            }
+            if (day.babyEvents > 0 && day.pumpingSessions > 0) breastVsPumping.add(day.breastFeedings, day.pumpingMl);
+        }
+
+        void finish(long lateRows) {
+            while (!open.isEmpty()) close(open.pollFirst());
+            this.lateRows = lateRows;
+        }
+
+        long nights(int bucket) {
+            return nightsByWakeUps[bucket];
+        }
+
+        // NaN for a bucket without nights
+        double averageSleepHours(int bucket) {
+            return nightsByWakeUps[bucket] == 0 ? Double.NaN : sleepByWakeUps[bucket] / 60 / nightsByWakeUps[bucket];
+        }
+
+        double averageDebtHours(boolean broken) {
+            int i = broken ? 1 : 0;
+            return debtNights[i] == 0 ? Double.NaN : debtMinutes[i] / 60 / debtNights[i];
+        }
+    }
+
+    private static void printCorrelation(CrossStats stats, PrintStream out) {
+        out.println("\n🌙 NIGHTS (baby wake-ups vs mama's sleep):");
+        out.println("  Nights in both logs: " + stats.wakeUpsVsSleep.n);
+        for (int i = 0; i < CrossStats.WAKE_UP_BUCKETS.length; i++) {
+            if (stats.nights(i) == 0) continue;
+            out.printf("  %s wake-ups: mama slept %.1f hours on average (%d nights)\n",
+                    CrossStats.WAKE_UP_BUCKETS[i], stats.averageSleepHours(i), stats.nights(i));
+        }
+        printCorrelation("Wake-ups vs mama's sleep", stats.wakeUpsVsSleep, out);
+        printCorrelation("Night feedings vs mama's sleep", stats.feedingsVsSleep, out);
+        if (!Double.isNaN(stats.averageDebtHours(false)) || !Double.isNaN(stats.averageDebtHours(true))) {
+            out.printf("  Sleep debt: %.1f hours after calmer nights, %.1f hours after %d+ wake-ups\n",
+                    stats.averageDebtHours(false), stats.averageDebtHours(true), CrossStats.BROKEN_NIGHT);
+        }
+
+        out.println("\n🍼 BREASTFEEDING VS PUMPING:");
+        out.println("  Days with pumping: " + stats.breastVsPumping.n);
+        printCorrelation("Breast feedings vs ml pumped", stats.breastVsPumping, out);
+
+        if (stats.lateRows > 0) {
+            out.println("\n  ⚠️ " + stats.lateRows + " rows were too far out of time order to join and were skipped");
+        }
+    }
+
+    private static void printCorrelation(String label, Correlation correlation, PrintStream out) {
+        double r = correlation.r();
+        if (Double.isNaN(r)) return;
+        String strength = Math.abs(r) >= 0.5 ? "strong" : Math.abs(r) >= 0.3 ? "moderate" : "weak";
+        out.printf("  %s: r = %.2f (%s)\n", label, r, strength);
+    }
+
+    // Accumulator for one event log. merge() must be associative: chunks are merged in
+    // file order, with `later` always holding the rows that come after this one's.
+    interface LogStats<S extends LogStats<S>> {
+        void accept(EventRow cols);
+
+        // Adds a later chunk's counts. Its alerts, and whatever of its metrics depends on the
+        // rows before it, are left out, see scanChunks.
+        S merge(S later);
+
+        // Prepares a copy of the state before a chunk for scanChunks' second pass: checking the
+        // alert rules only records where they turn true (AlertLog.defer), and metrics keep only
+        // what they need of the earlier rows (ActivityHandler.deferred)
+        void defer();
+
+        // Adds what merge() left out, from a deferred later chunk (AlertLog.replay,
+        // ActivityHandler.replay)
+        void replay(S later);
+
+        // Rows accept() couldn't use
+        Rejections rejections();
+
+        // Saves everything counted so far for LogCheckpoint
+        void writeState(DataOutput out) throws IOException;
+
+        // Restores a saved state into an empty accumulator. Returns false if the saved
+        // state can't be reused for this run.
+        boolean readState(DataInput in) throws IOException;
+    }
+
+    // A sum of decimal values kept as a whole number of 1/10000ths. A double sum depends on the
+    // order of the additions, so the chunks --parallel merges would differ from a single pass
+    // in the last digits; a long sum comes out the same in any order.
+    static final class ExactSum {
+        static final double SCALE = 10_000;
+
+        private long units;
+
+        // value rounded to 4 decimals, in units
+        static long units(double value) {
+            return Math.round(value * SCALE);
+        }
+
+        void add(double value) {
+            units += units(value);
+        }
+
+        void add(ExactSum other) {
+            units += other.units;
+        }
+
+        double value() {
+            return units / SCALE;
+        }
+
+        void writeState(DataOutput out) throws IOException {
+            out.writeLong(units);
+        }
+
+        void readState(DataInput in) throws IOException {
+            units = in.readLong();
+        }
+    }
+
+    // Per-day totals from firstDay through lastDay. Days before firstDay share one slot, as do
+    // days after lastDay, so a range reaching past either end (EARLIEST and LATEST reach all
+    // the way) includes all of them and totals still cover every row. Prefix sums, and sparse
+    // tables for the temperature range, are rebuilt on the first query after a change, so
+    // any day range is a constant-time lookup.
+    static class DailyRollup {
+        static final int FEEDINGS = 0, DIAPERS = 1, PUMPING_SESSIONS = 2;
+        private static final int COUNTERS = 3;
+
+        static final int EARLIEST = Integer.MIN_VALUE, LATEST = Integer.MAX_VALUE;
+
+        final int firstDay, lastDay;
+        private final int[][] counts;
+        // In ExactSum units
+        private final long[] pumpingMl;
+        private final double[] minTemperature, maxTemperature;
+
+        private long[][] countSums;
+        private long[] pumpingMlSums;
+        private double[][] minTable, maxTable;
+
+        DailyRollup(int firstDay, int lastDay) {
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+            int slots = lastDay - firstDay + 3;
+            counts = new int[COUNTERS][slots];
+            pumpingMl = new long[slots];
+            minTemperature = new double[slots];
+            maxTemperature = new double[slots];
+            Arrays.fill(minTemperature, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxTemperature, Double.NEGATIVE_INFINITY);
+        }
+
+        void add(int counter, int day, int amount) {
+            counts[counter][slot(day)] += amount;
+            countSums = null;
+        }
+
+        void addPumpingMl(int day, double ml) {
+            pumpingMl[slot(day)] += ExactSum.units(ml);
+            pumpingMlSums = null;
+        }
+
+        void addTemperature(int day, double temperature) {
+            int slot = slot(day);
+            minTemperature[slot] = Math.min(minTemperature[slot], temperature);
+            maxTemperature[slot] = Math.max(maxTemperature[slot], temperature);
+            minTable = maxTable = null;
+        }
+
+        // Queries build their lookup tables on first use. Building them all up front makes
+        // later queries read-only, so the rollup can be shared between threads.
+        void buildLookups() {
+            sum(FEEDINGS, EARLIEST, LATEST);
+            pumpingMl(EARLIEST, LATEST);
+            minTemperature(EARLIEST, LATEST);
+            maxTemperature(EARLIEST, LATEST);
+        }
+
+        // Total of a counter over the days fromDay through toDay
+        long sum(int counter, int fromDay, int toDay) {
+            if (fromDay > toDay) return 0;
+            if (countSums == null) {
+                countSums = new long[COUNTERS][];
+                for (int c = 0; c < COUNTERS; c++) {
+                    long[] sums = new long[counts[c].length + 1];
+                    for (int i = 0; i < counts[c].length; i++) sums[i + 1] = sums[i] + counts[c][i];
+                    countSums[c] = sums;
+                }
+            }
+            return countSums[counter][slot(toDay) + 1] - countSums[counter][slot(fromDay)];
+        }
+
+        long total(int counter) {
+            return sum(counter, EARLIEST, LATEST);
+        }
+
+        double pumpingMl(int fromDay, int toDay) {
+            if (fromDay > toDay) return 0;
+            if (pumpingMlSums == null) {
+                pumpingMlSums = new long[pumpingMl.length + 1];
+                for (int i = 0; i < pumpingMl.length; i++) pumpingMlSums[i + 1] = pumpingMlSums[i] + pumpingMl[i];
+            }
+            return (pumpingMlSums[slot(toDay) + 1] - pumpingMlSums[slot(fromDay)]) / ExactSum.SCALE;
+        }
+
+        // Lowest reading in the range, or NaN if there is none
+        double minTemperature(int fromDay, int toDay) {
+            if (minTable == null) minTable = sparseTable(minTemperature, true);
+            double min = rangeQuery(minTable, fromDay, toDay, true);
+            return min == Double.POSITIVE_INFINITY ? Double.NaN : min;
+        }
+
+        // Highest reading in the range, or NaN if there is none
+        double maxTemperature(int fromDay, int toDay) {
+            if (maxTable == null) maxTable = sparseTable(maxTemperature, false);
+            double max = rangeQuery(maxTable, fromDay, toDay, false);
+            return max == Double.NEGATIVE_INFINITY ? Double.NaN : max;
+        }
+
+        // Chunks of the same log cover the same days, so merging is slot by slot
+        void merge(DailyRollup later) {
+            for (int c = 0; c < COUNTERS; c++) {
+                for (int i = 0; i < counts[c].length; i++) counts[c][i] += later.counts[c][i];
+            }
+            for (int i = 0; i < pumpingMl.length; i++) {
+                pumpingMl[i] += later.pumpingMl[i];
+                minTemperature[i] = Math.min(minTemperature[i], later.minTemperature[i]);
+                maxTemperature[i] = Math.max(maxTemperature[i], later.maxTemperature[i]);
+            }
+            countSums = null;
+            pumpingMlSums = null;
+            minTable = maxTable = null;
+        }
+
+        void writeState(DataOutput out) throws IOException {
+            out.writeInt(firstDay);
+            out.writeInt(lastDay);
+            for (int[] counter : counts) {
+                for (int count : counter) out.writeInt(count);
+            }
+            for (int i = 0; i < pumpingMl.length; i++) {
+                out.writeLong(pumpingMl[i]);
+                out.writeDouble(minTemperature[i]);
+                out.writeDouble(maxTemperature[i]);
+            }
+        }
+
+        // False if the saved rollup covers different days
+        boolean readState(DataInput in) throws IOException {
+            if (in.readInt() != firstDay || in.readInt() != lastDay) return false;
+            for (int[] counter : counts) {
+                for (int i = 0; i < counter.length; i++) counter[i] = in.readInt();
+            }
+            for (int i = 0; i < pumpingMl.length; i++) {
+                pumpingMl[i] = in.readLong();
+                minTemperature[i] = in.readDouble();
+                maxTemperature[i] = in.readDouble();
+            }
+            return true;
+        }
+
+        private int slot(int day) {
+            if (day < firstDay) return 0;
+            if (day > lastDay) return lastDay - firstDay + 2;
+            return day - firstDay + 1;
+        }
+
+        // table[k][i] is the min (or max) of slots i .. i + 2^k - 1
+        static double[][] sparseTable(double[] values, boolean min) {
+            int levels = 32 - Integer.numberOfLeadingZeros(values.length);
+            double[][] table = new double[levels][];
+            table[0] = values.clone();
+            for (int k = 1; k < levels; k++) {
+                int half = 1 << (k - 1);
+                table[k] = new double[values.length - (1 << k) + 1];
+                for (int i = 0; i < table[k].length; i++) {
+                    double a = table[k - 1][i], b = table[k - 1][i + half];
+                    table[k][i] = min ? Math.min(a, b) : Math.max(a, b);
+                }
+            }
+            return table;
+        }
+
+        private double rangeQuery(double[][] table, int fromDay, int toDay, boolean min) {
+            if (fromDay > toDay) return min ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+            int from = slot(fromDay), to = slot(toDay);
+            int k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+            double a = table[k][from], b = table[k][to - (1 << k) + 1];
+            return min ? Math.min(a, b) : Math.max(a, b);
+        }
+    }
+
+    // Sleep sessions as [start, end) in log time (minutes since 1970-01-01). An end row with a
+    // duration ends a session that long; one without takes its start from the last start row,
+    // if that is at most MAX_SESSION earlier. A chunk keeps its trailing open start and its
+    // leading unpaired end, so merging pairs a session split between two chunks the way a
+    // single pass would. The first query after a change sorts the sessions, joins any that
+    // overlap and builds prefix sums and a sparse table over the result, so the sleep inside
+    // any window takes two binary searches and the longest stretch in it a constant-time lookup.
+    static class SleepSessions {
+        static final long NONE = Long.MIN_VALUE;
+        static final int MAX_SESSION = 24 * 60;
+
+        private long[] starts = new long[16];
+        private long[] ends = new long[16];
+        private int size;
+
+        private long open = NONE;
+        private boolean sawRow;
+        // This chunk's first row if it was an end without a duration
+        private long leadingEnd = NONE;
+
+        // Built on demand: disjoint sessions sorted by start, prefix sums of their lengths and
+        // a sparse table of their lengths
+        private long[] joinedStarts, joinedEnds, prefix;
+        private double[][] lengthTable;
+
+        void start(long minute) {
+            sawRow = true;
+            open = minute;
+        }
+
+        void end(long minute, int duration) {
+            if (duration > 0) {
+                add(minute - duration, minute);
+            } else if (pairs(open, minute)) {
+                add(open, minute);
+            } else if (!sawRow) {
+                leadingEnd = minute;
+            }
+            sawRow = true;
+            open = NONE;
+        }
+
+        private static boolean pairs(long start, long end) {
+            return start != NONE && end >= start && end - start <= MAX_SESSION;
+        }
+
+        // An end row without a time: the duration is credited to the end of its day
+        void endUntimed(int day, int duration) {
+            sawRow = true;
+            open = NONE;
+            long end = (day + 1) * 1440L;
+            if (duration > 0) add(end - duration, end);
+        }
+
+        private void add(long start, long end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+            joinedStarts = null;
+        }
+
+        void merge(SleepSessions later) {
+            if (pairs(open, later.leadingEnd)) add(open, later.leadingEnd);
+            for (int i = 0; i < later.size; i++) add(later.starts[i], later.ends[i]);
+            if (!sawRow) leadingEnd = later.leadingEnd;
+            if (later.sawRow) open = later.open;
+            sawRow |= later.sawRow;
+        }
+
+        int size() {
+            return size;
+        }
+
+        // Builds the lookups up front so queries from several threads only read
+        void buildIndex() {
+            if (joinedStarts != null) return;
+            // The union doesn't depend on which start goes with which end: sort both and sweep,
+            // counting the sessions open. A start at the minute another ends joins them.
+            long[] sortedS = Arrays.copyOf(starts, size), sortedE = Arrays.copyOf(ends, size);
+            Arrays.sort(sortedS);
+            Arrays.sort(sortedE);
+            long[] joinedS = new long[size], joinedE = new long[size];
+            int n = 0, depth = 0;
+            for (int i = 0, j = 0; j < size; ) {
+                if (i < size && sortedS[i] <= sortedE[j]) {
+                    if (depth++ == 0) joinedS[n] = sortedS[i];
+                    i++;
+                } else {
+                    if (--depth == 0) joinedE[n++] = sortedE[j];
+                    j++;
+                }
+            }
+            long[] sums = new long[n + 1];
+            double[] lengths = new double[Math.max(1, n)];
+            for (int i = 0; i < n; i++) {
+                sums[i + 1] = sums[i] + joinedE[i] - joinedS[i];
+                lengths[i] = joinedE[i] - joinedS[i];
+            }
+            lengthTable = DailyRollup.sparseTable(lengths, false);
+            prefix = sums;
+            joinedEnds = Arrays.copyOf(joinedE, n);
+            joinedStarts = Arrays.copyOf(joinedS, n);
+        }
+
+        // Minutes asleep within [from, to)
+        long minutesBetween(long from, long to) {
+            buildIndex();
+            int i = firstEndingAfter(from), j = firstStartingAt(to);
+            if (i >= j) return 0;
+            long total = prefix[j] - prefix[i];
+            if (from > joinedStarts[i]) total -= from - joinedStarts[i];
+            if (to < joinedEnds[j - 1]) total -= joinedEnds[j - 1] - to;
+            return total;
+        }
+
+        // Minutes asleep within a daily window (minutes of the day, wrapping past midnight if
+        // endMinute <= startMinute) on the days fromDay through toDay
+        long minutesDaily(int fromDay, int toDay, int startMinute, int endMinute) {
+            long length = Math.floorMod(endMinute - startMinute - 1, 1440) + 1;
+            long total = 0;
+            for (long day = fromDay; day <= toDay; day++) {
+                long from = day * 1440 + startMinute;
+                total += minutesBetween(from, from + length);
+            }
+            return total;
+        }
+
+        // Longest stretch of sleep within [from, to), in minutes
+        long longestBetween(long from, long to) {
+            buildIndex();
+            int i = firstEndingAfter(from), j = firstStartingAt(to);
+            if (i >= j) return 0;
+            long longest = Math.min(joinedEnds[i], to) - Math.max(joinedStarts[i], from);
+            longest = Math.max(longest, Math.min(joinedEnds[j - 1], to) - Math.max(joinedStarts[j - 1], from));
+            if (j - i > 2) {
+                int k = 31 - Integer.numberOfLeadingZeros(j - i - 2);
+                longest = Math.max(longest, (long) Math.max(lengthTable[k][i + 1], lengthTable[k][j - 1 - (1 << k)]));
+            }
+            return longest;
+        }
+
+        private int firstEndingAfter(long minute) {
+            int lo = 0, hi = joinedEnds.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (joinedEnds[mid] <= minute) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        private int firstStartingAt(long minute) {
+            int lo = 0, hi = joinedStarts.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (joinedStarts[mid] < minute) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        void writeState(DataOutput out) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(starts[i]);
+                out.writeLong(ends[i]);
+            }
+            out.writeLong(open);
+            out.writeBoolean(sawRow);
+            out.writeLong(leadingEnd);
+        }
+
+        void readState(DataInput in) throws IOException {
+            for (int n = in.readInt(); n > 0; n--) add(in.readLong(), in.readLong());
+            open = in.readLong();
+            sawRow = in.readBoolean();
+            leadingEnd = in.readLong();
+        }
+    }
+
+    // Rows an analyzer couldn't use, counted per activity and reason. Line numbers count from
+    // the start of the accumulator's rows; merge() shifts the later chunk's onto ours, so once
+    // every chunk is merged they are data row numbers (the header is line 1 of the file).
+    static class Rejections {
+        private final boolean keepRows, strict;
+        private long lines;
+        private final Map<String, CategoryCounts> byActivity = new TreeMap<>();
+        private final List<RejectedRow> rows = new ArrayList<>();
+
+        Rejections(ScanOptions options) {
+            this.keepRows = options.rejectedRows;
+            this.strict = options.strict;
+        }
+
+        // Called once for every row, used or not
+        void nextLine() {
+            lines++;
+        }
+
+        void reject(EventRow row, String activity, String reason) {
+            if (strict) {
+                throw new RejectedRowException("line " + (lines + 1) + " (" + activity + "): " + reason);
+            }
+            byActivity.computeIfAbsent(activity, a -> new CategoryCounts()).add(reason, 1);
+            if (keepRows) rows.add(new RejectedRow(lines, activity, reason, row.text()));
+        }
+
+        long lines() {
+            return lines;
+        }
+
+        int total() {
+            int total = 0;
+            for (CategoryCounts reasons : byActivity.values()) total += reasons.total();
+            return total;
+        }
+
+        void merge(Rejections later) {
+            later.byActivity.forEach((activity, reasons) ->
+                    byActivity.computeIfAbsent(activity, a -> new CategoryCounts()).merge(reasons));
+            for (RejectedRow row : later.rows) {
+                row.line += lines;
+                rows.add(row);
+            }
+            lines += later.lines;
+        }
+
+        // line,activity,reason followed by the rejected row as it was, commas and all
+        void writeSidecar(Path path) throws IOException {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(path), false, StandardCharsets.UTF_8)) {
+                out.println("line,activity,reason,row");
+                for (RejectedRow row : rows) {
+                    out.println((row.line + 1) + "," + row.activity + "," + row.reason + "," + row.text);
+                }
+            }
+        }
+
+        void writeState(DataOutput out) throws IOException {
+            out.writeLong(lines);
+            out.writeInt(byActivity.size());
+            for (Map.Entry<String, CategoryCounts> entry : byActivity.entrySet()) {
+                LogCheckpoint.writeString(out, entry.getKey());
+                entry.getValue().writeState(out);
+            }
+            out.writeInt(rows.size());
+            for (RejectedRow row : rows) {
+                out.writeLong(row.line);
+                LogCheckpoint.writeString(out, row.activity);
+                LogCheckpoint.writeString(out, row.reason);
+                LogCheckpoint.writeString(out, row.text);
+            }
+        }
+
+        void readState(DataInput in) throws IOException {
+            lines = in.readLong();
+            int activities = in.readInt();
+            for (int i = 0; i < activities; i++) {
+                CategoryCounts reasons = new CategoryCounts();
+                byActivity.put(LogCheckpoint.readString(in), reasons);
+                reasons.readState(in);
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                long line = in.readLong();
+                rows.add(new RejectedRow(line, LogCheckpoint.readString(in), LogCheckpoint.readString(in),
+                        LogCheckpoint.readString(in)));
+            }
+        }
+    }
+
+    static class RejectedRow {
+        long line;
+        final String activity, reason, text;
+
+        RejectedRow(long line, String activity, String reason, String text) {
+            this.line = line;
+            this.activity = activity;
+            this.reason = reason;
+            this.text = text;
+        }
+    }
+
+    // Thrown in strict mode for the first row an analyzer can't use
+    static class RejectedRowException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        RejectedRowException(String message) {
+            super(message);
+        }
+    }
+
+    // The rules that hold now (babyAlerts, mamaAlerts), the same list as the JSON report's alerts
+    private static void printAlerts(List<String> alerts, PrintStream out) {
+        if (alerts.isEmpty()) return;
+        out.println("\n🚨 ALERTS:");
+        alerts.forEach(alert -> out.println("  " + alert));
+    }
+
+    // How often each rule fired while the log was read, and when it last did
+    private static <S> void printAlertLog(AlertRules<S> rules, AlertLog alerts, PrintStream out) {
+        if (alerts.total == 0) return;
+        out.println("\n🚨 ALERT LOG: " + alerts.total + " alerts, " + alerts.suppressedTotal()
+                + " repeats held back by cooldowns");
+        for (int r = 0; r < rules.rules.size(); r++) {
+            if (alerts.fired[r] == 0) continue;
+            out.println("  " + rules.rules.get(r).message + ": " + alerts.fired[r] + " times, last "
+                    + AlertLog.format(alerts.lastFired[r]));
+        }
+    }
+
+    // Registered metrics, each value as it appears in the JSON report
+    private static void printMetrics(ActivityHandlers handlers, Object[] metrics, PrintStream out) {
+        if (handlers.isEmpty()) return;
+        out.println("\n📐 METRICS:");
+        handlers.forEachText(metrics, (name, text) -> out.println("  " + name + ": " + text));
+    }
+
+    private static void printRejections(Rejections rejections, PrintStream out) {
+        if (rejections.total() == 0) return;
+        out.println("\n🚫 REJECTED ROWS: " + rejections.total());
+        rejections.byActivity.forEach((activity, reasons) -> reasons.forEach((reason, count) ->
+                out.println("  " + activity + " - " + reason + ": " + count)));
+    }
+
+    // Counts per category string (feeding type, mood, symptom, ...). Each distinct value gets
+    // a small int id the first time it is seen and counts live in an int[]. Values are looked
+    // up straight from the row bytes, so counting an already known category allocates nothing.
+    static class CategoryCounts {
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> idsByName = new HashMap<>();
+        private int[] counts = new int[8];
+
+        // Open-addressing table from the UTF-8 bytes of a value to id + 1 (0 = empty slot).
+        // Several byte forms can map to one id if they decode to the same String.
+        private int[] slots = new int[16];
+        private int[] slotHashes = new int[16];
+        private byte[][] slotKeys = new byte[16][];
+        private int slotCount;
+
+        // Counts the trimmed value of a row column
+        void add(EventRow row, int col) {
+            if (!(row instanceof CsvRow) || ((CsvRow) row).quoted[col]) {
+                add(row.get(col), 1);
+                return;
+            }
+            CsvRow csv = (CsvRow) row;
+            int s = csv.trimmedStart(col), e = csv.trimmedEnd(col);
+            int id = find(csv.data, s, e);
+            if (id < 0) {
+                id = intern(new String(csv.data, s, e - s, StandardCharsets.UTF_8));
+                insertSlot(Arrays.copyOfRange(csv.data, s, e), id);
+            }
+            counts[id]++;
+        }
+
+        void add(String name, int count) {
+            Integer known = idsByName.get(name);
+            if (known != null) {
+                counts[known] += count;
+                return;
+            }
+            byte[] key = name.getBytes(StandardCharsets.UTF_8);
+            int id = find(key, 0, key.length);
+            if (id < 0) {
+                id = intern(name);
+                insertSlot(key, id);
+            }
+            counts[id] += count;
+        }
+
+        int count(String name) {
+            Integer id = idsByName.get(name);
+            return id == null ? 0 : counts[id];
+        }
+
+        int total() {
+            int total = 0;
+            for (int i = 0; i < names.size(); i++) total += counts[i];
+            return total;
+        }
+
+        boolean isEmpty() {
+            return names.isEmpty();
+        }
+
+        // Adds later's counts; categories first seen in later keep their first-seen order
+        void merge(CategoryCounts later) {
+            for (int i = 0; i < later.names.size(); i++) {
+                add(later.names.get(i), later.counts[i]);
+            }
+        }
+
+        // Same contents and iteration order as the HashMap<String, Integer> the analyzers
+        // used to fill, so reports print categories in the order they always have
+        Map<String, Integer> toMap() {
+            Map<String, Integer> map = new HashMap<>();
+            for (int i = 0; i < names.size(); i++) {
+                map.put(names.get(i), counts[i]);
+            }
+            return map;
+        }
+
+        void forEach(BiConsumer<String, Integer> action) {
+            toMap().forEach(action);
+        }
+
+        void writeState(DataOutput out) throws IOException {
+            out.writeInt(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                LogCheckpoint.writeString(out, names.get(i));
+                out.writeInt(counts[i]);
+            }
+        }
+
+        void readState(DataInput in) throws IOException {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                add(LogCheckpoint.readString(in), in.readInt());
+            }
+        }
+
+        private int intern(String name) {
+            Integer existing = idsByName.get(name);
+            if (existing != null) return existing;
+            int id = names.size();
+            names.add(name);
+            idsByName.put(name, id);
+            if (id == counts.length) counts = Arrays.copyOf(counts, id * 2);
+            return id;
+        }
+
+        private int find(byte[] data, int s, int e) {
+            int hash = hash(data, s, e);
+            for (int i = hash & (slots.length - 1); slots[i] != 0; i = (i + 1) & (slots.length - 1)) {
+                if (slotHashes[i] == hash && Arrays.equals(slotKeys[i], 0, slotKeys[i].length, data, s, e)) {
+                    return slots[i] - 1;
+                }
+            }
+            return -1;
+        }
+
+        private void insertSlot(byte[] key, int id) {
+            if (slotCount * 2 >= slots.length) {
+                int[] oldSlots = slots;
+                byte[][] oldKeys = slotKeys;
+                slots = new int[oldSlots.length * 2];
+                slotHashes = new int[oldSlots.length * 2];
+                slotKeys = new byte[oldSlots.length * 2][];
+                slotCount = 0;
+                for (int i = 0; i < oldSlots.length; i++) {
+                    if (oldSlots[i] != 0) insertSlot(oldKeys[i], oldSlots[i] - 1);
+                }
+            }
+            int hash = hash(key, 0, key.length);
+            int i = hash & (slots.length - 1);
+            while (slots[i] != 0) i = (i + 1) & (slots.length - 1);
+            slots[i] = id + 1;
+            slotHashes[i] = hash;
+            slotKeys[i] = key;
+            slotCount++;
+        }
+
+        private static int hash(byte[] data, int s, int e) {
+            int hash = 0;
+            for (int i = s; i < e; i++) hash = 31 * hash + data[i];
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    // A metric computed in the same pass as the built-in statistics. Each scan, and each chunk
+    // of a parallel scan, gets its own accumulator; chunks are merged in file order.
+    interface ActivityHandler<A> {
+        A newAccumulator();
+
+        // Called for every row of a registered activity whose date parsed
+        void accept(A accumulator, EventRow row, int epochDay);
+
+        // Combines the accumulators of two consecutive chunks of a log
+        A merge(A earlier, A later);
+
+        // For values that depend on the rows before a chunk, which merge() can't see: with
+        // --parallel each later chunk is read again starting from deferred(accumulator of all
+        // the rows before it), and replay() adds the result. merge() then leaves out what
+        // replay() adds. Handlers that merge exactly keep these defaults.
+        default A deferred(A before) {
+            return before;
+        }
+
+        default A replay(A merged, A deferred) {
+            return merged;
+        }
+
+        // The metric's value (a number, string or object) for the JSON and CSV reports
+        void write(A accumulator, JsonWriter json);
+
+        // The metric for the text report, after "<name>: ". Further lines are indented by four
+        // spaces. By default this is the JSON value, with a flat object as "name value, ...".
+        default String text(A accumulator) {
+            JsonWriter json = new JsonWriter();
+            write(accumulator, json);
+            return JsonEvents.plainText(json.toString());
+        }
+
+        // Checkpoint support. A handler that can't restore its accumulator (readState returns
+        // null) makes --incremental scan the log from the start.
+        default void writeState(A accumulator, DataOutput out) throws IOException {
+        }
+
+        default A readState(DataInput in) throws IOException {
+            return null;
+        }
+    }
+
+    // Adds metrics to a log's handlers. Plugins are found with ServiceLoader, so a jar on the
+    // classpath that lists its class in META-INF/services/Main$MetricPlugin is picked up.
+    interface MetricPlugin {
+        void register(ActivityHandlers handlers);
+    }
+
+    // The metrics registered for one log, by activity. Activity names are numbered when the
+    // log's header is read: the built-in names first, in the order the stats class gives them,
+    // so its switch can use constant ids. A row's activity is looked up once and the id picks
+    // both the built-in case and the handlers to run.
+    static class ActivityHandlers {
+        private static List<MetricPlugin> plugins;
+
+        // "baby" or "mama"
+        final String log;
+        final CsvRow header;
+        private final List<String> activities = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<ActivityHandler<Object>> handlers = new ArrayList<>();
+        private final List<List<Integer>> registered = new ArrayList<>();
+        private ActivityIds ids;
+        private int[][] byActivity;
+
+        ActivityHandlers(String log, CsvRow header, String... builtInActivities) {
+            this.log = log;
+            this.header = header;
+            activities.addAll(Arrays.asList(builtInActivities));
+        }
+
+        // The built-in metrics and those of every plugin, ready to scan with
+        static ActivityHandlers load(String log, CsvRow header, String... builtInActivities) {
+            ActivityHandlers handlers = new ActivityHandlers(log, header, builtInActivities);
+            if (log.equals("baby")) {
+                BabyColumns schema = new BabyColumns(header);
+                handlers.register("feedingHours", new HourHistogram(schema.time), "feeding");
+                handlers.register("feedingIntervalMinutes", new IntervalQuantiles(schema.time), "feeding");
+                handlers.register("sleepMinutes", new ColumnQuantiles(schema.value, null).onlyWhen(schema.subtype, "end"), "sleep");
+                handlers.register("pumpingMl", new ColumnQuantiles(schema.value, "ml"), "pumping");
+            } else {
+                handlers.register("contractionSeconds",
+                        new ColumnSummary(header.indexOf("contraction_duration_sec", -1)), "contractions");
+                handlers.register("sleepMinutes",
+                        new ColumnQuantiles(header.indexOf("total_sleep_minutes", -1), null), "mama_sleep");
+                handlers.register("pumpingMl",
+                        new ColumnQuantiles(header.indexOf("pumping_amount_ml", -1), "ml"), "pumping");
+            }
+            for (MetricPlugin plugin : plugins()) plugin.register(handlers);
+            return handlers.build();
+        }
+
+        private static synchronized List<MetricPlugin> plugins() {
+            if (plugins == null) {
+                plugins = new ArrayList<>();
+                ServiceLoader.load(MetricPlugin.class).forEach(plugins::add);
+            }
+            return plugins;
+        }
+
+        // Runs handler for the rows of each of the activities, under the given metric name
+        @SuppressWarnings("unchecked")
+        void register(String name, ActivityHandler<?> handler, String... activityNames) {
+            if (ids != null) throw new IllegalStateException("handlers are already in use");
+            if (names.contains(name)) throw new IllegalArgumentException("metric " + name + " is already registered");
+            int index = names.size();
+            names.add(name);
+            handlers.add((ActivityHandler<Object>) handler);
+            for (String activity : activityNames) {
+                int id = activities.indexOf(activity);
+                if (id < 0) {
+                    id = activities.size();
+                    activities.add(activity);
+                }
+                while (registered.size() <= id) registered.add(new ArrayList<>());
+                registered.get(id).add(index);
+            }
+        }
+
+        // Position of a header column, or -1 if the log doesn't have it
+        int column(String name) {
+            return header.indexOf(name, -1);
+        }
+
+        ActivityHandlers build() {
+            ids = new ActivityIds(activities);
+            byActivity = new int[activities.size()][];
+            for (int id = 0; id < byActivity.length; id++) {
+                List<Integer> indexes = id < registered.size() ? registered.get(id) : List.of();
+                byActivity[id] = indexes.stream().mapToInt(Integer::intValue).toArray();
+            }
+            return this;
+        }
+
+        // Id of the row's activity, or -1 for activities nothing handles
+        int activityId(EventRow row, int col) {
+            return ids.idOf(row, col);
+        }
+
+        // Id of an activity name, or -1 if nothing handles it
+        int activityId(String name) {
+            return activities.indexOf(name);
+        }
+
+        String activityName(int id) {
+            return activities.get(id);
+        }
+
+        int activityCount() {
+            return activities.size();
+        }
+
+        boolean hasHandlers(int activityId) {
+            return activityId >= 0 && byActivity[activityId].length > 0;
+        }
+
+        Object[] newAccumulators() {
+            Object[] accumulators = new Object[handlers.size()];
+            for (int i = 0; i < accumulators.length; i++) accumulators[i] = handlers.get(i).newAccumulator();
+            return accumulators;
+        }
+
+        void accept(int activityId, Object[] accumulators, EventRow row, int epochDay) {
+            for (int handler : byActivity[activityId]) {
+                handlers.get(handler).accept(accumulators[handler], row, epochDay);
+            }
+        }
+
+        void merge(Object[] accumulators, Object[] later) {
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i] = handlers.get(i).merge(accumulators[i], later[i]);
+            }
+        }
+
+        void defer(Object[] accumulators) {
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i] = handlers.get(i).deferred(accumulators[i]);
+            }
+        }
+
+        void replay(Object[] accumulators, Object[] deferred) {
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i] = handlers.get(i).replay(accumulators[i], deferred[i]);
+            }
+        }
+
+        boolean isEmpty() {
+            return handlers.isEmpty();
+        }
+
+        // {"name": value, ...}
+        void write(Object[] accumulators, JsonWriter json) {
+            json.beginObject();
+            for (int i = 0; i < accumulators.length; i++) {
+                handlers.get(i).write(accumulators[i], json.name(names.get(i)));
+            }
+            json.endObject();
+        }
+
+        void forEach(Object[] accumulators, BiConsumer<String, String> action) {
+            for (int i = 0; i < accumulators.length; i++) {
+                JsonWriter json = new JsonWriter();
+                handlers.get(i).write(accumulators[i], json);
+                action.accept(names.get(i), json.toString());
+            }
+        }
+
+        // Like forEach, with each metric as the text report shows it
+        void forEachText(Object[] accumulators, BiConsumer<String, String> action) {
+            for (int i = 0; i < accumulators.length; i++) {
+                action.accept(names.get(i), handlers.get(i).text(accumulators[i]));
+            }
+        }
+
+        void writeState(Object[] accumulators, DataOutput out) throws IOException {
+            out.writeInt(accumulators.length);
+            for (int i = 0; i < accumulators.length; i++) {
+                LogCheckpoint.writeString(out, names.get(i));
+                handlers.get(i).writeState(accumulators[i], out);
+            }
+        }
+
+        // False if the checkpoint was saved with other metrics or one can't be restored
+        boolean readState(DataInput in, Object[] accumulators) throws IOException {
+            if (in.readInt() != accumulators.length) return false;
+            for (int i = 0; i < accumulators.length; i++) {
+                if (!LogCheckpoint.readString(in).equals(names.get(i))) return false;
+                Object restored = handlers.get(i).readState(in);
+                if (restored == null) return false;
+                accumulators[i] = restored;
+            }
+            return true;
+        }
+    }
+
+    // A fixed set of names numbered in order, looked up straight from the row bytes like
+    // CategoryCounts does, so finding a row's activity allocates nothing. Read-only once
+    // built, so the chunks of a parallel scan share one.
+    static class ActivityIds {
+        private final Map<String, Integer> idsByName = new HashMap<>();
+        private final int[] slots;
+        private final int[] slotHashes;
+        private final byte[][] slotKeys;
+
+        ActivityIds(List<String> names) {
+            int size = Integer.highestOneBit(Math.max(4, names.size() * 4));
+            slots = new int[size];
+            slotHashes = new int[size];
+            slotKeys = new byte[size][];
+            for (int id = 0; id < names.size(); id++) {
+                idsByName.put(names.get(id), id);
+                byte[] key = names.get(id).getBytes(StandardCharsets.UTF_8);
+                int hash = CategoryCounts.hash(key, 0, key.length);
+                int i = hash & (size - 1);
+                while (slots[i] != 0) i = (i + 1) & (size - 1);
+                slots[i] = id + 1;
+                slotHashes[i] = hash;
+                slotKeys[i] = key;
+            }
+        }
+
+        // Id of the trimmed value of a row column, or -1 if it isn't one of the names
+        int idOf(EventRow row, int col) {
+            if (!(row instanceof CsvRow) || ((CsvRow) row).quoted[col]) {
+                return idsByName.getOrDefault(row.get(col), -1);
+            }
+            CsvRow csv = (CsvRow) row;
+            int s = csv.trimmedStart(col), e = csv.trimmedEnd(col);
+            int hash = CategoryCounts.hash(csv.data, s, e);
+            for (int i = hash & (slots.length - 1); slots[i] != 0; i = (i + 1) & (slots.length - 1)) {
+                if (slotHashes[i] == hash && Arrays.equals(slotKeys[i], 0, slotKeys[i].length, csv.data, s, e)) {
+                    return slots[i] - 1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    // Built-in metric: rows per hour of the day, from an HH:mm column
+    static class HourHistogram implements ActivityHandler<int[]> {
+        private final int timeColumn;
+
+        HourHistogram(int timeColumn) {
+            this.timeColumn = timeColumn;
+        }
+
+        @Override
+        public int[] newAccumulator() {
+            return new int[24];
+        }
+
+        @Override
+        public void accept(int[] hours, EventRow row, int epochDay) {
+            if (timeColumn >= 0 && row.has(timeColumn) && row.isTime(timeColumn)) {
+                hours[row.minuteOfDay(timeColumn) / 60]++;
+            }
+        }
+
+        @Override
+        public int[] merge(int[] earlier, int[] later) {
+            for (int i = 0; i < earlier.length; i++) earlier[i] += later[i];
+            return earlier;
+        }
+
+        @Override
+        public void write(int[] hours, JsonWriter json) {
+            json.beginObject();
+            for (int hour = 0; hour < hours.length; hour++) {
+                if (hours[hour] > 0) json.name(String.format("%02d", hour)).value(hours[hour]);
+            }
+            json.endObject();
+        }
+
+        // The busiest and quietest hour, then the count of every hour, six to a line
+        @Override
+        public String text(int[] hours) {
+            int busiest = 0, quietest = 0;
+            for (int hour = 1; hour < hours.length; hour++) {
+                if (hours[hour] > hours[busiest]) busiest = hour;
+                if (hours[hour] < hours[quietest]) quietest = hour;
+            }
+            StringBuilder text = new StringBuilder(String.format("busiest %02d:00 (%d), quietest %02d:00 (%d)",
+                    busiest, hours[busiest], quietest, hours[quietest]));
+            for (int hour = 0; hour < hours.length; hour++) {
+                text.append(hour % 6 == 0 ? "\n  " : "").append(String.format("  %02d:00 %5d", hour, hours[hour]));
+            }
+            return text.toString();
+        }
+
+        @Override
+        public void writeState(int[] hours, DataOutput out) throws IOException {
+            for (int count : hours) out.writeInt(count);
+        }
+
+        @Override
+        public int[] readState(DataInput in) throws IOException {
+            int[] hours = new int[24];
+            for (int i = 0; i < hours.length; i++) hours[i] = in.readInt();
+            return hours;
+        }
+    }
+
+    // Built-in metric: count, average and maximum of a numeric column. The sum is in ExactSum
+    // units, whole numbers that a double holds exactly, so merging chunks doesn't change it.
+    static class ColumnSummary implements ActivityHandler<double[]> {
+        private static final int COUNT = 0, SUM = 1, MAX = 2;
+        private final int column;
+
+        ColumnSummary(int column) {
+            this.column = column;
+        }
+
+        @Override
+        public double[] newAccumulator() {
+            return new double[]{0, 0, Double.NEGATIVE_INFINITY};
+        }
+
+        @Override
+        public void accept(double[] summary, EventRow row, int epochDay) {
+            if (column < 0 || !row.has(column) || row.isEmpty(column) || !row.isDouble(column)) return;
+            double value = row.parseDouble(column);
+            summary[COUNT]++;
+            summary[SUM] += ExactSum.units(value);
+            summary[MAX] = Math.max(summary[MAX], value);
+        }
+
+        @Override
+        public double[] merge(double[] earlier, double[] later) {
+            earlier[COUNT] += later[COUNT];
+            earlier[SUM] += later[SUM];
+            earlier[MAX] = Math.max(earlier[MAX], later[MAX]);
+            return earlier;
+        }
+
+        @Override
+        public void write(double[] summary, JsonWriter json) {
+            json.beginObject()
+                    .name("count").value((long) summary[COUNT])
+                    .name("average").value(summary[SUM] / ExactSum.SCALE / summary[COUNT])
+                    .name("max").value(summary[MAX])
+                    .endObject();
+        }
+
+        @Override
+        public String text(double[] summary) {
+            if (summary[COUNT] == 0) return "no values";
+            return String.format("%.1f on average, max %.1f (%d value%s)",
+                    summary[SUM] / ExactSum.SCALE / summary[COUNT], summary[MAX], (long) summary[COUNT],
+                    summary[COUNT] == 1 ? "" : "s");
+        }
+
+        @Override
+        public void writeState(double[] summary, DataOutput out) throws IOException {
+            for (double value : summary) out.writeDouble(value);
+        }
+
+        @Override
+        public double[] readState(DataInput in) throws IOException {
+            return new double[]{in.readDouble(), in.readDouble(), in.readDouble()};
+        }
+    }
+
+    // Built-in metric: p50/p90/p99 of a numeric column, with an optional unit suffix ("120ml")
+    static class ColumnQuantiles implements ActivityHandler<QuantileSketch> {
+        private final int column;
+        private final String unit;
+        private int onlyColumn = -1;
+        private String onlyValue;
+
+        ColumnQuantiles(int column, String unit) {
+            this.column = column;
+            this.unit = unit;
+        }
+
+        // Skips rows whose value in another column isn't the given one, e.g. subtype "end"
+        ColumnQuantiles onlyWhen(int column, String value) {
+            onlyColumn = column;
+            onlyValue = value;
+            return this;
+        }
+
+        @Override
+        public QuantileSketch newAccumulator() {
+            return new QuantileSketch();
+        }
+
+        @Override
+        public void accept(QuantileSketch sketch, EventRow row, int epochDay) {
+            if (column < 0 || !row.has(column)) return;
+            if (onlyColumn >= 0 && !(row.has(onlyColumn) && row.equals(onlyColumn, onlyValue))) return;
+            if (unit == null) {
+                if (!row.isBlank(column) && row.isDouble(column)) sketch.add(row.parseDouble(column));
+            } else if (!row.isEmpty(column, unit) && row.isDouble(column, unit)) {
+                sketch.add(row.parseDouble(column, unit));
+            }
+        }
+
+        @Override
+        public QuantileSketch merge(QuantileSketch earlier, QuantileSketch later) {
+            return earlier.merge(later);
+        }
+
+        @Override
+        public void write(QuantileSketch sketch, JsonWriter json) {
+            sketch.write(json);
+        }
+
+        @Override
+        public String text(QuantileSketch sketch) {
+            return sketch.text();
+        }
+
+        @Override
+        public void writeState(QuantileSketch sketch, DataOutput out) throws IOException {
+            sketch.writeState(out);
+        }
+
+        @Override
+        public QuantileSketch readState(DataInput in) throws IOException {
+            return QuantileSketch.readState(in);
+        }
+    }
+
+    // Built-in metric: p50/p90/p99 of the minutes between one row of an activity and the next,
+    // in log order. A chunk's gaps depend on the latest time before it, so merging only takes
+    // the later chunk's times; its gaps come from the second pass of --parallel, which starts
+    // from that latest time (deferred, replay) and gives the same result as a single pass.
+    static class IntervalQuantiles implements ActivityHandler<IntervalQuantiles.Gaps> {
+        static class Gaps {
+            final QuantileSketch sketch;
+            // The first row's time and the latest time seen so far
+            long first = -1, last = -1;
+
+            Gaps(QuantileSketch sketch) {
+                this.sketch = sketch;
+            }
+        }
+
+        private final int timeColumn;
+
+        IntervalQuantiles(int timeColumn) {
+            this.timeColumn = timeColumn;
+        }
+
+        @Override
+        public Gaps newAccumulator() {
+            return new Gaps(new QuantileSketch());
+        }
+
+        @Override
+        public void accept(Gaps gaps, EventRow row, int epochDay) {
+            if (timeColumn < 0 || !row.has(timeColumn) || !row.isTime(timeColumn)) return;
+            long minute = epochDay * 1440L + row.minuteOfDay(timeColumn);
+            if (gaps.first < 0) {
+                gaps.first = gaps.last = minute;
+            } else if (minute >= gaps.last) {
+                gaps.sketch.add(minute - gaps.last);
+                gaps.last = minute;
+            }
+            // A row logged out of order has no meaningful gap, and the next row's gap is still
+            // measured from the latest time seen
+        }
+
+        @Override
+        public Gaps merge(Gaps earlier, Gaps later) {
+            if (later.first < 0) return earlier;
+            if (earlier.first < 0) earlier.first = later.first;
+            earlier.last = Math.max(earlier.last, later.last);
+            return earlier;
+        }
+
+        // The times before the chunk, without their gaps
+        @Override
+        public Gaps deferred(Gaps before) {
+            Gaps gaps = new Gaps(new QuantileSketch());
+            gaps.first = before.first;
+            gaps.last = before.last;
+            return gaps;
+        }
+
+        @Override
+        public Gaps replay(Gaps merged, Gaps deferred) {
+            merged.sketch.merge(deferred.sketch);
+            return merged;
+        }
+
+        @Override
+        public void write(Gaps gaps, JsonWriter json) {
+            gaps.sketch.write(json);
+        }
+
+        @Override
+        public String text(Gaps gaps) {
+            return gaps.sketch.text();
+        }
+
+        @Override
+        public void writeState(Gaps gaps, DataOutput out) throws IOException {
+            out.writeLong(gaps.first);
+            out.writeLong(gaps.last);
+            gaps.sketch.writeState(out);
+        }
+
+        @Override
+        public Gaps readState(DataInput in) throws IOException {
+            long first = in.readLong(), last = in.readLong();
+            Gaps gaps = new Gaps(QuantileSketch.readState(in));
+            gaps.first = first;
+            gaps.last = last;
+            return gaps;
+        }
+    }
+
+    // Mergeable quantiles in fixed memory: counts per logarithmic bucket, each bucket 2% wider
+    // than the one below, so any quantile is within 1% of a value that was added. Sketches of
+    // separate chunks merge by adding counts. Values up to 0.01 share the lowest bucket and
+    // values past 10^7 the highest; the exact min and max are kept to clamp the estimates.
+    static class QuantileSketch {
+        private static final double GAMMA = 1.01 / 0.99;
+        private static final double LOG_GAMMA = Math.log(GAMMA);
+        private static final double LOWEST = 0.01;
+        private static final int BUCKETS = (int) Math.ceil(Math.log(1e7 / LOWEST) / LOG_GAMMA) + 1;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+        void add(double value) {
+            int bucket = value <= LOWEST ? 0
+                    : (int) Math.min(BUCKETS - 1, Math.ceil(Math.log(value / LOWEST) / LOG_GAMMA));
+            counts[bucket]++;
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        QuantileSketch merge(QuantileSketch later) {
+            for (int i = 0; i < BUCKETS; i++) counts[i] += later.counts[i];
+            count += later.count;
+            min = Math.min(min, later.min);
+            max = Math.max(max, later.max);
+            return this;
+        }
+
+        long count() {
+            return count;
+        }
+
+        // Estimate of the value at fraction q (0-1) of the sorted values, NaN when empty
+        double quantile(double q) {
+            if (count == 0) return Double.NaN;
+            long rank = (long) Math.floor(q * (count - 1));
+            int bucket = 0;
+            for (long seen = counts[0]; seen <= rank; seen += counts[++bucket]) {
+            }
+            // Bucket i > 0 holds (LOWEST * GAMMA^(i-1), LOWEST * GAMMA^i]; this is within 1% of both ends
+            double estimate = bucket == 0 ? min : LOWEST * Math.pow(GAMMA, bucket) * 2 / (1 + GAMMA);
+            return Math.max(min, Math.min(max, estimate));
+        }
+
+        // {"count": n, "p50": ..., "p90": ..., "p99": ..., "max": ...}
+        void write(JsonWriter json) {
+            json.beginObject()
+                    .name("count").value(count)
+                    .name("p50").value(round(quantile(0.5)))
+                    .name("p90").value(round(quantile(0.9)))
+                    .name("p99").value(round(quantile(0.99)))
+                    .name("max").value(count == 0 ? Double.NaN : max)
+                    .endObject();
+        }
+
+        // "p50 325.4, p90 569.7, p99 816.6, max 1301.0 (18355 values)" for the text report
+        String text() {
+            if (count == 0) return "no values";
+            return String.format("p50 %.1f, p90 %.1f, p99 %.1f, max %.1f (%d value%s)",
+                    quantile(0.5), quantile(0.9), quantile(0.99), max, count, count == 1 ? "" : "s");
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 10) / 10.0;
+        }
+
+        // Only the non-empty buckets, as (index, count) pairs
+        void writeState(DataOutput out) throws IOException {
+            out.writeLong(count);
+            out.writeDouble(min);
+            out.writeDouble(max);
+            int used = 0;
+            for (long c : counts) if (c > 0) used++;
+            out.writeInt(used);
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] > 0) {
+                    out.writeShort(i);
+                    out.writeLong(counts[i]);
+                }
+            }
+        }
+
+        static QuantileSketch readState(DataInput in) throws IOException {
+            QuantileSketch sketch = new QuantileSketch();
+            sketch.count = in.readLong();
+            sketch.min = in.readDouble();
+            sketch.max = in.readDouble();
+            for (int used = in.readInt(); used > 0; used--) {
+                int bucket = in.readUnsignedShort();
+                sketch.counts[bucket] = in.readLong();
+            }
+            return sketch;
+        }
+    }
+
+    // Chunks smaller than this aren't worth a task; larger ones couldn't be mapped at once
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    private static final long MAX_CHUNK_BYTES = 1 << 28;
+
+    // Counts every row of a log. fromHeader resolves the header row into a factory for empty
+    // accumulators. Returns null if there are no rows after the header.
+    private static <S extends LogStats<S>> S scanLog(Path dataPath, ScanOptions options, PrintStream out,
+                                                     Function<CsvRow, Supplier<S>> fromHeader) throws IOException {
+        S stats;
+        try {
+            stats = readLog(dataPath, options, out, fromHeader);
+        } catch (RejectedRowException e) {
+            throw new RejectedRowException(dataPath + " " + e.getMessage());
+        }
+        if (stats != null && options.rejectedRows) {
+            stats.rejections().writeSidecar(Paths.get(dataPath + ".rejected.csv"));
+        }
+        return stats;
+    }
+
+    private static <S extends LogStats<S>> S readLog(Path dataPath, ScanOptions options, PrintStream out,
+                                                     Function<CsvRow, Supplier<S>> fromHeader) throws IOException {
+        if (options.snapshot) {
+            Path snapshotPath = Snapshot.pathFor(dataPath);
+            if (Snapshot.isCurrent(snapshotPath, dataPath)) return scanSnapshot(snapshotPath, fromHeader);
+            out.println("  (no up to date snapshot for " + dataPath + ", reading the CSV)");
+        }
+        try (SortedLog sorted = SortedLog.of(dataPath, options.sort, out);
+             CsvReader reader = new CsvReader(Files.newInputStream(sorted.path))) {
+            if (!reader.next()) return null;
+            Supplier<S> newStats = fromHeader.apply(reader.row());
+            if (options.incremental) {
+                return scanLogIncremental(dataPath, reader.position(), options.parallel, out, newStats);
+            }
+            if (options.parallel) return scanLogParallel(sorted.path, reader.position(), newStats);
+            if (!reader.next()) return null;
+
+            // Stream one row at a time so memory stays flat regardless of file size.
+            // Rows are tokenized lazily, so each activity only pays for the columns it reads.
+            S stats = newStats.get();
+            CsvRow cols = reader.row();
+            do {
+                stats.accept(cols);
+            } while (reader.next());
+            return stats;
+        }
+    }
+
+    // A log in (date, time) order: the log itself if its rows already are, else a sorted copy
+    // in a temp directory that close() deletes. Checking the order is one streaming pass that
+    // stops at the first row out of place, so an ordered log costs a read of its date and time
+    // columns. Otherwise rows are sorted in runs of at most RUN_ROWS rows or RUN_BYTES bytes,
+    // each run is spilled to its own file and the runs are merged k ways in one pass, so memory
+    // stays bounded however big the log is. Rows with the same key keep their order.
+    static class SortedLog implements Closeable {
+        static final int RUN_ROWS = 1 << 19;
+        static final long RUN_BYTES = 32L << 20;
+
+        final Path path;
+        private final Path tempDir;
+
+        private SortedLog(Path path, Path tempDir) {
+            this.path = path;
+            this.tempDir = tempDir;
+        }
+
+        // The log as it is if sort is false
+        static SortedLog of(Path log, boolean sort, PrintStream out) throws IOException {
+            if (!sort || isSorted(log)) return new SortedLog(log, null);
+            Path dir = Files.createTempDirectory("sorted-log");
+            try {
+                int runs = sort(log, dir.resolve(log.getFileName()), dir);
+                out.println("  (" + log + " is out of time order, sorted it in " + runs + (runs == 1 ? " run)" : " runs)"));
+                return new SortedLog(dir.resolve(log.getFileName()), dir);
+            } catch (IOException | RuntimeException e) {
+                deleteAll(dir);
+                throw e;
+            }
+        }
+
+        static boolean isSorted(Path log) throws IOException {
+            try (CsvReader reader = new CsvReader(Files.newInputStream(log))) {
+                if (!reader.next()) return true;
+                RowKeys keys = new RowKeys(reader.row());
+                long last = Long.MIN_VALUE;
+                while (reader.next()) {
+                    long key = keys.next(reader.row());
+                    if (key < last) return false;
+                    last = key;
+                }
+                return true;
+            }
+        }
+
+        // Writes log's header and its rows in key order to sorted; returns the number of runs
+        private static int sort(Path log, Path sorted, Path dir) throws IOException {
+            List<Path> runs = new ArrayList<>();
+            byte[] header;
+            try (CsvReader reader = new CsvReader(Files.newInputStream(log))) {
+                reader.next();
+                header = reader.row().line();
+                RowKeys keys = new RowKeys(reader.row());
+                long[] runKeys = new long[1024];
+                byte[][] lines = new byte[1024][];
+                int n = 0;
+                long bytes = 0;
+                while (reader.next()) {
+                    if (n == runKeys.length) {
+                        runKeys = Arrays.copyOf(runKeys, n * 2);
+                        lines = Arrays.copyOf(lines, n * 2);
+                    }
+                    runKeys[n] = keys.next(reader.row());
+                    lines[n] = reader.row().line();
+                    bytes += lines[n].length;
+                    if (++n == RUN_ROWS || bytes >= RUN_BYTES) {
+                        runs.add(writeRun(dir.resolve("run-" + runs.size()), runKeys, lines, n));
+                        n = 0;
+                        bytes = 0;
+                    }
+                }
+                if (n > 0) runs.add(writeRun(dir.resolve("run-" + runs.size()), runKeys, lines, n));
+            }
+            merge(header, runs, sorted);
+            for (Path run : runs) Files.delete(run);
+            return runs.size();
+        }
+
+        // Each row as its key, its length and its bytes, in key order
+        private static Path writeRun(Path run, long[] keys, byte[][] lines, int n) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+                for (int i : stableOrder(keys, n)) {
+                    out.writeLong(keys[i]);
+                    out.writeInt(lines[i].length);
+                    out.write(lines[i]);
+                    lines[i] = null;
+                }
+            }
+            return run;
+        }
+
+        // Indexes 0 .. n - 1 sorted by keys[i], rows with equal keys in index order: a bottom-up
+        // merge sort, which is stable and needs no boxing
+        static int[] stableOrder(long[] keys, int n) {
+            int[] order = new int[n], buffer = new int[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            for (int width = 1; width < n; width *= 2) {
+                for (int lo = 0; lo < n; lo += 2 * width) {
+                    int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+                    int a = lo, b = mid, k = lo;
+                    while (a < mid && b < hi) buffer[k++] = keys[order[b]] < keys[order[a]] ? order[b++] : order[a++];
+                    while (a < mid) buffer[k++] = order[a++];
+                    while (b < hi) buffer[k++] = order[b++];
+                }
+                int[] swap = order;
+                order = buffer;
+                buffer = swap;
+            }
+            return order;
+        }
+
+        // Repeatedly writes the smallest next row of any run; on equal keys the earlier run wins
+        private static void merge(byte[] header, List<Path> runs, Path sorted) throws IOException {
+            PriorityQueue<Run> heads = new PriorityQueue<>(
+                    Comparator.<Run>comparingLong(run -> run.key).thenComparingInt(run -> run.index));
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(sorted), 1 << 16)) {
+                out.write(header);
+                out.write('\n');
+                try {
+                    for (int i = 0; i < runs.size(); i++) {
+                        Run run = new Run(runs.get(i), i);
+                        if (run.next()) heads.add(run);
+                        else run.in.close();
+                    }
+                    while (!heads.isEmpty()) {
+                        Run run = heads.poll();
+                        out.write(run.line);
+                        out.write('\n');
+                        if (run.next()) heads.add(run);
+                        else run.in.close();
+                    }
+                } finally {
+                    for (Run run : heads) run.in.close();
+                }
+            }
+        }
+
+        private static class Run {
+            final DataInputStream in;
+            final int index;
+            long key;
+            byte[] line;
+
+            Run(Path path, int index) throws IOException {
+                this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+                this.index = index;
+            }
+
+            boolean next() throws IOException {
+                try {
+                    key = in.readLong();
+                } catch (EOFException e) {
+                    return false;
+                }
+                line = new byte[in.readInt()];
+                in.readFully(line);
+                return true;
+            }
+        }
+
+        // A row's sort key in minutes since 1970-01-01. A row without a date keeps the key of
+        // the row before it, and one without a time sorts with the row before it if that is on
+        // the same day (else at the start of its day). Such rows stay next to their neighbours
+        // and don't make an ordered log look out of order.
+        static class RowKeys {
+            // Before any date, for rows ahead of the first dated one
+            static final long FIRST = -(1L << 40);
+
+            private final int date, time;
+            private long previous = FIRST;
+
+            RowKeys(CsvRow header) {
+                date = header.indexOf("date", 0);
+                time = header.indexOf("time", 1);
+            }
+
+            long next(EventRow cols) {
+                if (cols.has(date) && cols.isDate(date)) {
+                    long day = cols.epochDay(date) * 1440L;
+                    if (cols.has(time) && cols.isTime(time)) {
+                        previous = day + cols.minuteOfDay(time);
+                    } else if (Math.floorDiv(previous, 1440) * 1440 != day) {
+                        previous = day;
+                    }
+                }
+                return previous;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (tempDir != null) deleteAll(tempDir);
+        }
+
+        private static void deleteAll(Path dir) throws IOException {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    // Memory-maps the rows after the header, splits them on line boundaries and counts the
+    // chunks on the common ForkJoinPool
+    private static <S extends LogStats<S>> S scanLogParallel(Path dataPath, long start,
+                                                             Supplier<S> newStats) throws IOException {
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            long end = channel.size();
+            if (start >= end) return null;
+            return scanRange(channel, start, end, true, newStats, null);
+        }
+    }
+
+    // Loads the state saved for the rows before the checkpoint offset and parses only the
+    // rows after it. Falls back to a full scan if there is no usable checkpoint.
+    private static <S extends LogStats<S>> S scanLogIncremental(Path dataPath, long dataStart, boolean parallel,
+                                                                PrintStream out, Supplier<S> newStats) throws IOException {
+        Path checkpointPath = Paths.get(dataPath + ".checkpoint");
+        try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            long end = channel.size();
+            if (dataStart >= end) return null;
+
+            S stats = newStats.get();
+            long offset = LogCheckpoint.load(checkpointPath, channel, dataStart, stats);
+            if (offset < 0) {
+                out.println("  (no usable checkpoint for " + dataPath + ", rebuilding from the start)");
+                stats = newStats.get();
+                offset = dataStart;
+            } else {
+                out.println("  (resumed " + dataPath + " from checkpoint, " + (end - offset) + " new bytes)");
+            }
+
+            // Only whole lines go into the checkpoint. A last line without its newline may
+            // still be being written: it is counted in this report and parsed again next run.
+            long complete = lastLineEnd(channel, offset, end);
+            if (complete > offset) {
+                stats = scanRange(channel, offset, complete, parallel, newStats, stats);
+            }
+            LogCheckpoint.save(checkpointPath, channel, dataStart, complete, stats);
+            if (complete < end) {
+                stats = scanRange(channel, complete, end, false, newStats, stats);
+            }
+            return stats;
+        }
+    }
+
+    // Counts the rows in [start, end), on all cores if parallel. Sequential scans still use
+    // more than one chunk when the range is too big to map at once, but one accumulator reads
+    // them all in order, so row numbers stay absolute. The first chunk's rows go straight
+    // into stats if there are some already, so the alert rules see them row by row.
+    private static <S extends LogStats<S>> S scanRange(FileChannel channel, long start, long end, boolean parallel,
+                                                       Supplier<S> newStats, S stats) throws IOException {
+        long bytes = end - start;
+        long chunks = parallel
+                ? Math.min(ForkJoinPool.getCommonPoolParallelism() * 4L, Math.max(1, bytes / MIN_CHUNK_BYTES))
+                : 1;
+        chunks = Math.max(chunks, bytes / MAX_CHUNK_BYTES + 1);
+        long[] bounds = lineBoundaries(channel, start, end, (int) chunks);
+        try {
+            if (parallel && chunks > 1 && copyOf(newStats.get(), newStats) != null) {
+                return scanChunks(channel, bounds, newStats, stats);
+            }
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                stats = new ChunkScan<>(channel, bounds, chunk, newStats, stats).compute();
+            }
+            return stats;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Scans the chunks of bounds on all cores. The alert rules need the state after every row
+    // before the one being checked, which a chunk read on its own doesn't have, and so do
+    // interval metrics. So each chunk after the first is read a second time, starting from a
+    // copy of the state of all the chunks before it, deferred. Only that pass's alerts and
+    // intervals are kept: they are replayed onto the first chunk's in file order, so the
+    // report matches a single pass.
+    // This costs about twice the parsing, still spread over all cores.
+    private static <S extends LogStats<S>> S scanChunks(FileChannel channel, long[] bounds,
+                                                        Supplier<S> newStats, S stats) throws IOException {
+        List<ChunkScan<S>> scans = new ArrayList<>();
+        for (int chunk = 0; chunk + 1 < bounds.length; chunk++) {
+            scans.add(new ChunkScan<>(channel, bounds, chunk, newStats, chunk == 0 ? stats : null));
+        }
+        ForkJoinTask.invokeAll(scans);
+
+        S merged = scans.get(0).join();
+        List<ChunkScan<S>> rechecks = new ArrayList<>();
+        for (int chunk = 1; chunk < scans.size(); chunk++) {
+            S before = copyOf(merged, newStats);
+            before.defer();
+            ChunkScan<S> recheck = new ChunkScan<>(channel, bounds, chunk, newStats, before);
+            recheck.fork();
+            rechecks.add(recheck);
+            merged = merged.merge(scans.get(chunk).join());
+        }
+        for (ChunkScan<S> recheck : rechecks) merged.replay(recheck.join());
+        return merged;
+    }
+
+    // An independent copy of stats made through its checkpoint state, or null if some part
+    // of it (a metric plugin, say) can't be restored
+    private static <S extends LogStats<S>> S copyOf(S stats, Supplier<S> newStats) throws IOException {
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(state)) {
+            stats.writeState(out);
+        }
+        S copy = newStats.get();
+        return copy.readState(new DataInputStream(new ByteArrayInputStream(state.toByteArray()))) ? copy : null;
+    }
+
+    // Offset just past the last newline in [start, end), or start if there is none
+    private static long lastLineEnd(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long pos = end;
+        while (pos > start) {
+            int n = (int) Math.min(probe.capacity(), pos - start);
+            probe.clear().limit(n);
+            channel.read(probe, pos - n);
+            for (int j = probe.position() - 1; j >= 0; j--) {
+                if (probe.get(j) == '\n') return pos - n + j + 1;
+            }
+            pos -= n;
+        }
+        return start;
+    }
+
+    // <log>.checkpoint: the state of a LogStats for every row before a byte offset, plus a
+    // fingerprint of the log so a rewritten (rather than appended) file is detected. The
+    // fingerprint covers the header, the first rows and the bytes just before the offset.
+    static class LogCheckpoint {
+        private static final int MAGIC = 0x424d4350;
+        private static final int VERSION = 9;
+        private static final int WINDOW = 4096;
+
+        // Restores the saved state into stats and returns the offset it covers, or -1 if
+        // there is no checkpoint or it doesn't match the log any more
+        static long load(Path path, FileChannel channel, long dataStart, LogStats<?> stats) {
+            if (!Files.exists(path)) return -1;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) return -1;
+                long offset = in.readLong();
+                long fingerprint = in.readLong();
+                if (offset < dataStart || offset > channel.size()) return -1;
+                if (fingerprint != fingerprint(channel, dataStart, offset)) return -1;
+                // The state is only parsed once its checksum matches, so a damaged body
+                // can't turn into huge or negative lengths in the readState code
+                int length = in.readInt();
+                long checksum = in.readLong();
+                if (length < 0 || length > Files.size(path)) return -1;
+                byte[] state = new byte[length];
+                in.readFully(state);
+                CRC32 crc = new CRC32();
+                crc.update(state);
+                if (crc.getValue() != checksum) return -1;
+                DataInputStream body = new DataInputStream(new ByteArrayInputStream(state));
+                return stats.readState(body) && body.available() == 0 ? offset : -1;
+            } catch (IOException | RuntimeException e) {
+                // A truncated, unreadable or inconsistent checkpoint just means a full rebuild
+                return -1;
+            }
+        }
+
+        // Writes to a temporary file first so a crash never leaves a half-written checkpoint
+        static void save(Path path, FileChannel channel, long dataStart, long offset,
+                         LogStats<?> stats) throws IOException {
+            Path tmp = Paths.get(path + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(offset);
+                out.writeLong(fingerprint(channel, dataStart, offset));
+                ByteArrayOutputStream state = new ByteArrayOutputStream();
+                DataOutputStream body = new DataOutputStream(state);
+                stats.writeState(body);
+                body.flush();
+                CRC32 crc = new CRC32();
+                crc.update(state.toByteArray());
+                out.writeInt(state.size());
+                out.writeLong(crc.getValue());
+                state.writeTo(out);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static long fingerprint(FileChannel channel, long dataStart, long offset) throws IOException {
+            CRC32 crc = new CRC32();
+            update(crc, channel, 0, dataStart);
+            update(crc, channel, dataStart, Math.min(offset, dataStart + WINDOW));
+            update(crc, channel, Math.max(dataStart, offset - WINDOW), offset);
+            return (offset << 32) ^ crc.getValue();
+        }
+
+        private static void update(CRC32 crc, FileChannel channel, long from, long to) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(WINDOW);
+            for (long pos = from; pos < to; ) {
+                buf.clear().limit((int) Math.min(WINDOW, to - pos));
+                int n = channel.read(buf, pos);
+                if (n < 0) throw new IOException("Log shrank while reading checkpoint fingerprint");
+                buf.flip();
+                crc.update(buf);
+                pos += n;
+            }
+        }
+
+        // writeUTF is capped at 64 KB, which a long memory note could exceed
+        static void writeString(DataOutput out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        static String readString(DataInput in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        static void writeStrings(DataOutput out, List<String> values) throws IOException {
+            out.writeInt(values.size());
+            for (String value : values) writeString(out, value);
+        }
+
+        static void readStrings(DataInput in, List<String> values) throws IOException {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) values.add(readString(in));
+        }
+    }
+
+    // Splits [start, end) into ranges that each begin at the start of a line
+    private static long[] lineBoundaries(FileChannel channel, long start, long end, int chunks) throws IOException {
+        long[] bounds = new long[chunks + 1];
+        bounds[0] = start;
+        bounds[chunks] = end;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < chunks; i++) {
+            long pos = Math.max(bounds[i - 1], start + (end - start) * i / chunks);
+            bounds[i] = end;
+            while (pos < end && bounds[i] == end) {
+                probe.clear();
+                int n = channel.read(probe, pos);
+                if (n < 0) break;
+                for (int j = 0; j < n; j++) {
+                    if (probe.get(j) == '\n') {
+                        bounds[i] = pos + j + 1;
+                        break;
+                    }
+                }
+                pos += n;
+            }
+        }
+        return bounds;
+    }
+
+    // Counts chunk i of a split log, [bounds[i], bounds[i + 1]), as a fork/join task
+    static class ChunkScan<S extends LogStats<S>> extends RecursiveTask<S> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long from, to;
+        private final Supplier<S> newStats;
+        // Stats to continue, or null for new ones
+        private final S first;
+
+        ChunkScan(FileChannel channel, long[] bounds, int i, Supplier<S> newStats, S first) {
+            this.channel = channel;
+            this.from = bounds[i];
+            this.to = bounds[i + 1];
+            this.newStats = newStats;
+            this.first = first;
+        }
+
+        @Override
+        protected S compute() {
+            S stats = first != null ? first : newStats.get();
+            try {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                CsvReader reader = new CsvReader(chunk);
+                CsvRow cols = reader.row();
+                while (reader.next()) {
+                    stats.accept(cols);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return stats;
+        }
+    }
+
+    // Counts every row of a columnar snapshot, one row view moving over the mapped columns
+    private static <S extends LogStats<S>> S scanSnapshot(Path snapshotPath,
+                                                          Function<CsvRow, Supplier<S>> fromHeader) throws IOException {
+        Snapshot snapshot = new Snapshot(snapshotPath);
+        if (snapshot.header() == null || snapshot.rows() == 0) return null;
+        S stats = fromHeader.apply(snapshot.header()).get();
+        Snapshot.Row row = snapshot.new Row();
+        for (int i = 0; i < snapshot.rows(); i++) {
+            row.moveTo(i);
+            stats.accept(row);
+        }
+        return stats;
+    }
+
+    // Converts each event log found into a <log>.snap columnar snapshot
+    private static void buildSnapshots() throws IOException {
+        for (String[] names : new String[][] {BABY_LOGS, MAMA_LOGS}) {
+            Path dataPath = findLog(Paths.get(""), names);
+            if (dataPath == null) continue;
+            Path snapshotPath = Snapshot.pathFor(dataPath);
+            long start = System.nanoTime();
+            Snapshot.write(dataPath, snapshotPath);
+            System.out.printf("%s -> %s: %,d -> %,d bytes in %d ms%n", dataPath, snapshotPath,
+                    Files.size(dataPath), Files.size(snapshotPath), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    // <log>.snap: an event log stored column by column. Each column is encoded by what its
+    // values turn out to be:
+    //   EMPTY   every value is empty, nothing is stored
+    //   DAY     yyyy-MM-dd dates as epoch-day ints, with a bitmap of non-empty rows
+    //   MINUTE  HH:mm times as minute-of-day ints, with a bitmap of non-empty rows
+    //   NUMBER  doubles, with a bitmap of non-empty rows
+    //   TEXT    anything else: a dictionary of distinct values and a 1, 2 or 4 byte id per row
+    // A column only gets a typed encoding if every value prints back to exactly its original
+    // text, so a row read from the snapshot behaves like the CSV row, malformed values included.
+    // The file is memory-mapped and a column's bytes are only touched once a row reads it.
+    static class Snapshot {
+        private static final int MAGIC = 0x424d534e;
+        private static final int VERSION = 1;
+        private static final byte EMPTY = 0, DAY = 1, MINUTE = 2, NUMBER = 3, TEXT = 4;
+
+        // The header and row sizes, then one buffer per column with offsets relative to it
+        private final ByteBuffer head;
+        private final ByteBuffer[] data;
+        private final CsvRow header;
+        private final int rows;
+        private final int rowSizes;
+        private final byte[] kinds;
+        private final String[][] dictionaries;
+        private final int[] idOffsets;
+
+        static Path pathFor(Path dataPath) {
+            return Paths.get(dataPath + ".snap");
+        }
+
+        Snapshot(Path path) throws IOException {
+            this(path, false);
+        }
+
+        // Each column is mapped (or with onHeap, read into the heap) on its own, so only a
+        // single column has to stay under the 2 GB a buffer can address
+        private Snapshot(Path path, boolean onHeap) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                ByteBuffer start = region(channel, 0, Math.min(size, 8), true, path);
+                if (size < 16 || start.getInt() != MAGIC || start.getInt() != VERSION) {
+                    throw new IOException("Not a snapshot: " + path);
+                }
+                long directory = region(channel, size - 8, size, true, path).getLong();
+                int columns = (int) ((size - 8 - directory) / 9);
+                ByteBuffer entries = region(channel, directory, size - 8, true, path);
+                kinds = new byte[columns];
+                long[] offsets = new long[columns + 1];
+                for (int col = 0; col < columns; col++) {
+                    kinds[col] = entries.get();
+                    offsets[col] = entries.getLong();
+                }
+                offsets[columns] = directory;
+
+                head = region(channel, 0, offsets[0], onHeap, path);
+                head.position(24);
+                int headerLength = head.getInt();
+                if (headerLength >= 0) {
+                    byte[] line = new byte[headerLength];
+                    head.get(line);
+                    header = new CsvRow();
+                    header.parse(line, 0, line.length);
+                } else {
+                    header = null;
+                }
+                rows = head.getInt();
+                if (head.getInt() != columns) throw new IOException("Not a snapshot: " + path);
+                rowSizes = head.position();
+
+                data = new ByteBuffer[columns];
+                for (int col = 0; col < columns; col++) {
+                    data[col] = region(channel, offsets[col], offsets[col + 1], onHeap, path);
+                }
+            }
+            dictionaries = new String[kinds.length][];
+            idOffsets = new int[kinds.length];
+        }
+
+        private static ByteBuffer region(FileChannel channel, long from, long to, boolean onHeap,
+                                         Path path) throws IOException {
+            if (to - from > Integer.MAX_VALUE) throw new IOException("Snapshot column too large to map: " + path);
+            if (!onHeap) return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            ByteBuffer buf = ByteBuffer.allocate((int) (to - from));
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, from + buf.position()) < 0) throw new IOException("Snapshot truncated: " + path);
+            }
+            return buf.flip();
+        }
+
+        // The snapshot of a log on the heap. It is encoded to a temp file first, so the
+        // encoding never sits in memory twice.
+        static Snapshot inMemory(Path dataPath) throws IOException {
+            Path tmp = Files.createTempFile("event-store", ".snap");
+            try {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                    encode(dataPath, out);
+                }
+                return new Snapshot(tmp, true);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+
+        // True if the snapshot exists and was built from the log as it is now
+        static boolean isCurrent(Path snapshotPath, Path dataPath) throws IOException {
+            if (!Files.exists(snapshotPath)) return false;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+                return in.readInt() == MAGIC && in.readInt() == VERSION
+                        && in.readLong() == Files.size(dataPath)
+                        && in.readLong() == Files.getLastModifiedTime(dataPath).toMillis();
+            } catch (java.io.EOFException e) {
+                return false;
+            }
+        }
+
+        // Header row, or null if the log was empty
+        CsvRow header() {
+            return header;
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        // Decodes every TEXT column up front. From then on, rows that only read values (has,
+        // get, text, ...) never write to the snapshot, so any number of threads can share it.
+        // Returns the heap the decoded dictionaries take, estimated.
+        long decodeDictionaries() {
+            long bytes = 0;
+            for (int col = 0; col < kinds.length; col++) {
+                if (kinds[col] != TEXT) continue;
+                for (String value : dictionary(col)) bytes += 48 + value.length();
+            }
+            return bytes;
+        }
+
+        // Size of the encoded columns
+        long bytes() {
+            long bytes = head.capacity();
+            for (ByteBuffer column : data) bytes += column.capacity();
+            return bytes;
+        }
+
+        // A view of one snapshot row with the same behaviour as the CSV row it came from
+        class Row implements EventRow {
+            private int row;
+
+            void moveTo(int row) {
+                this.row = row;
+            }
+
+            @Override
+            public boolean has(int col) {
+                return col < packed(head, rowSizes, row);
+            }
+
+            @Override
+            public boolean isEmpty(int col) {
+                switch (kinds[col]) {
+                    case EMPTY: return true;
+                    case TEXT: return textAt(col).isEmpty();
+                    default: return !present(col);
+                }
+            }
+
+            @Override
+            public boolean isBlank(int col) {
+                switch (kinds[col]) {
+                    case EMPTY: return true;
+                    case TEXT: return textAt(col).trim().isEmpty();
+                    default: return !present(col);
+                }
+            }
+
+            // Dates, times and numbers never contain the lowercase units the analyzers strip
+            @Override
+            public boolean isEmpty(int col, String unit) {
+                switch (kinds[col]) {
+                    case EMPTY: return true;
+                    case TEXT: return textAt(col).trim().replace(unit, "").isEmpty();
+                    default: return !present(col);
+                }
+            }
+
+            @Override
+            public boolean equals(int col, String value) {
+                return raw(col).equals(value);
+            }
+
+            @Override
+            public String get(int col) {
+                return kinds[col] == TEXT ? textAt(col).trim() : raw(col);
+            }
+
+            @Override
+            public int parseInt(int col) {
+                if (kinds[col] == NUMBER && present(col)) {
+                    double value = doubleAt(col);
+                    if (value == (int) value) return (int) value;
+                }
+                if (kinds[col] == TEXT) return (int) parsedText(col, Parser.INT, null);
+                return (int) Parser.INT.parse(get(col), null);
+            }
+
+            @Override
+            public double parseDouble(int col) {
+                if (kinds[col] == NUMBER && present(col)) return doubleAt(col);
+                if (kinds[col] == TEXT) return parsedText(col, Parser.DOUBLE, null);
+                return Parser.DOUBLE.parse(get(col), null);
+            }
+
+            @Override
+            public double parseDouble(int col, String unit) {
+                if (kinds[col] == NUMBER && present(col)) return doubleAt(col);
+                if (kinds[col] == TEXT) return parsedText(col, Parser.DOUBLE_WITH_UNIT, unit);
+                return Parser.DOUBLE_WITH_UNIT.parse(get(col), unit);
+            }
+
+            @Override
+            public int epochDay(int col) {
+                if (kinds[col] == DAY && present(col)) return intAt(col);
+                if (kinds[col] == TEXT) return (int) parsedText(col, Parser.DAY, null);
+                return (int) Parser.DAY.parse(get(col), null);
+            }
+
+            @Override
+            public int minuteOfDay(int col) {
+                if (kinds[col] == MINUTE && present(col)) return intAt(col);
+                if (kinds[col] == TEXT) return (int) parsedText(col, Parser.MINUTE, null);
+                return (int) Parser.MINUTE.parse(get(col), null);
+            }
+
+            @Override
+            public boolean isInt(int col) {
+                if (kinds[col] == NUMBER && present(col)) {
+                    double value = doubleAt(col);
+                    return value == (int) value;
+                }
+                if (kinds[col] == TEXT) return validText(col, Parser.INT, null);
+                return CsvRow.isInt(get(col));
+            }
+
+            @Override
+            public boolean isDouble(int col) {
+                if (kinds[col] == NUMBER && present(col)) return true;
+                if (kinds[col] == TEXT) return validText(col, Parser.DOUBLE, null);
+                return CsvRow.isDouble(get(col));
+            }
+
+            @Override
+            public boolean isDouble(int col, String unit) {
+                if (kinds[col] == NUMBER && present(col)) return true;
+                if (kinds[col] == TEXT) return validText(col, Parser.DOUBLE_WITH_UNIT, unit);
+                return CsvRow.isDouble(get(col).replace(unit, ""));
+            }
+
+            @Override
+            public boolean isDate(int col) {
+                if (kinds[col] == DAY && present(col)) return true;
+                if (kinds[col] == TEXT) return validText(col, Parser.DAY, null);
+                return CsvRow.isDate(get(col));
+            }
+
+            @Override
+            public boolean isTime(int col) {
+                if (kinds[col] == MINUTE && present(col)) return true;
+                if (kinds[col] == TEXT) return validText(col, Parser.MINUTE, null);
+                return CsvRow.isTime(get(col));
+            }
+
+            // Quotes were dropped when the snapshot was built, so this is the row as parsed
+            @Override
+            public String text() {
+                StringBuilder text = new StringBuilder();
+                for (int col = 0; has(col); col++) {
+                    if (col > 0) text.append(',');
+                    text.append(raw(col));
+                }
+                return text.toString();
+            }
+
+            // Parses a TEXT value once per dictionary entry. Entries that don't parse are parsed
+            // again on every call so they throw just like the CSV row would.
+            private double parsedText(int col, Parser parser, String unit) {
+                int id = packed(data[col], ids(col), row);
+                ParseCache cache = parseCache(col, parser, unit);
+                if (cache.states[id] == 0) check(col, id, cache, parser, unit);
+                if (cache.states[id] == ParseCache.PARSED) return cache.values[id];
+                return parser.parse(dictionary(col)[id].trim(), unit);
+            }
+
+            private boolean validText(int col, Parser parser, String unit) {
+                int id = packed(data[col], ids(col), row);
+                ParseCache cache = parseCache(col, parser, unit);
+                if (cache.states[id] == 0) check(col, id, cache, parser, unit);
+                return cache.states[id] == ParseCache.PARSED;
+            }
+
+            private void check(int col, int id, ParseCache cache, Parser parser, String unit) {
+                String value = dictionary(col)[id].trim();
+                if (parser.isValid(value, unit)) {
+                    cache.values[id] = parser.parse(value, unit);
+                    cache.states[id] = ParseCache.PARSED;
+                } else {
+                    cache.states[id] = ParseCache.FAILED;
+                }
+            }
+
+            // The value exactly as it was in the CSV
+            private String raw(int col) {
+                switch (kinds[col]) {
+                    case EMPTY: return "";
+                    case TEXT: return textAt(col);
+                    case DAY: return present(col) ? LocalDate.ofEpochDay(intAt(col)).toString() : "";
+                    case MINUTE: return present(col) ? LocalTime.ofSecondOfDay(intAt(col) * 60L).toString() : "";
+                    default: return present(col) ? formatNumber(doubleAt(col)) : "";
+                }
+            }
+
+            private boolean present(int col) {
+                long word = data[col].getLong((row >>> 6) * 8);
+                return (word & (1L << row)) != 0;
+            }
+
+            private int intAt(int col) {
+                return data[col].getInt(bitmapBytes() + row * 4);
+            }
+
+            private double doubleAt(int col) {
+                return data[col].getDouble(bitmapBytes() + row * 8);
+            }
+
+            private String textAt(int col) {
+                return dictionary(col)[packed(data[col], ids(col), row)];
+            }
+        }
+
+        // The ways the analyzers parse a trimmed value, with the matching validator; ints and
+        // epoch days are exact as doubles
+        enum Parser {
+            INT {
+                double parse(String value, String unit) {
+                    return Integer.parseInt(value);
+                }
+
+                boolean isValid(String value, String unit) {
+                    return CsvRow.isInt(value);
+                }
+            },
+            DOUBLE {
+                double parse(String value, String unit) {
+                    return Double.parseDouble(value);
+                }
+
+                boolean isValid(String value, String unit) {
+                    return CsvRow.isDouble(value);
+                }
+            },
+            DOUBLE_WITH_UNIT {
+                double parse(String value, String unit) {
+                    return Double.parseDouble(value.replace(unit, ""));
+                }
+
+                boolean isValid(String value, String unit) {
+                    return CsvRow.isDouble(value.replace(unit, ""));
+                }
+            },
+            DAY {
+                double parse(String value, String unit) {
+                    return LocalDate.parse(value, DATE_FORMATTER).toEpochDay();
+                }
+
+                boolean isValid(String value, String unit) {
+                    return CsvRow.isDate(value);
+                }
+            },
+            MINUTE {
+                double parse(String value, String unit) {
+                    return LocalTime.parse(value, TIME_FORMATTER).toSecondOfDay() / 60;
+                }
+
+                boolean isValid(String value, String unit) {
+                    return CsvRow.isTime(value);
+                }
+            };
+
+            abstract double parse(String value, String unit);
+
+            abstract boolean isValid(String value, String unit);
+        }
+
+        // One parser's results for each entry of a TEXT column's dictionary
+        private static class ParseCache {
+            static final byte PARSED = 1, FAILED = 2;
+            final double[] values;
+            final byte[] states;
+
+            ParseCache(int size) {
+                values = new double[size];
+                states = new byte[size];
+            }
+        }
+
+        private final List<Map<Object, ParseCache>> parseCaches = new ArrayList<>();
+
+        private ParseCache parseCache(int col, Parser parser, String unit) {
+            while (parseCaches.size() <= col) parseCaches.add(null);
+            Map<Object, ParseCache> caches = parseCaches.get(col);
+            if (caches == null) {
+                caches = new HashMap<>();
+                parseCaches.set(col, caches);
+            }
+            Object key = unit == null ? parser : unit;
+            ParseCache cache = caches.get(key);
+            if (cache == null) {
+                cache = new ParseCache(dictionary(col).length);
+                caches.put(key, cache);
+            }
+            return cache;
+        }
+
+        private int bitmapBytes() {
+            return (rows + 63) / 64 * 8;
+        }
+
+        // A TEXT column is a dictionary followed by the packed ids; both are decoded on first use
+        private String[] dictionary(int col) {
+            String[] dictionary = dictionaries[col];
+            if (dictionary == null) {
+                ByteBuffer in = data[col].duplicate();
+                in.position(0);
+                dictionary = new String[in.getInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    byte[] bytes = new byte[in.getInt()];
+                    in.get(bytes);
+                    dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                dictionaries[col] = dictionary;
+                idOffsets[col] = in.position();
+            }
+            return dictionary;
+        }
+
+        private int ids(int col) {
+            dictionary(col);
+            return idOffsets[col];
+        }
+
+        // Packed ints: one width byte (1, 2 or 4) followed by one value per row
+        private static int packed(ByteBuffer data, int offset, int index) {
+            switch (data.get(offset)) {
+                case 1: return data.get(offset + 1 + index) & 0xff;
+                case 2: return data.getShort(offset + 1 + index * 2) & 0xffff;
+                default: return data.getInt(offset + 1 + index * 4);
+            }
+        }
+
+        static String formatNumber(double value) {
+            return value == Math.rint(value) && Math.abs(value) < 1e15
+                    ? Long.toString((long) value) : Double.toString(value);
+        }
+
+        // Converts a CSV log. Every non-empty value is first dictionary-encoded in memory, one
+        // id per row and column packed as narrow as the column's dictionary allows, then each
+        // column is written with the tightest encoding its distinct values allow and freed.
+        static void write(Path dataPath, Path snapshotPath) throws IOException {
+            Path tmp = Paths.get(snapshotPath + ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                encode(dataPath, out);
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static void encode(Path dataPath, OutputStream stream) throws IOException {
+            long size = Files.size(dataPath);
+            long modified = Files.getLastModifiedTime(dataPath).toMillis();
+            byte[] headerLine = null;
+            List<ColumnBuilder> columns = new ArrayList<>();
+            PackedInts rowSizes = new PackedInts();
+            int rows = 0;
+            try (CsvReader reader = new CsvReader(Files.newInputStream(dataPath))) {
+                CsvRow row = reader.row();
+                if (reader.next()) {
+                    headerLine = row.line();
+                    while (columns.size() < row.size()) columns.add(new ColumnBuilder());
+                }
+                while (reader.next()) {
+                    int n = row.size();
+                    while (columns.size() < n) columns.add(new ColumnBuilder());
+                    for (int col = 0; col < n; col++) {
+                        if (!row.isEmpty(col)) columns.get(col).add(rows, row.raw(col));
+                    }
+                    rowSizes.set(rows++, n);
+                }
+            }
+
+            CountingStream counter = new CountingStream(stream);
+            DataOutputStream out = new DataOutputStream(counter);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(modified);
+            if (headerLine == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(headerLine.length);
+                out.write(headerLine);
+            }
+            out.writeInt(rows);
+            out.writeInt(columns.size());
+            writePacked(out, rowSizes, rows);
+
+            long[] offsets = new long[columns.size()];
+            byte[] kinds = new byte[columns.size()];
+            for (int col = 0; col < columns.size(); col++) {
+                offsets[col] = counter.count;
+                kinds[col] = columns.get(col).write(out, rows);
+                columns.set(col, null);
+            }
+            long directory = counter.count;
+            for (int col = 0; col < columns.size(); col++) {
+                out.writeByte(kinds[col]);
+                out.writeLong(offsets[col]);
+            }
+            out.writeLong(directory);
+            out.flush();
+        }
+
+        // DataOutputStream.size() stops counting at Integer.MAX_VALUE, so offsets are counted here
+        private static class CountingStream extends FilterOutputStream {
+            long count;
+
+            CountingStream(OutputStream out) {
+                super(out);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                count++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                count += len;
+            }
+        }
+
+        // Non-negative ints in bytes while they stay below 256, then shorts, then ints.
+        // Values past the end are 0.
+        private static class PackedInts {
+            private byte[] bytes = new byte[0];
+            private short[] shorts;
+            private int[] ints;
+            private int width = 1;
+
+            void set(int index, int value) {
+                if (value >= 1 << 16 && width < 4) widen(4);
+                else if (value >= 1 << 8 && width < 2) widen(2);
+                if (index >= capacity()) grow((int) Math.min(Integer.MAX_VALUE - 8, Math.max(1024, index * 2L)));
+                if (width == 1) bytes[index] = (byte) value;
+                else if (width == 2) shorts[index] = (short) value;
+                else ints[index] = value;
+            }
+
+            int get(int index) {
+                if (index >= capacity()) return 0;
+                return width == 1 ? bytes[index] & 0xff : width == 2 ? shorts[index] & 0xffff : ints[index];
+            }
+
+            // Bytes per value: 1, 2 or 4
+            int width() {
+                return width;
+            }
+
+            private int capacity() {
+                return width == 1 ? bytes.length : width == 2 ? shorts.length : ints.length;
+            }
+
+            private void grow(int capacity) {
+                if (width == 1) bytes = Arrays.copyOf(bytes, capacity);
+                else if (width == 2) shorts = Arrays.copyOf(shorts, capacity);
+                else ints = Arrays.copyOf(ints, capacity);
+            }
+
+            private void widen(int to) {
+                int n = capacity();
+                if (to == 2) {
+                    shorts = new short[n];
+                    for (int i = 0; i < n; i++) shorts[i] = (short) (bytes[i] & 0xff);
+                } else {
+                    ints = new int[n];
+                    for (int i = 0; i < n; i++) ints[i] = get(i);
+                    shorts = null;
+                }
+                bytes = null;
+                width = to;
+            }
+        }
+
+        // One column while converting: its distinct values (id 0 is the empty value) and the
+        // id of every row. Rows past the end of ids are empty.
+        private static class ColumnBuilder {
+            private final Map<String, Integer> idsByValue = new HashMap<>();
+            private final List<String> values = new ArrayList<>(List.of(""));
+            private final PackedInts ids = new PackedInts();
+
+            void add(int row, String value) {
+                Integer id = idsByValue.get(value);
+                if (id == null) {
+                    id = values.size();
+                    values.add(value);
+                    idsByValue.put(value, id);
+                }
+                ids.set(row, id);
+            }
+
+            byte write(DataOutputStream out, int rows) throws IOException {
+                if (values.size() == 1) return EMPTY;
+
+                int[] days = new int[values.size()];
+                int[] minutes = new int[values.size()];
+                double[] numbers = new double[values.size()];
+                boolean allDays = true, allMinutes = true, allNumbers = true;
+                for (int id = 1; id < values.size(); id++) {
+                    String value = values.get(id);
+                    try {
+                        LocalDate date = LocalDate.parse(value, DATE_FORMATTER);
+                        days[id] = (int) date.toEpochDay();
+                        allDays &= date.toString().equals(value);
+                    } catch (java.time.format.DateTimeParseException e) {
+                        allDays = false;
+                    }
+                    try {
+                        LocalTime time = LocalTime.parse(value, TIME_FORMATTER);
+                        minutes[id] = time.toSecondOfDay() / 60;
+                        allMinutes &= time.toString().equals(value);
+                    } catch (java.time.format.DateTimeParseException e) {
+                        allMinutes = false;
+                    }
+                    try {
+                        numbers[id] = Double.parseDouble(value);
+                        allNumbers &= Double.isFinite(numbers[id]) && formatNumber(numbers[id]).equals(value);
+                    } catch (NumberFormatException e) {
+                        allNumbers = false;
+                    }
+                }
+
+                if (!allDays && !allMinutes && !allNumbers) {
+                    out.writeInt(values.size());
+                    for (String value : values) {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                    }
+                    writePacked(out, ids, rows);
+                    return TEXT;
+                }
+
+                for (int word = 0; word < (rows + 63) / 64; word++) {
+                    long bits = 0;
+                    for (int row = word * 64; row < Math.min(rows, word * 64 + 64); row++) {
+                        if (idAt(row) != 0) bits |= 1L << row;
+                    }
+                    out.writeLong(bits);
+                }
+                for (int row = 0; row < rows; row++) {
+                    int id = idAt(row);
+                    if (allDays) out.writeInt(days[id]);
+                    else if (allMinutes) out.writeInt(minutes[id]);
+                    else out.writeDouble(numbers[id]);
+                }
+                return allDays ? DAY : allMinutes ? MINUTE : NUMBER;
+            }
 
-                        if (cols.length > 3 && !cols[3].isEmpty()) {
-                            String type = cols[3].trim();
-                            diaperTypes.put(type, diaperTypes.getOrDefault(type, 0) + 1);
-                        }
-                        break;
+            private int idAt(int row) {
+                return ids.get(row);
+            }
+        }
 
-                    case "temperature":
-                        if (cols.length > 5 && !cols[5].isEmpty()) {
-                            double temp = Double.parseDouble(cols[5].trim());
-                            totalTemperature += temp;
-                            temperatureCount++;
-                            maxTemp = Math.max(maxTemp, temp);
-                            minTemp = Math.min(minTemp, temp);
-                        }
-                        break;
+        // Writes count values (missing ones as 0) with the narrowest width that fits them all
+        private static void writePacked(DataOutputStream out, PackedInts values, int count) throws IOException {
+            int width = values.width();
+            out.writeByte(width);
+            for (int i = 0; i < count; i++) {
+                int value = values.get(i);
+                if (width == 1) out.writeByte(value);
+                else if (width == 2) out.writeShort(value);
+                else out.writeInt(value);
+            }
+        }
+    }
 
-                    case "mood":
-                        if (cols.length > 3 && !cols[3].isEmpty()) {
-                            String mood = cols[3].trim();
-                            moodCounts.put(mood, moodCounts.getOrDefault(mood, 0) + 1);
-                        }
-                        break;
+    // A log held in memory for repeated queries. The rows are put in (date, time) order (see
+    // SortedLog) and encoded column by column exactly like a snapshot, so values are held as
+    // ints, doubles and dictionary ids rather than strings. Two indexes sit on top: each
+    // activity's row ids in order, and the first row of every day. A query for an activity
+    // over some days finds the days' rows among the activity's ids with two binary searches
+    // and reads only the rows in between. Rows without a valid date of their own are kept in
+    // the columns but left out of every query. Read-only once built, so requests share one store.
+    static class EventStore {
+        private final Snapshot snapshot;
+        private final Map<String, int[]> byActivity = new HashMap<>();
+        private final int firstDay;
+        // The rows of day d are dayStarts[d - firstDay] up to dayStarts[d - firstDay + 1], and
+        // datedBefore[d - firstDay] of the rows before them have a date
+        private final int[] dayStarts;
+        private final int[] datedBefore;
+        private final BitSet undated = new BitSet();
+        private final long dictionaryBytes;
+
+        EventStore(Snapshot snapshot) {
+            this.snapshot = snapshot;
+            dictionaryBytes = snapshot.decodeDictionaries();
+            CsvRow header = snapshot.header();
+            int rows = rows();
+            int date = header == null ? 0 : header.indexOf("date", 0);
+            int activity = header == null ? 2 : header.indexOf("activity", 2);
+            Snapshot.Row row = snapshot.new Row();
+
+            // Day of each row (undated rows sort with the row before them), and the number of
+            // dated rows per activity
+            int[] days = new int[rows];
+            Map<String, int[]> counts = new HashMap<>();
+            SortedLog.RowKeys keys = header == null ? null : new SortedLog.RowKeys(header);
+            for (int i = 0; i < rows; i++) {
+                row.moveTo(i);
+                long key = keys.next(row);
+                days[i] = key == SortedLog.RowKeys.FIRST ? NO_DAY : (int) Math.floorDiv(key, 1440);
+                if (!row.has(date) || !row.isDate(date)) {
+                    undated.set(i);
+                } else if (row.has(activity)) {
+                    counts.computeIfAbsent(row.get(activity), name -> new int[1])[0]++;
+                }
+            }
+            counts.forEach((name, count) -> byActivity.put(name, new int[count[0]]));
+            counts.values().forEach(count -> count[0] = 0);
+            for (int i = 0; i < rows; i++) {
+                row.moveTo(i);
+                if (undated.get(i) || !row.has(activity)) continue;
+                String name = row.get(activity);
+                byActivity.get(name)[counts.get(name)[0]++] = i;
+            }
 
-                    case "milestone":
-                        milestoneCount++;
-                        if (cols.length > 19 && !cols[19].isEmpty()) {
-                            milestones.add(dateStr + ": " + cols[19].trim());
-                        }
-                        break;
+            int first = 0;
+            while (first < rows && days[first] == NO_DAY) first++;
+            firstDay = first < rows ? days[first] : 0;
+            int lastDay = first < rows ? days[rows - 1] : firstDay - 1;
+            dayStarts = new int[lastDay - firstDay + 2];
+            int next = 0;
+            for (int i = first; i < rows; i++) {
+                while (next <= days[i] - firstDay) dayStarts[next++] = i;
+            }
+            while (next < dayStarts.length) dayStarts[next++] = rows;
+            datedBefore = new int[dayStarts.length];
+            for (int d = 0; d + 1 < dayStarts.length; d++) {
+                int undatedRows = undated.get(dayStarts[d], dayStarts[d + 1]).cardinality();
+                datedBefore[d + 1] = datedBefore[d] + dayStarts[d + 1] - dayStarts[d] - undatedRows;
+            }
+        }
 
-                    case "memory":
-                        memoryCount++;
-                        if (cols.length > 20 && !cols[20].isEmpty()) {
-                            memories.add(dateStr + ": " + cols[20].trim());
-                        }
-                        break;
+        // Sorts the log if it has to and encodes it on the heap
+        static EventStore load(Path log, PrintStream out) throws IOException {
+            try (SortedLog sorted = SortedLog.of(log, true, out)) {
+                return new EventStore(Snapshot.inMemory(sorted.path));
+            }
+        }
 
-                    case "pumping":
-                        pumpingCount++;
-                        if (cols.length > 5 && !cols[5].isEmpty()) {
-                            String amountStr = cols[5].trim().replace("ml", "");
-                            if (!amountStr.isEmpty()) {
-                                totalPumpingML += Double.parseDouble(amountStr);
-                            }
-                        }
-                        break;
+        int rows() {
+            return snapshot.header() == null ? 0 : snapshot.rows();
+        }
 
-                    case "vaccine":
-                        vaccineCount++;
-                        String vaccineName = cols.length > 3 ? cols[3].trim() : "Unknown";
-                        vaccines.add(dateStr + ": " + vaccineName);
-                        break;
+        CsvRow header() {
+            return snapshot.header();
+        }
 
-                    case "doctor_visit":
-                        doctorVisitCount++;
-                        break;
+        // Number of rows of activity (any activity if null) dated fromDay through toDay, from
+        // the bounds of the indexes alone
+        int count(String activity, long fromDay, long toDay) {
+            int from = dayIndex(fromDay), to = dayIndex(toDay + 1);
+            if (from >= to) return 0;
+            if (activity == null) return datedBefore[to] - datedBefore[from];
+            int[] ids = byActivity.get(activity);
+            return ids == null ? 0 : lowerBound(ids, dayStarts[to]) - lowerBound(ids, dayStarts[from]);
+        }
 
-                    case "growth":
-                        if (cols.length > 3 && cols[3].equals("weight") && cols.length > 5) {
-                            String weightStr = cols[5].trim().replace("kg", "");
-                            if (!weightStr.isEmpty()) {
-                                growthWeights.add(Double.parseDouble(weightStr));
-                            }
-                        }
-                        if (cols.length > 3 && cols[3].equals("height") && cols.length > 5) {
-                            String heightStr = cols[5].trim().replace("cm", "");
-                            if (!heightStr.isEmpty()) {
-                                growthHeights.add(Double.parseDouble(heightStr));
-                            }
-                        }
-                        break;
+        // Ids of the first limit of those rows, in time order
+        int[] rows(String activity, long fromDay, long toDay, int limit) {
+            int from = dayStarts[dayIndex(fromDay)], to = dayStarts[dayIndex(toDay + 1)];
+            if (from >= to) return new int[0];
+            if (activity == null) {
+                int[] ids = new int[Math.min(limit, to - from)];
+                int n = 0;
+                for (int i = undated.nextClearBit(from); i < to && n < ids.length; i = undated.nextClearBit(i + 1)) {
+                    ids[n++] = i;
                 }
-            } catch (Exception e) {
-                // Skip malformed lines
-                continue;
+                return Arrays.copyOf(ids, n);
             }
+            int[] ids = byActivity.get(activity);
+            if (ids == null) return new int[0];
+            int first = lowerBound(ids, from);
+            return Arrays.copyOfRange(ids, first, first + Math.min(limit, lowerBound(ids, to) - first));
         }
 
-        // Calculate days since birth
-        long daysSinceBirth = ChronoUnit.DAYS.between(profile.birthDate, today);
+        // A view of one row; each caller gets its own
+        Snapshot.Row row(int id) {
+            Snapshot.Row row = snapshot.new Row();
+            row.moveTo(id);
+            return row;
+        }
 
-        // Display Results
-        System.out.println("\n🍼 FEEDING STATISTICS:");
-        System.out.println("  Today: " + todayFeedings + " feedings");
-        System.out.println("  Yesterday: " + yesterdayFeedings + " feedings");
-        System.out.println("  This Week: " + weekFeedings + " feedings");
-        System.out.println("  Total: " + totalFeedings + " feedings");
-        System.out.printf("  Average per day: %.1f feedings\n",
-                totalFeedings / (double)Math.max(1, daysSinceBirth));
-
-        if (!feedingTypes.isEmpty()) {
-            System.out.println("  Feeding Types:");
-            feedingTypes.forEach((type, count) ->
-                    System.out.println("    " + type + ": " + count + " times"));
-        }
-
-        if (lastFeedingDate != null && lastFeedingTime != null) {
-            long hoursSinceFeeding = ChronoUnit.HOURS.between(
-                    lastFeedingDate.atTime(lastFeedingTime),
-                    LocalDate.now().atTime(LocalTime.now()));
-            System.out.println("  Last feeding: " + hoursSinceFeeding + " hours ago");
+        // Index into dayStarts of the first row dated day or later
+        private int dayIndex(long day) {
+            if (day <= firstDay) return 0;
+            if (day - firstDay >= dayStarts.length) return dayStarts.length - 1;
+            return (int) (day - firstDay);
+        }
 
-            if (hoursSinceFeeding > 4) {
-                System.out.println("  ⚠️ WARNING: It's been over 4 hours since last feeding!");
+        private static int lowerBound(int[] ids, int id) {
+            int lo = 0, hi = ids.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ids[mid] < id) lo = mid + 1;
+                else hi = mid;
             }
+            return lo;
         }
 
-        System.out.println("\n😴 SLEEP STATISTICS:");
-        System.out.printf("  Today: %.1f hours\n", todaySleepMinutes / 60.0);
-        System.out.printf("  Average per day: %.1f hours\n",
-                totalSleepMinutes / 60.0 / Math.max(1, daysSinceBirth));
-
-        if (!sleepQuality.isEmpty()) {
-            System.out.println("  Sleep Quality:");
-            sleepQuality.forEach((quality, count) ->
-                    System.out.println("    " + quality + ": " + count + " times"));
+        int activities() {
+            return byActivity.size();
         }
 
-        // Sleep recommendation based on age
-        double avgSleepHours = totalSleepMinutes / 60.0 / Math.max(1, daysSinceBirth);
-        long ageMonths = daysSinceBirth / 30;
-        double recommendedSleep = ageMonths < 3 ? 16 : ageMonths < 12 ? 14 : 13;
-        if (avgSleepHours < recommendedSleep) {
-            System.out.printf("  ⚠️ Baby is sleeping less than recommended %.0f hours for age\n",
-                    recommendedSleep);
+        // Heap the store takes: the encoded columns, the decoded dictionaries and the indexes
+        long bytes() {
+            long bytes = snapshot.bytes() + dictionaryBytes + dayStarts.length * 8L + undated.size() / 8;
+            for (int[] ids : byActivity.values()) bytes += 16 + ids.length * 4L;
+            return bytes;
         }
 
-        System.out.println("\n💩 DIAPER STATISTICS:");
-        System.out.println("  Today: " + todayDiapers + " diapers");
-        System.out.println("  Total: " + totalDiapers + " diapers");
-        System.out.printf("  Average per day: %.1f diapers\n",
-                totalDiapers / (double)Math.max(1, daysSinceBirth));
-
-        if (!diaperTypes.isEmpty()) {
-            System.out.println("  Diaper Types:");
-            diaperTypes.forEach((type, count) ->
-                    System.out.println("    " + type + ": " + count + " times"));
+        long bytesPerMillionRows() {
+            return rows() == 0 ? 0 : bytes() * 1_000_000 / rows();
         }
+    }
+
+    private static String[] parseCSVLine(String line) {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
 
-        if (temperatureCount > 0) {
-            double avgTemp = totalTemperature / temperatureCount;
-            System.out.println("\n🌡️ TEMPERATURE:");
-            System.out.printf("  Average: %.1f°C\n", avgTemp);
-            System.out.printf("  Range: %.1f°C - %.1f°C\n", minTemp, maxTemp);
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
 
-            if (maxTemp >= 38.0) {
-                System.out.println("  🔥 ALERT: Fever detected! (>38°C) - Contact doctor!");
-            } else if (avgTemp >= 37.5) {
-                System.out.println("  ⚠️ WARNING: Elevated temperature - Monitor closely");
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == ',' && !inQuotes) {
+                result.add(current.toString());
+                current = new StringBuilder();
+            } else {
+                current.append(c);
             }
         }
+        result.add(current.toString());
 
-        if (!moodCounts.isEmpty()) {
-            System.out.println("\n😊 MOOD DISTRIBUTION:");
-            moodCounts.forEach((mood, count) -> {
-                String emoji = mood.equals("happy") ? "😊" :
-                        mood.equals("calm") ? "😌" :
-                                mood.equals("fussy") ? "😠" : "😭";
-                System.out.println("  " + emoji + " " + mood + ": " + count + " times");
-            });
+        return result.toArray(new String[0]);
+    }
 
-            // Pattern detection
-            int total = moodCounts.values().stream().mapToInt(Integer::intValue).sum();
-            int fussy = moodCounts.getOrDefault("fussy", 0);
-            int crying = moodCounts.getOrDefault("crying", 0);
 
-            if ((fussy + crying) > total * 0.4) {
-                System.out.println("  ⚠️ PATTERN: Baby has been fussy/crying frequently");
-                System.out.println("     Possible causes: teething, colic, illness");
+    // Compares allocation per row of the old readLine + parseCSVLine path against CsvReader,
+    // for a narrow baby row and a 157-column mama row. Both read the same three columns.
+    private static void benchmarkCsvTokenizer(int rows) throws IOException {
+        String babyRow = "2025-10-16,08:30,sleep,,end,95,,good" + ",".repeat(14);
+        String mamaRow = "2025-10-16,07:00,mama_sleep" + ",".repeat(71) + "420" + ",".repeat(83) + "slept ok";
+
+        System.out.println("CSV tokenizer benchmark (" + rows + " rows per run)");
+        System.out.printf("%-10s %-14s %14s %14s%n", "row", "path", "bytes/row", "ns/row");
+        for (String[] sample : new String[][]{{"baby", babyRow, "5"}, {"mama", mamaRow, "73"}}) {
+            byte[] data = ("header\n" + (sample[1] + "\n").repeat(rows)).getBytes(StandardCharsets.UTF_8);
+            int valueCol = Integer.parseInt(sample[2]);
+
+            for (boolean legacy : new boolean[]{true, false}) {
+                long[] result = null;
+                for (int run = 0; run < 5; run++) {
+                    result = legacy ? benchmarkLegacyPass(data, valueCol) : benchmarkCsvReaderPass(data, valueCol);
+                }
+                System.out.printf("%-10s %-14s %14.1f %14.1f%n", sample[0],
+                        legacy ? "parseCSVLine" : "CsvReader",
+                        result[0] / (double) rows, result[1] / (double) rows);
             }
         }
+    }
 
-        if (!growthWeights.isEmpty()) {
-            System.out.println("\n📏 GROWTH TRACKING:");
-            double currentWeight = growthWeights.get(growthWeights.size() - 1);
-            double weightGain = currentWeight - profile.birthWeight;
-            System.out.printf("  Current Weight: %.2f kg\n", currentWeight);
-            System.out.printf("  Weight Gain: %.2f kg (%.1f%%)\n",
-                    weightGain, (weightGain / profile.birthWeight) * 100);
+    // Returns {bytes allocated, elapsed nanos} for one full pass
+    private static long[] benchmarkLegacyPass(byte[] data, int valueCol) throws IOException {
+        long checksum = 0;
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+            reader.readLine();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] cols = parseCSVLine(line.trim());
+                checksum += cols[0].trim().length() + cols[2].trim().length()
+                        + Integer.parseInt(cols[valueCol].trim());
+            }
+        }
+        long[] result = {allocatedBytes() - allocated, System.nanoTime() - start};
+        if (checksum == 42) System.out.println();
+        return result;
+    }
 
-            if (!growthHeights.isEmpty()) {
-                double currentHeight = growthHeights.get(growthHeights.size() - 1);
-                double heightGain = currentHeight - profile.birthHeight;
-                System.out.printf("  Current Height: %.1f cm\n", currentHeight);
-                System.out.printf("  Height Gain: %.1f cm (%.1f%%)\n",
-                        heightGain, (heightGain / profile.birthHeight) * 100);
+    private static long[] benchmarkCsvReaderPass(byte[] data, int valueCol) throws IOException {
+        long checksum = 0;
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        try (CsvReader reader = new CsvReader(new ByteArrayInputStream(data))) {
+            reader.next();
+            CsvRow cols = reader.row();
+            while (reader.next()) {
+                cols.has(valueCol);
+                checksum += cols.get(0).length() + cols.get(2).length() + cols.parseInt(valueCol);
             }
         }
+        long[] result = {allocatedBytes() - allocated, System.nanoTime() - start};
+        if (checksum == 42) System.out.println();
+        return result;
+    }
 
-        if (pumpingCount > 0) {
-            System.out.println("\n🍼 PUMPING STATISTICS:");
-            System.out.println("  Total Sessions: " + pumpingCount);
-            System.out.printf("  Average Amount: %.0f ml per session\n",
-                    totalPumpingML / pumpingCount);
-            System.out.printf("  Total Produced: %.0f ml\n", totalPumpingML);
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+
+    // Reads a CSV stream row by row without creating a String per line or per field.
+    // Bytes are read into one reusable buffer and each row is tokenized in place.
+    static class CsvReader implements Closeable {
+        private final InputStream in;
+        private final ByteBuffer source;
+        private final CsvRow row = new CsvRow();
+        private byte[] buf = new byte[64 * 1024];
+        private int pos, limit, scan;
+        private long bufStart;
+        private boolean eof;
+
+        CsvReader(InputStream in) {
+            this.in = in;
+            this.source = null;
         }
 
-        if (vaccineCount > 0) {
-            System.out.println("\n💉 VACCINATION RECORD (" + vaccineCount + " vaccines):");
-            vaccines.forEach(v -> System.out.println("  ✅ " + v));
+        // Reads from an in-memory or memory-mapped buffer
+        CsvReader(ByteBuffer source) {
+            this.in = null;
+            this.source = source;
         }
 
-        if (doctorVisitCount > 0) {
-            System.out.println("\n👨‍⚕️ DOCTOR VISITS: " + doctorVisitCount + " visits total");
+        CsvRow row() {
+            return row;
         }
 
-        if (milestoneCount > 0) {
-            System.out.println("\n🎯 MILESTONES (" + milestoneCount + " total):");
-            milestones.forEach(m -> System.out.println("  ✨ " + m));
+        // Byte offset of the first line not yet returned by next()
+        long position() {
+            return bufStart + pos;
         }
 
-        if (memoryCount > 0) {
-            System.out.println("\n💝 SPECIAL MEMORIES (" + memoryCount + " total):");
-            int displayCount = Math.min(10, memories.size());
-            for (int i = 0; i < displayCount; i++) {
-                System.out.println("  🎉 " + memories.get(i));
-            }
-            if (memories.size() > 10) {
-                System.out.println("  ... and " + (memories.size() - 10) + " more memories!");
+        // Advances to the next line; returns false at end of stream
+        boolean next() throws IOException {
+            while (true) {
+                for (; scan < limit; scan++) {
+                    if (buf[scan] == '\n') {
+                        row.parse(buf, pos, scan);
+                        pos = ++scan;
+                        return true;
+                    }
+                }
+                if (eof) {
+                    if (pos == limit) return false;
+                    row.parse(buf, pos, limit);
+                    pos = scan = limit;
+                    return true;
+                }
+                fill();
             }
         }
-    }
 
-   private static void analyzeMamaData(MamaProfile profile) throws IOException {
-        Path dataPath = null;
-        if (Files.exists(Paths.get("mama_data_complete.csv"))) {
-            dataPath = Paths.get("mama_data_complete.csv");
-        } else if (Files.exists(Paths.get("MUM_DATA.csv"))) {
-            dataPath = Paths.get("MUM_DATA.csv");
-        } else {
-            System.out.println("⚠️ No mama data file found. Skipping mama analysis.");
-            return;
+        private void fill() throws IOException {
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+                bufStart += pos;
+                limit -= pos;
+                scan -= pos;
+                pos = 0;
+            }
+            if (limit == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            int n;
+            if (in != null) {
+                n = in.read(buf, limit, buf.length - limit);
+            } else {
+                n = Math.min(source.remaining(), buf.length - limit);
+                source.get(buf, limit, n);
+                if (n == 0) n = -1;
+            }
+            if (n < 0) eof = true;
+            else limit += n;
         }
 
-        String csvData = Files.readString(dataPath);
-        String[] lines = csvData.split("\n");
-
-        if (lines.length < 2) {
-            System.out.println("No mama data found in file.");
-            return;
+        @Override
+        public void close() throws IOException {
+            if (in != null) in.close();
         }
+    }
 
-        LocalDate today = LocalDate.now();
-
-        // Counters
-        int weightCount = 0;
-        double totalWeightGain = 0, maxWeight = 0, minWeight = 1000;
-        int doctorVisits = 0, testCount = 0;
-        double totalMoodScore = 0;
-        int moodCount = 0;
-        int totalSleepMinutes = 0, sleepDays = 0;
-        int breastfeedingCount = 0, pumpingCount = 0;
-        double totalPumpingAmount = 0;
-        int exerciseCount = 0, totalExerciseMinutes = 0;
-        int fetalMovementsCount = 0;
-        int mamaMilestones = 0;
-        int contractionCount = 0;
-        double totalWaterLiters = 0;
-        int waterDays = 0;
-        int postpartumCheckups = 0;
-        int kegelSessions = 0;
+    // One row of an event log, by column index. Values follow the CSV rules: the raw value
+    // keeps its surrounding whitespace, get() and the parse methods trim it. Calls other than
+    // has() are only valid for columns has() returned true for.
+    interface EventRow {
+        boolean has(int col);
 
-        Map<String, Integer> symptomCounts = new HashMap<>();
-        Map<String, Integer> exerciseTypes = new HashMap<>();
-        Map<String, Integer> moodTypes = new HashMap<>();
-        List<String> milestones = new ArrayList<>();
-        List<String> doctorAppointments = new ArrayList<>();
-        List<String> tests = new ArrayList<>();
+        // True if the raw (untrimmed) value is empty
+        boolean isEmpty(int col);
 
-        // Parse CSV
-        for (int i = 1; i < lines.length; i++) {
-            String line = lines[i].trim();
-            if (line.isEmpty()) continue;
+        // True if the trimmed value is empty
+        boolean isBlank(int col);
 
-            String[] cols = parseCSVLine(line);
-            if (cols.length < 3) continue;
+        // True if the trimmed value is empty once every occurrence of unit is removed
+        boolean isEmpty(int col, String unit);
 
-            try {
-                String activity = cols[2].trim();
-
-                switch (activity) {
-                    case "weight":
-                    case "pregnancy_week":
-                        if (cols.length > 8 && !cols[8].isEmpty()) {
-                            double gain = Double.parseDouble(cols[8].trim());
-                            totalWeightGain += gain;
-                            weightCount++;
-                        }
-                        if (cols.length > 7 && !cols[7].isEmpty()) {
-                            double weight = Double.parseDouble(cols[7].trim());
-                            maxWeight = Math.max(maxWeight, weight);
-                            if (weight > 0) minWeight = Math.min(minWeight, weight);
-                        }
-                        break;
+        // Exact comparison against the raw (untrimmed) value
+        boolean equals(int col, String value);
 
-                    case "doctor_appointment":
-                        doctorVisits++;
-                        if (cols.length > 16 && !cols[16].isEmpty()) {
-                            doctorAppointments.add(cols[0] + ": " + cols[16].trim());
-                        }
-                        break;
+        // Trimmed value
+        String get(int col);
 
-                    case "test":
-                        testCount++;
-                        if (cols.length > 22 && !cols[22].isEmpty()) {
-                            tests.add(cols[0] + ": " + cols[22].trim());
-                        }
-                        break;
+        int parseInt(int col);
 
-                    case "mood":
-                        if (cols.length > 26 && !cols[26].isEmpty()) {
-                            double score = Double.parseDouble(cols[26].trim());
-                            totalMoodScore += score;
-                            moodCount++;
-                        }
-                        if (cols.length > 27 && !cols[27].isEmpty()) {
-                            String moodType = cols[27].trim();
-                            moodTypes.put(moodType, moodTypes.getOrDefault(moodType, 0) + 1);
-                        }
-                        break;
+        double parseDouble(int col);
 
-                    case "mama_sleep":
-                        if (cols.length > 70 && !cols[70].isEmpty()) {
-                            int minutes = Integer.parseInt(cols[70].trim());
-                            totalSleepMinutes += minutes;
-                            sleepDays++;
-                        }
-                        break;
+        // Parses the value with every occurrence of unit removed, e.g. "120ml"
+        double parseDouble(int col, String unit);
 
-                    case "breastfeeding":
-                        breastfeedingCount++;
-                        break;
+        // Days since 1970-01-01 of a yyyy-MM-dd value
+        int epochDay(int col);
 
-                    case "pumping":
-                        pumpingCount++;
-                        if (cols.length > 63 && !cols[63].isEmpty()) {
-                            String amountStr = cols[63].trim().replace("ml", "");
-                            if (!amountStr.isEmpty()) {
-                                totalPumpingAmount += Double.parseDouble(amountStr);
-                            }
-                        }
-                        break;
+        // Minutes since midnight of an HH:mm value
+        int minuteOfDay(int col);
 
-                    case "exercise":
-                        exerciseCount++;
-                        if (cols.length > 95 && !cols[95].isEmpty()) {
-                            int minutes = Integer.parseInt(cols[95].trim());
-                            totalExerciseMinutes += minutes;
-                        }
-                        if (cols.length > 94 && !cols[94].isEmpty()) {
-                            String exType = cols[94].trim();
-                            exerciseTypes.put(exType, exerciseTypes.getOrDefault(exType, 0) + 1);
-                        }
-                        break;
+        // Validating checks: true if the matching parse method would succeed. They never
+        // throw, and for the values the logs actually hold they don't allocate either.
+        boolean isInt(int col);
 
-                    case "fetal_movements":
-                        fetalMovementsCount++;
-                        break;
+        boolean isDouble(int col);
 
-                    case "contractions":
-                        contractionCount++;
-                        break;
+        boolean isDouble(int col, String unit);
 
-                    case "nutrition":
-                        if (cols.length > 92 && !cols[92].isEmpty()) {
-                            double liters = Double.parseDouble(cols[92].trim());
-                            totalWaterLiters += liters;
-                            waterDays++;
-                        }
-                        break;
+        boolean isDate(int col);
 
-                    case "symptom":
-                        if (cols.length > 31 && !cols[31].isEmpty()) {
-                            String symptom = cols[31].trim();
-                            symptomCounts.put(symptom, symptomCounts.getOrDefault(symptom, 0) + 1);
-                        }
-                        break;
+        boolean isTime(int col);
 
-                    case "postpartum_checkup":
-                        postpartumCheckups++;
-                        break;
+        // The whole row as it appeared in the log
+        String text();
+    }
 
-                    case "pelvic_floor":
-                        kegelSessions++;
-                        break;
+    // One line of a CSV log: field start/end offsets into the reader's buffer. Fields are
+    // tokenized lazily, so a row is only split up to the highest column a caller touches,
+    // and values are only decoded when read. Quote handling matches parseCSVLine: a double
+    // quote toggles quoted mode and is dropped from the value.
+    static class CsvRow implements EventRow {
+        private byte[] data;
+        private int[] starts = new int[32];
+        private int[] ends = new int[32];
+        private boolean[] quoted = new boolean[32];
+        private int size, next, from, to;
+
+        void parse(byte[] data, int from, int to) {
+            this.data = data;
+            while (from < to && isSpace(data[from])) from++;
+            while (to > from && isSpace(data[to - 1])) to--;
+            this.from = from;
+            this.to = to;
+            next = from;
+            size = 0;
+        }
 
-                    case "mama_milestone":
-                        mamaMilestones++;
-                        if (cols.length > 142 && !cols[142].isEmpty()) {
-                            milestones.add(cols[0] + ": " + cols[142].trim());
-                        }
+        // Tokenizes up to and including col; false if the row has fewer columns
+        @Override
+        public boolean has(int col) {
+            while (size <= col && next <= to) {
+                int i = next;
+                boolean inQuotes = false, hasQuotes = false;
+                for (; i < to; i++) {
+                    byte b = data[i];
+                    if (b == '"') {
+                        inQuotes = !inQuotes;
+                        hasQuotes = true;
+                    } else if (b == ',' && !inQuotes) {
                         break;
+                    }
                 }
-            } catch (Exception e) {
-                continue;
+                add(next, i, hasQuotes);
+                next = i + 1;
             }
+            return col < size;
         }
 
-        // Display Results
-        if (weightCount > 0) {
-            System.out.println("\n⚖️ WEIGHT TRACKING:");
-            System.out.printf("  Average weight gain: %.1f kg\n", totalWeightGain / weightCount);
-            System.out.printf("  Weight range: %.1f kg - %.1f kg\n", minWeight, maxWeight);
-            System.out.printf("  Total gain: %.1f kg\n", maxWeight - profile.prePregnancyWeight);
-
-            // BMI-based recommendation
-            double bmi = profile.prePregnancyWeight / Math.pow(profile.height / 100, 2);
-            double recommendedGain = bmi < 18.5 ? 18 : bmi < 25 ? 15 : bmi < 30 ? 11 : 9;
-            double currentGain = maxWeight - profile.prePregnancyWeight;
-
-            if (currentGain > recommendedGain + 3) {
-                System.out.printf("  ⚠️ Weight gain above recommended (%.0f kg) for BMI\n", recommendedGain);
-            } else if (currentGain < recommendedGain - 3) {
-                System.out.printf("  ⚠️ Weight gain below recommended (%.0f kg) for BMI\n", recommendedGain);
+        private void add(int start, int end, boolean hasQuotes) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                quoted = Arrays.copyOf(quoted, size * 2);
             }
+            starts[size] = start;
+            ends[size] = end;
+            quoted[size] = hasQuotes;
+            size++;
         }
 
-        System.out.println("\n👨‍⚕️ MEDICAL CARE:");
-        System.out.println("  Doctor visits: " + doctorVisits);
-        System.out.println("  Tests completed: " + testCount);
-        System.out.println("  Postpartum checkups: " + postpartumCheckups);
+        int size() {
+            has(Integer.MAX_VALUE - 1);
+            return size;
+        }
 
-        if (!doctorAppointments.isEmpty()) {
-            System.out.println("  Recent appointments:");
-            int show = Math.min(3, doctorAppointments.size());
-            for (int i = 0; i < show; i++) {
-                System.out.println("    📅 " + doctorAppointments.get(i));
+        // The trimmed line this row was parsed from
+        byte[] line() {
+            return Arrays.copyOfRange(data, from, to);
+        }
+
+        // Position of the column whose trimmed value is name, or fallback if there is none
+        int indexOf(String name, int fallback) {
+            for (int i = 0; i < size(); i++) {
+                if (get(i).equals(name)) return i;
             }
+            return fallback;
         }
 
-        if (moodCount > 0) {
-            double avgMood = totalMoodScore / moodCount;
-            System.out.println("\n💭 MENTAL HEALTH:");
-            System.out.printf("  Average mood score: %.1f/10\n", avgMood);
+        // True if the raw (untrimmed) value is empty
+        @Override
+        public boolean isEmpty(int col) {
+            if (quoted[col]) return raw(col).isEmpty();
+            return starts[col] == ends[col];
+        }
 
-            String status;
-            String emoji;
-            if (avgMood >= 7) {
-                status = "Good - doing well!";
-                emoji = "😊";
-            } else if (avgMood >= 5) {
-                status = "Fair - manageable";
-                emoji = "😐";
-            } else if (avgMood >= 3) {
-                status = "Challenging - needs support";
-                emoji = "😢";
-            } else {
-                status = "ALERT - Please seek professional help";
-                emoji = "🚨";
+        // True if the trimmed value is empty
+        @Override
+        public boolean isBlank(int col) {
+            if (quoted[col]) return get(col).isEmpty();
+            int s = starts[col], e = ends[col];
+            while (s < e && isSpace(data[s])) s++;
+            return s == e;
+        }
+
+        // True if the trimmed value is empty once every occurrence of unit is removed
+        @Override
+        public boolean isEmpty(int col, String unit) {
+            if (quoted[col] || !unitIsSuffixOnly(col, unit)) {
+                return get(col).replace(unit, "").isEmpty();
             }
-            System.out.println("  Overall: " + emoji + " " + status);
+            int s = trimmedStart(col), e = trimmedEnd(col);
+            if (e - s >= unit.length() && endsWith(e, unit)) e -= unit.length();
+            return s == e;
+        }
 
-            if (avgMood < 5) {
-                System.out.println("  ⚠️ WARNING: Low mood detected. Consider:");
-                System.out.println("     - Talk to healthcare provider");
-                System.out.println("     - Reach out to support network");
-                System.out.println("     - Postpartum depression screening");
+        // Exact comparison against the raw (untrimmed) value
+        @Override
+        public boolean equals(int col, String value) {
+            if (quoted[col]) return raw(col).equals(value);
+            int s = starts[col], len = ends[col] - s;
+            if (len != value.length()) return false;
+            for (int i = 0; i < len; i++) {
+                if (data[s + i] != value.charAt(i)) return false;
             }
+            return true;
+        }
+
+        // Trimmed value as a String
+        @Override
+        public String get(int col) {
+            if (quoted[col]) return raw(col).trim();
+            int s = trimmedStart(col), e = trimmedEnd(col);
+            return new String(data, s, e - s, StandardCharsets.UTF_8);
+        }
 
-            if (!moodTypes.isEmpty()) {
-                System.out.println("  Mood Distribution:");
-                moodTypes.forEach((mood, count) ->
-                        System.out.println("    " + mood + ": " + count + " times"));
+        @Override
+        public int parseInt(int col) {
+            if (quoted[col]) return Integer.parseInt(get(col));
+            int s = trimmedStart(col), e = trimmedEnd(col);
+            boolean negative = s < e && data[s] == '-';
+            int i = s < e && (data[s] == '-' || data[s] == '+') ? s + 1 : s;
+            // Up to 9 digits always fits an int; anything else takes the JDK path
+            if (i == e || e - i > 9) return Integer.parseInt(get(col));
+            int value = 0;
+            for (; i < e; i++) {
+                int d = data[i] - '0';
+                if (d < 0 || d > 9) return Integer.parseInt(get(col));
+                value = value * 10 + d;
             }
+            return negative ? -value : value;
         }
 
-        if (sleepDays > 0) {
-            double avgSleepHours = (totalSleepMinutes / 60.0) / sleepDays;
-            System.out.println("\n😴 SLEEP TRACKING:");
-            System.out.printf("  Average per night: %.1f hours\n", avgSleepHours);
-            System.out.printf("  Total nights tracked: %d\n", sleepDays);
+        @Override
+        public double parseDouble(int col) {
+            if (quoted[col]) return Double.parseDouble(get(col));
+            return parseDouble(trimmedStart(col), trimmedEnd(col), col, null);
+        }
 
-            if (avgSleepHours < 6) {
-                double sleepDebt = (7 - avgSleepHours) * sleepDays;
-                System.out.printf("  🔴 CRITICAL: Severe sleep deprivation (%.0f hours debt)\n", sleepDebt);
-                System.out.println("     This can affect physical and mental health!");
-            } else if (avgSleepHours < 7) {
-                System.out.println("  ⚠️ Below recommended 7-8 hours - try to rest more");
-            } else {
-                System.out.println("  ✅ Meeting sleep recommendations!");
+        // Parses the value with every occurrence of unit removed, e.g. "120ml"
+        @Override
+        public double parseDouble(int col, String unit) {
+            if (quoted[col] || !unitIsSuffixOnly(col, unit)) {
+                return Double.parseDouble(get(col).replace(unit, ""));
             }
+            int s = trimmedStart(col), e = trimmedEnd(col);
+            if (e - s >= unit.length() && endsWith(e, unit)) e -= unit.length();
+            while (e > s && isSpace(data[e - 1])) e--;
+            return parseDouble(s, e, col, unit);
         }
 
-        if (breastfeedingCount > 0 || pumpingCount > 0) {
-            System.out.println("\n🍼 BREASTFEEDING & PUMPING:");
-            System.out.println("  Breastfeeding sessions: " + breastfeedingCount);
-            System.out.println("  Pumping sessions: " + pumpingCount);
+        // Plain decimals with at most 15 significant digits are exact as long / 10^n, so
+        // one division gives the correctly rounded result; the rest go through the JDK.
+        private double parseDouble(int s, int e, int col, String unit) {
+            boolean negative = s < e && data[s] == '-';
+            int i = s < e && (data[s] == '-' || data[s] == '+') ? s + 1 : s;
+            long mantissa = 0;
+            int digits = 0, fractionDigits = -1;
+            for (; i < e; i++) {
+                byte b = data[i];
+                if (b == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else if (b >= '0' && b <= '9' && digits < 15) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (fractionDigits >= 0) fractionDigits++;
+                } else {
+                    digits = -1;
+                    break;
+                }
+            }
+            if (digits <= 0) {
+                String text = unit == null ? get(col) : get(col).replace(unit, "");
+                return Double.parseDouble(text);
+            }
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
 
-            if (pumpingCount > 0) {
-                System.out.printf("  Average pumping: %.0f ml per session\n",
-                        totalPumpingAmount / pumpingCount);
-                System.out.printf("  Total milk produced: %.0f ml\n", totalPumpingAmount);
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+        };
+
+        // Days since 1970-01-01 of a yyyy-MM-dd value, read straight from the bytes. Out of range
+        // days are clamped to the month like DATE_FORMATTER does; any other shape goes through it.
+        @Override
+        public int epochDay(int col) {
+            int s = trimmedStart(col), e = trimmedEnd(col);
+            if (!quoted[col] && e - s == 10 && data[s + 4] == '-' && data[s + 7] == '-') {
+                int year = digits(s, 4), month = digits(s + 5, 2), day = digits(s + 8, 2);
+                if (year > 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31) {
+                    return epochDay(year, month, Math.min(day, Month.of(month).length(Year.isLeap(year))));
+                }
+            }
+            return (int) LocalDate.parse(get(col), DATE_FORMATTER).toEpochDay();
+        }
 
-                double avgDaily = totalPumpingAmount / Math.max(1, pumpingCount / 4.0);
-                if (avgDaily < 500) {
-                    System.out.println("  ⚠️ Consider: milk production may be low");
+        // Minutes since midnight of an HH:mm value; any other shape goes through TIME_FORMATTER
+        @Override
+        public int minuteOfDay(int col) {
+            int s = trimmedStart(col), e = trimmedEnd(col);
+            if (!quoted[col] && e - s == 5 && data[s + 2] == ':') {
+                int hour = digits(s, 2), minute = digits(s + 3, 2);
+                if (hour >= 0 && hour < 24 && minute >= 0 && minute < 60) {
+                    return hour * 60 + minute;
                 }
             }
+            return LocalTime.parse(get(col), TIME_FORMATTER).toSecondOfDay() / 60;
         }
 
-        if (exerciseCount > 0) {
-            System.out.println("\n🚶‍♀️ PHYSICAL ACTIVITY:");
-            System.out.println("  Total sessions: " + exerciseCount);
-            System.out.println("  Total minutes: " + totalExerciseMinutes);
-            System.out.printf("  Average per session: %d minutes\n",
-                    totalExerciseMinutes / exerciseCount);
-            System.out.printf("  Weekly average: %.0f minutes\n",
-                    (totalExerciseMinutes / (double)exerciseCount) * 7);
+        @Override
+        public boolean isInt(int col) {
+            if (quoted[col]) return isInt(get(col));
+            return isInt(data, trimmedStart(col), trimmedEnd(col));
+        }
+
+        @Override
+        public boolean isDouble(int col) {
+            if (quoted[col]) return isDouble(get(col));
+            return isDouble(data, trimmedStart(col), trimmedEnd(col));
+        }
 
-            if (!exerciseTypes.isEmpty()) {
-                System.out.println("  Exercise Types:");
-                exerciseTypes.forEach((type, count) ->
-                        System.out.println("    " + type + ": " + count + " times"));
+        @Override
+        public boolean isDouble(int col, String unit) {
+            if (quoted[col] || !unitIsSuffixOnly(col, unit)) {
+                return isDouble(get(col).replace(unit, ""));
             }
+            int s = trimmedStart(col), e = trimmedEnd(col);
+            if (e - s >= unit.length() && endsWith(e, unit)) e -= unit.length();
+            while (e > s && isSpace(data[e - 1])) e--;
+            return isDouble(data, s, e);
+        }
 
-            double weeklyMinutes = (totalExerciseMinutes / (double)exerciseCount) * 7;
-            if (weeklyMinutes >= 150) {
-                System.out.println("  ✅ Meeting WHO recommendation of 150 min/week!");
-            } else {
-                System.out.printf("  💪 Goal: %.0f more minutes to reach 150/week\n",
-                        150 - weeklyMinutes);
+        @Override
+        public boolean isDate(int col) {
+            if (quoted[col]) return isDate(get(col));
+            return isDate(data, trimmedStart(col), trimmedEnd(col));
+        }
+
+        @Override
+        public boolean isTime(int col) {
+            if (quoted[col]) return isTime(get(col));
+            return isTime(data, trimmedStart(col), trimmedEnd(col));
+        }
+
+        @Override
+        public String text() {
+            return new String(data, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        // The validators below take a trimmed value. Each one decides the shapes the logs
+        // contain from the bytes and only asks the JDK parser (and so risks an exception)
+        // about rare shapes such as non-ASCII digits or hex floats.
+
+        static boolean isInt(String value) {
+            byte[] bytes = value.trim().getBytes(StandardCharsets.UTF_8);
+            return isInt(bytes, 0, bytes.length);
+        }
+
+        // Integer.parseInt: an optional sign and decimal digits that fit in an int
+        private static boolean isInt(byte[] data, int s, int e) {
+            int i = s < e && (data[s] == '-' || data[s] == '+') ? s + 1 : s;
+            if (i == e) return false;
+            while (i < e - 1 && data[i] == '0') i++;
+            long value = 0;
+            for (int j = i; j < e; j++) {
+                byte b = data[j];
+                if (b < 0) return jdkAccepts(data, s, e, Integer::parseInt);
+                if (b < '0' || b > '9') return false;
+                if (j - i < 10) value = value * 10 + (b - '0');
+                else return false;
             }
+            return value <= (data[s] == '-' ? 1L + Integer.MAX_VALUE : Integer.MAX_VALUE);
         }
 
-        if (waterDays > 0) {
-            double avgWater = totalWaterLiters / waterDays;
-            System.out.println("\n💧 HYDRATION:");
-            System.out.printf("  Average water intake: %.1f liters/day\n", avgWater);
+        static boolean isDouble(String value) {
+            byte[] bytes = value.trim().getBytes(StandardCharsets.UTF_8);
+            return isDouble(bytes, 0, bytes.length);
+        }
 
-            if (avgWater < 2.0) {
-                System.out.println("  ⚠️ Below recommended 2-3 liters during pregnancy/breastfeeding");
-            } else if (avgWater >= 2.5) {
-                System.out.println("  ✅ Excellent hydration!");
+        // Double.parseDouble: [sign] (NaN | Infinity | digits[.digits][(e|E)[sign]digits][fFdD]),
+        // where the mantissa needs at least one digit on either side of the point
+        private static boolean isDouble(byte[] data, int s, int e) {
+            int i = s < e && (data[s] == '-' || data[s] == '+') ? s + 1 : s;
+            if (matches(data, i, e, "NaN") || matches(data, i, e, "Infinity")) return true;
+            if (e - i > 1 && data[i] == '0' && (data[i + 1] == 'x' || data[i + 1] == 'X')) {
+                return jdkAccepts(data, s, e, Double::parseDouble);
+            }
+            int digits = 0;
+            for (; i < e && data[i] >= '0' && data[i] <= '9'; i++) digits++;
+            if (i < e && data[i] == '.') {
+                for (i++; i < e && data[i] >= '0' && data[i] <= '9'; i++) digits++;
             }
+            if (digits == 0) return false;
+            if (i < e && (data[i] == 'e' || data[i] == 'E')) {
+                i++;
+                if (i < e && (data[i] == '-' || data[i] == '+')) i++;
+                int exponentDigits = 0;
+                for (; i < e && data[i] >= '0' && data[i] <= '9'; i++) exponentDigits++;
+                if (exponentDigits == 0) return false;
+            }
+            if (i < e && (data[i] == 'f' || data[i] == 'F' || data[i] == 'd' || data[i] == 'D')) i++;
+            return i == e;
         }
 
-        if (fetalMovementsCount > 0) {
-            System.out.println("\n👶 FETAL MOVEMENTS:");
-            System.out.println("  Tracking sessions: " + fetalMovementsCount);
-            System.out.println("  ✅ Monitoring baby's activity regularly");
+        static boolean isDate(String value) {
+            byte[] bytes = value.trim().getBytes(StandardCharsets.UTF_8);
+            return isDate(bytes, 0, bytes.length);
         }
 
-        if (contractionCount > 0) {
-            System.out.println("\n🤰 CONTRACTIONS:");
-            System.out.println("  Total recorded: " + contractionCount);
-            if (contractionCount > 10) {
-                System.out.println("  📊 Good tracking - helpful for labor preparation");
+        // LocalDate.parse with DATE_FORMATTER; it only ever matches ASCII digits, signs and '-'
+        private static boolean isDate(byte[] data, int s, int e) {
+            if (e - s == 10 && data[s + 4] == '-' && data[s + 7] == '-') {
+                int year = digitsOf(data, s, 4), month = digitsOf(data, s + 5, 2), day = digitsOf(data, s + 8, 2);
+                if (year > 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31) return true;
+            }
+            if (s == e) return false;
+            for (int i = s; i < e; i++) {
+                byte b = data[i];
+                if ((b < '0' || b > '9') && b != '-' && b != '+') return false;
             }
+            return jdkAccepts(data, s, e, value -> LocalDate.parse(value, DATE_FORMATTER));
         }
 
-        if (kegelSessions > 0) {
-            System.out.println("\n🧘‍♀️ PELVIC FLOOR EXERCISES:");
-            System.out.println("  Kegel sessions: " + kegelSessions);
-            System.out.println("  ✅ Great work on pelvic floor recovery!");
+        static boolean isTime(String value) {
+            byte[] bytes = value.trim().getBytes(StandardCharsets.UTF_8);
+            return isTime(bytes, 0, bytes.length);
         }
 
-        if (!symptomCounts.isEmpty()) {
-            System.out.println("\n⚠️ SYMPTOMS TRACKER:");
-            symptomCounts.entrySet().stream()
-                    .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
-                    .forEach(entry ->
-                            System.out.println("  " + entry.getKey() + ": " + entry.getValue() + " times"));
+        // LocalTime.parse with TIME_FORMATTER; it only ever matches ASCII digits and ':'
+        private static boolean isTime(byte[] data, int s, int e) {
+            if (e - s == 5 && data[s + 2] == ':') {
+                int hour = digitsOf(data, s, 2), minute = digitsOf(data, s + 3, 2);
+                if (hour >= 0 && hour < 24 && minute >= 0 && minute < 60) return true;
+            }
+            if (s == e) return false;
+            for (int i = s; i < e; i++) {
+                byte b = data[i];
+                if ((b < '0' || b > '9') && b != ':') return false;
+            }
+            return jdkAccepts(data, s, e, value -> LocalTime.parse(value, TIME_FORMATTER));
+        }
+
+        private static boolean matches(byte[] data, int s, int e, String word) {
+            if (e - s != word.length()) return false;
+            for (int i = 0; i < word.length(); i++) {
+                if (data[s + i] != word.charAt(i)) return false;
+            }
+            return true;
+        }
 
-            // Pattern detection
-            if (symptomCounts.getOrDefault("nausea", 0) > 10) {
-                System.out.println("  💡 TIP: Frequent nausea - try ginger tea, small meals");
+        private static boolean jdkAccepts(byte[] data, int s, int e, Function<String, ?> parser) {
+            try {
+                parser.apply(new String(data, s, e - s, StandardCharsets.UTF_8));
+                return true;
+            } catch (RuntimeException ex) {
+                return false;
             }
-            if (symptomCounts.getOrDefault("back_pain", 0) > 15) {
-                System.out.println("  💡 TIP: Frequent back pain - consider prenatal yoga, massage");
+        }
+
+        // Same arithmetic as LocalDate.toEpochDay, for a valid date with year > 0
+        private static int epochDay(int year, int month, int day) {
+            long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+            total += (367 * month - 362) / 12 + day - 1;
+            if (month > 2) {
+                total--;
+                if (!Year.isLeap(year)) total--;
             }
+            return (int) (total - DAYS_0000_TO_1970);
         }
 
-        if (mamaMilestones > 0) {
-            System.out.println("\n🎉 MAMA MILESTONES (" + mamaMilestones + " achievements):");
-            milestones.forEach(m -> System.out.println("  ✨ " + m));
-            System.out.println("\n  💪 You're doing an amazing job, mama!");
+        private static final long DAYS_0000_TO_1970 = 719528;
+
+        // Value of count ASCII digits starting at start, or -1 if any of them isn't a digit
+        private int digits(int start, int count) {
+            return digitsOf(data, start, count);
         }
-    }
 
+        private static int digitsOf(byte[] data, int start, int count) {
+            int value = 0;
+            for (int i = start; i < start + count; i++) {
+                int d = data[i] - '0';
+                if (d < 0 || d > 9) return -1;
+                value = value * 10 + d;
+            }
+            return value;
+        }
 
-    private static String[] parseCSVLine(String line) {
-        List<String> result = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        boolean inQuotes = false;
+        // Value with quote characters removed, untrimmed
+        private String raw(int col) {
+            String value = new String(data, starts[col], ends[col] - starts[col], StandardCharsets.UTF_8);
+            return quoted[col] ? value.replace("\"", "") : value;
+        }
 
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
+        private boolean unitIsSuffixOnly(int col, String unit) {
+            int s = trimmedStart(col), e = trimmedEnd(col);
+            if (e - s >= unit.length() && endsWith(e, unit)) e -= unit.length();
+            for (int i = s; i + unit.length() <= e; i++) {
+                if (data[i] == unit.charAt(0) && endsWith(i + unit.length(), unit)) return false;
+            }
+            return true;
+        }
 
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                result.add(current.toString());
-                current = new StringBuilder();
-            } else {
-                current.append(c);
+        private boolean endsWith(int end, String suffix) {
+            int start = end - suffix.length();
+            for (int i = 0; i < suffix.length(); i++) {
+                if (data[start + i] != suffix.charAt(i)) return false;
             }
+            return true;
         }
-        result.add(current.toString());
 
-        return result.toArray(new String[0]);
+        private int trimmedStart(int col) {
+            int s = starts[col], e = ends[col];
+            while (s < e && isSpace(data[s])) s++;
+            return s;
+        }
+
+        private int trimmedEnd(int col) {
+            int s = trimmedStart(col), e = ends[col];
+            while (e > s && isSpace(data[e - 1])) e--;
+            return e;
+        }
+
+        private static boolean isSpace(byte b) {
+            return b >= 0 && b <= ' ';
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A full pass of each analyzer over a generated log, report included (printed to nowhere).
+// The 10M-row logs take about 2 GB of temporary disk; pass -p rows=10000,1000000 to skip them.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AnalysisBenchmark {
+    private static final PrintStream NOWHERE = new PrintStream(OutputStream.nullOutputStream());
+
+    @Param({"10000", "1000000", "10000000"})
+    int rows;
+
+    @Param({"sequential", "parallel"})
+    String scan;
+
+    private Path dir;
+    private Object babyProfile, mamaProfile, options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        dir = SampleLogs.create(Paths.get(System.getProperty("tracker.dir", ".")), rows);
+        babyProfile = (Object) MainAccess.LOAD_BABY_PROFILE.invokeExact(dir);
+        mamaProfile = (Object) MainAccess.LOAD_MAMA_PROFILE.invokeExact(dir);
+        options = (Object) MainAccess.NEW_SCAN_OPTIONS.invokeExact(
+                (List) (scan.equals("parallel") ? List.of("--parallel") : List.of()));
+        if (scan.equals("parallel")) checkSameAsSequential();
+    }
+
+    // --parallel has to give the JSON report of a plain scan byte for byte, or its timings
+    // mean nothing
+    private void checkSameAsSequential() throws Throwable {
+        Object sequential = (Object) MainAccess.NEW_SCAN_OPTIONS.invokeExact((List) List.of());
+        checkSame("baby", babyJson(sequential), babyJson(options));
+        checkSame("mama", mamaJson(sequential), mamaJson(options));
+    }
+
+    private void checkSame(String log, byte[] expected, byte[] actual) {
+        int at = Arrays.mismatch(expected, actual);
+        if (at < 0) return;
+        throw new IllegalStateException("--parallel changes the " + log + " JSON report for " + rows
+                + " rows at byte " + at + ": " + excerpt(expected, at) + " instead of " + excerpt(actual, at));
+    }
+
+    private static String excerpt(byte[] json, int at) {
+        int from = Math.max(0, at - 40), to = Math.min(json.length, at + 40);
+        return new String(json, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private byte[] babyJson(Object scanOptions) throws Throwable {
+        Object stats = (Object) MainAccess.ANALYZE_BABY_DATA.invokeExact(dir, babyProfile, scanOptions, NOWHERE);
+        Object json = (Object) MainAccess.NEW_JSON_WRITER.invokeExact();
+        MainAccess.WRITE_BABY_JSON.invokeExact(json, babyProfile, stats);
+        return (byte[]) MainAccess.JSON_WRITER_BYTES.invokeExact(json);
+    }
+
+    private byte[] mamaJson(Object scanOptions) throws Throwable {
+        Object stats = (Object) MainAccess.ANALYZE_MAMA_DATA.invokeExact(dir, mamaProfile, scanOptions, NOWHERE);
+        Object json = (Object) MainAccess.NEW_JSON_WRITER.invokeExact();
+        MainAccess.WRITE_MAMA_JSON.invokeExact(json, mamaProfile, stats);
+        return (byte[]) MainAccess.JSON_WRITER_BYTES.invokeExact(json);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        SampleLogs.delete(dir);
+    }
+
+    @Benchmark
+    public Object analyzeBabyData() throws Throwable {
+        Object stats = (Object) MainAccess.ANALYZE_BABY_DATA.invokeExact(dir, babyProfile, options, NOWHERE);
+        MainAccess.PRINT_BABY_REPORT.invokeExact(babyProfile, stats, NOWHERE);
+        return stats;
+    }
+
+    @Benchmark
+    public Object analyzeMamaData() throws Throwable {
+        Object stats = (Object) MainAccess.ANALYZE_MAMA_DATA.invokeExact(dir, mamaProfile, options, NOWHERE);
+        MainAccess.PRINT_MAMA_REPORT.invokeExact(mamaProfile, stats, NOWHERE);
+        return stats;
+    }
+}
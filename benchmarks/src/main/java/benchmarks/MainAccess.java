@@ -0,0 +1,113 @@
+package benchmarks;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
+
+// Main and its nested classes are in the default package, which can't be imported from a
+// named one, so the benchmarks call them through method handles. The handles are static
+// final and typed with Object in place of Main's classes, so invokeExact stays cheap.
+final class MainAccess {
+    private static final Class<?> MAIN = load("Main");
+    private static final Class<?> CSV_READER = load("Main$CsvReader");
+    private static final Class<?> CSV_ROW = load("Main$CsvRow");
+    private static final Class<?> SCAN_OPTIONS = load("Main$ScanOptions");
+    private static final Class<?> BABY_PROFILE = load("Main$BabyProfile");
+    private static final Class<?> MAMA_PROFILE = load("Main$MamaProfile");
+    private static final Class<?> JSON_WRITER = load("Main$JsonWriter");
+
+    // String[] parseCSVLine(String)
+    static final MethodHandle PARSE_CSV_LINE = find(MAIN, "parseCSVLine", String[].class, String.class);
+    // Object newCsvReader(InputStream)
+    static final MethodHandle NEW_CSV_READER = constructor(CSV_READER, InputStream.class);
+    // boolean next(Object reader)
+    static final MethodHandle CSV_READER_NEXT = find(CSV_READER, "next", boolean.class);
+    // Object row(Object reader)
+    static final MethodHandle CSV_READER_ROW = find(CSV_READER, "row", CSV_ROW);
+    // void close(Object reader)
+    static final MethodHandle CSV_READER_CLOSE = find(CSV_READER, "close", void.class);
+    // boolean has(Object row, int col)
+    static final MethodHandle CSV_ROW_HAS = find(CSV_ROW, "has", boolean.class, int.class);
+    // String get(Object row, int col)
+    static final MethodHandle CSV_ROW_GET = find(CSV_ROW, "get", String.class, int.class);
+    // int parseInt(Object row, int col)
+    static final MethodHandle CSV_ROW_PARSE_INT = find(CSV_ROW, "parseInt", int.class, int.class);
+    // Object newScanOptions(List<String> args)
+    static final MethodHandle NEW_SCAN_OPTIONS = constructor(SCAN_OPTIONS, List.class);
+    // Object loadBabyProfile(Path dir)
+    static final MethodHandle LOAD_BABY_PROFILE = find(MAIN, "loadBabyProfile", BABY_PROFILE, Path.class);
+    // Object loadMamaProfile(Path dir)
+    static final MethodHandle LOAD_MAMA_PROFILE = find(MAIN, "loadMamaProfile", MAMA_PROFILE, Path.class);
+    // Object analyzeBabyData(Path dir, Object profile, Object options, PrintStream out)
+    static final MethodHandle ANALYZE_BABY_DATA = find(MAIN, "analyzeBabyData", load("Main$BabyStats"),
+            Path.class, BABY_PROFILE, SCAN_OPTIONS, PrintStream.class);
+    // Object analyzeMamaData(Path dir, Object profile, Object options, PrintStream out)
+    static final MethodHandle ANALYZE_MAMA_DATA = find(MAIN, "analyzeMamaData", load("Main$MamaStats"),
+            Path.class, MAMA_PROFILE, SCAN_OPTIONS, PrintStream.class);
+    // void printBabyReport(Object profile, Object stats, PrintStream out)
+    static final MethodHandle PRINT_BABY_REPORT = find(MAIN, "printBabyReport", void.class,
+            BABY_PROFILE, load("Main$BabyStats"), PrintStream.class);
+    // void printMamaReport(Object profile, Object stats, PrintStream out)
+    static final MethodHandle PRINT_MAMA_REPORT = find(MAIN, "printMamaReport", void.class,
+            MAMA_PROFILE, load("Main$MamaStats"), PrintStream.class);
+
+    // void writeBabyJson(Object json, Object profile, Object stats)
+    static final MethodHandle WRITE_BABY_JSON = find(MAIN, "writeBabyJson", void.class,
+            JSON_WRITER, BABY_PROFILE, load("Main$BabyStats"));
+    // void writeMamaJson(Object json, Object profile, Object stats)
+    static final MethodHandle WRITE_MAMA_JSON = find(MAIN, "writeMamaJson", void.class,
+            JSON_WRITER, MAMA_PROFILE, load("Main$MamaStats"));
+    // Object newJsonWriter()
+    static final MethodHandle NEW_JSON_WRITER = constructor(JSON_WRITER);
+    // byte[] bytes(Object json)
+    static final MethodHandle JSON_WRITER_BYTES = find(JSON_WRITER, "bytes", byte[].class);
+
+    private MainAccess() {
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // A static or instance method, with Main's own classes erased to Object
+    private static MethodHandle find(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            Method method = owner.getDeclaredMethod(name, parameters);
+            if (method.getReturnType() != returnType) throw new NoSuchMethodException(method + " changed");
+            MethodHandle handle = MethodHandles.privateLookupIn(owner, MethodHandles.lookup()).unreflect(method);
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            MethodHandle handle = lookup.findConstructor(owner, MethodType.methodType(void.class, parameters));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodType erase(MethodType type) {
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isMainClass(type.parameterType(i))) type = type.changeParameterType(i, Object.class);
+        }
+        return isMainClass(type.returnType()) ? type.changeReturnType(Object.class) : type;
+    }
+
+    private static boolean isMainClass(Class<?> type) {
+        return type == MAIN || type.getName().startsWith("Main$");
+    }
+}
@@ -0,0 +1,37 @@
+package benchmarks;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Loading the two profile files, from the directory in -Dtracker.dir (the working
+// directory by default)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfileBenchmark {
+    private final Path dir = Paths.get(System.getProperty("tracker.dir", "."));
+
+    @Benchmark
+    public Object loadBabyProfile() throws Throwable {
+        return (Object) MainAccess.LOAD_BABY_PROFILE.invokeExact(dir);
+    }
+
+    @Benchmark
+    public Object loadMamaProfile() throws Throwable {
+        return (Object) MainAccess.LOAD_MAMA_PROFILE.invokeExact(dir);
+    }
+}
@@ -0,0 +1,128 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// A family directory with both profiles and baby/mama logs of a given size. Rows cycle
+// through one valid row per activity the analyzers count, dated over the 300 days up to
+// today, so every code path in the analyzer loops gets exercised.
+final class SampleLogs {
+    private static final String BABY_HEADER = "date,time,activity,type,subtype,value,duration,quality,"
+            + "c8,c9,c10,c11,c12,c13,c14,c15,c16,c17,c18,milestone,memory,notes";
+    private static final int DAYS = 300;
+
+    private SampleLogs() {
+    }
+
+    // Copies BABY_PROFILE.csv and MUM_PROFILE.CSV from profiles into a new temporary directory
+    // and writes rows rows to each log there
+    static Path create(Path profiles, int rows) throws IOException {
+        Path dir = Files.createTempDirectory("tracker-bench");
+        Files.copy(profiles.resolve("BABY_PROFILE.csv"), dir.resolve("BABY_PROFILE.csv"),
+                StandardCopyOption.REPLACE_EXISTING);
+        Path mamaProfile = profiles.resolve("MUM_PROFILE.CSV");
+        Files.copy(mamaProfile, dir.resolve("MUM_PROFILE.CSV"), StandardCopyOption.REPLACE_EXISTING);
+
+        // The mama profile starts with the full mama log header
+        String mamaHeader;
+        try (Stream<String> lines = Files.lines(mamaProfile, StandardCharsets.UTF_8)) {
+            mamaHeader = lines.findFirst().orElseThrow().trim();
+        }
+        write(dir.resolve("baby_data.csv"), BABY_HEADER, babyTemplates(), rows);
+        write(dir.resolve("mama_data_complete.csv"), mamaHeader, mamaTemplates(mamaHeader), rows);
+        return dir;
+    }
+
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    // Each template is a row without its date and time
+    private static void write(Path path, String header, List<String> templates, int rows) throws IOException {
+        LocalDate first = LocalDate.now().minusDays(DAYS);
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write(header);
+            out.write('\n');
+            for (int i = 0; i < rows; i++) {
+                out.write(first.plusDays((long) i * DAYS / rows).toString());
+                out.write(String.format(",%02d:%02d,", i % 24, i * 7 % 60));
+                out.write(templates.get(i % templates.size()));
+                out.write('\n');
+            }
+        }
+    }
+
+    private static List<String> babyTemplates() {
+        List<String> templates = new ArrayList<>();
+        String[] columns = BABY_HEADER.split(",");
+        String[][] rows = {
+                {"activity", "feeding", "type", "breast"},
+                {"activity", "feeding", "type", "bottle"},
+                {"activity", "sleep", "subtype", "end", "value", "95", "quality", "good"},
+                {"activity", "diaper", "type", "wet"},
+                {"activity", "diaper", "type", "dirty"},
+                {"activity", "temperature", "value", "37.1"},
+                {"activity", "mood", "type", "happy"},
+                {"activity", "pumping", "value", "120ml"},
+                {"activity", "growth", "type", "weight", "value", "6.5kg"},
+                {"activity", "growth", "type", "height", "value", "62.0cm"},
+                {"activity", "milestone", "milestone", "first smile"},
+                {"activity", "memory", "memory", "first bath"},
+                {"activity", "vaccine", "type", "BCG"},
+                {"activity", "doctor_visit", "type", "checkup"},
+        };
+        for (String[] row : rows) templates.add(template(columns, row));
+        return templates;
+    }
+
+    private static List<String> mamaTemplates(String header) {
+        List<String> templates = new ArrayList<>();
+        String[] columns = header.split(",", -1);
+        String[][] rows = {
+                {"activity", "weight", "weight_kg", "68.5", "weight_gain_kg", "4.5"},
+                {"activity", "mood", "mood_scale", "7", "dominant_emotion", "happy"},
+                {"activity", "mama_sleep", "total_sleep_minutes", "420"},
+                {"activity", "breastfeeding", "breast_side", "left"},
+                {"activity", "pumping", "pumping_amount_ml", "120"},
+                {"activity", "exercise", "exercise_type", "walking", "exercise_duration_min", "30"},
+                {"activity", "nutrition", "water_liters", "2.5"},
+                {"activity", "symptom", "symptom_type", "nausea"},
+                {"activity", "doctor_appointment", "doctor", "Dr. Smith"},
+                {"activity", "test", "test_type", "blood"},
+                {"activity", "fetal_movements"},
+                {"activity", "contractions"},
+                {"activity", "postpartum_checkup"},
+                {"activity", "pelvic_floor"},
+                {"activity", "mama_milestone", "mama_milestone_description", "first walk outside"},
+        };
+        for (String[] row : rows) templates.add(template(columns, row));
+        return templates;
+    }
+
+    // The columns after date and time, with the named ones filled in
+    private static String template(String[] columns, String[] values) {
+        String[] row = new String[columns.length];
+        Arrays.fill(row, "");
+        List<String> names = Arrays.asList(columns);
+        for (int i = 0; i < values.length; i += 2) {
+            int col = names.indexOf(values[i]);
+            if (col < 0) throw new IllegalArgumentException("no column " + values[i]);
+            row[col] = values[i + 1];
+        }
+        return String.join(",", Arrays.copyOfRange(row, 2, row.length));
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost per row of splitting a log line and reading the columns an analyzer needs, for a
+// narrow baby row and a 157-column mama row. The same rows as `java Main --bench-csv`.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(TokenizeBenchmark.ROWS)
+public class TokenizeBenchmark {
+    static final int ROWS = 10_000;
+
+    @Param({"baby", "mama"})
+    String row;
+
+    private byte[] data;
+    private int valueCol;
+
+    @Setup
+    public void setUp() {
+        String line;
+        if (row.equals("baby")) {
+            line = "2025-10-16,08:30,sleep,,end,95,,good" + ",".repeat(14);
+            valueCol = 5;
+        } else {
+            line = "2025-10-16,07:00,mama_sleep" + ",".repeat(71) + "420" + ",".repeat(83) + "slept ok";
+            valueCol = 73;
+        }
+        data = ("header\n" + (line + "\n").repeat(ROWS)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long csvReader() throws Throwable {
+        long checksum = 0;
+        Object reader = (Object) MainAccess.NEW_CSV_READER.invokeExact(
+                (java.io.InputStream) new ByteArrayInputStream(data));
+        try {
+            boolean header = (boolean) MainAccess.CSV_READER_NEXT.invokeExact(reader);
+            Object cols = (Object) MainAccess.CSV_READER_ROW.invokeExact(reader);
+            while ((boolean) MainAccess.CSV_READER_NEXT.invokeExact(reader)) {
+                boolean has = (boolean) MainAccess.CSV_ROW_HAS.invokeExact(cols, valueCol);
+                checksum += ((String) MainAccess.CSV_ROW_GET.invokeExact(cols, 0)).length()
+                        + ((String) MainAccess.CSV_ROW_GET.invokeExact(cols, 2)).length()
+                        + (int) MainAccess.CSV_ROW_PARSE_INT.invokeExact(cols, valueCol);
+            }
+        } finally {
+            MainAccess.CSV_READER_CLOSE.invokeExact(reader);
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public long parseCsvLine() throws Throwable {
+        long checksum = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+            reader.readLine();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] cols = (String[]) MainAccess.PARSE_CSV_LINE.invokeExact(line.trim());
+                checksum += cols[0].trim().length() + cols[2].trim().length()
+                        + Integer.parseInt(cols[valueCol].trim());
+            }
+        }
+        return checksum;
+    }
+}